@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package common;
+
+/**
+ * Which content types are downloaded while building a corpus: documents of
+ * other types are skipped as soon as the response headers are received.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public enum ContentTypePolicy {
+
+    EXTRACTABLE     ("Extractable (recommended)", "Skip images, audio, video, archives, executables and other content text cannot be extracted from."),
+    HTML_AND_TEXT   ("HTML and plain text", "Only download web pages and plain text files, skip PDF and office documents too."),
+    ANY             ("Everything", "Download everything, non-textual content will fail during parsing.");
+    
+    private final String label;
+    private final String description;
+    
+    ContentTypePolicy (String label, String description) {
+        this.label       = label;
+        this.description = description;
+    }
+
+    /**
+     * Return true if documents of the specified type must be downloaded
+     * 
+     * @param mimeType
+     * @return 
+     */
+    public boolean admits(MimeType mimeType) {
+        if (mimeType == null) return true;
+        
+        switch (this) {
+            case HTML_AND_TEXT:
+                return mimeType.isHtmlOrText();
+                
+            case EXTRACTABLE:
+                return mimeType.isExtractable();
+                
+            default:
+                return true;
+        }
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+    
+    @Override
+    public String toString() {
+        return label;
+    }
+}
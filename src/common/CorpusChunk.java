@@ -19,7 +19,9 @@ package common;
 import com.optimaize.langdetect.DetectedLanguage;
 import java.io.File;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.List;
 import org.apache.tika.metadata.Metadata;
 
@@ -35,9 +37,13 @@ public class CorpusChunk {
     private File                    downloadedFile;
     private File                    xmlCorpusDir;
     private URI                     uri;
-    private URI                     redirectedFrom;
+    private final ArrayList<URI>    redirectChain = new ArrayList<>();
     private Metadata                metadata;
     private long                    downloadedFileSize;
+    private long                    wireSize;
+    private long                    decodedSize;
+    private String                  contentEncoding;
+    private String                  declaredCharset;
     private Date                    downloadDate;
     private MimeType                mimeType;
     private CorpusChunkStatus       status;
@@ -48,6 +54,11 @@ public class CorpusChunk {
     private List<DetectedLanguage>  detectedLanguages;
     private String                  baseFileName;
     private Downloader              downloader;
+    private String                  etag;
+    private String                  lastModified;
+    private boolean                 downloadedFromCache;
+    private boolean                 retryable;
+    private EnumMap<HtmlExtractionMode, int[]> modeStatistics;
     
     public enum CorpusChunkStatus {
         OK,
@@ -58,6 +69,7 @@ public class CorpusChunk {
         CANNOT_EXTRACT,
         CANNOT_WRITE_TO_FILE,
         FILE_TOO_LARGE,
+        UNSUPPORTED_CONTENT_TYPE,
         DOC_TOO_SMALL,
         DOC_TOO_LARGE,
 //        TOO_FEW_WHITELISTED_WORDS_FIX_ME,  // as of August 2019, whitelist is not really implemented, it's just a manual hack I used to create a few ad hoc corpora
@@ -163,6 +175,38 @@ public class CorpusChunk {
         this.downloader = downloader;
     }
 
+    /**
+     * Return the ETag header sent by the server with the downloaded file
+     * @return the ETag or null if the server did not send one
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    /**
+     * Return the Last-Modified header sent by the server with the downloaded file
+     * @return the Last-Modified date (as sent by the server) or null if the server did not send one
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(String lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public boolean isDownloadedFromCache() {
+        return downloadedFromCache;
+    }
+
+    public void setDownloadedFromCache(boolean downloadedFromCache) {
+        this.downloadedFromCache = downloadedFromCache;
+    }
+
     public String getBaseFileName() {
         return baseFileName;
     }
@@ -192,13 +236,84 @@ public class CorpusChunk {
     public int incrementDownloadAttempts() {
         return ++downloadAttempts;
     }
+
+    public int getDownloadAttempts() {
+        return downloadAttempts;
+    }
+
+    /**
+     * Return true if the last download attempt failed for a reason that may be
+     * temporary (i.e. a timeout or a 503 response), so it makes sense to try again later.
+     * 
+     * @return 
+     */
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    public void setRetryable(boolean retryable) {
+        this.retryable = retryable;
+    }
+    
+    /**
+     * Return the URI the chunk was originally created with, before any redirect.
+     * 
+     * @return 
+     */
+    public URI getRequestedUri() {
+        if (redirectChain.isEmpty()) return uri;
+        
+        return redirectChain.get(0);
+    }
     
+    /**
+     * Return the first URI of the redirect chain (i.e. the URI that was originally requested).
+     * 
+     * @return the original URI or null if no redirect was followed
+     */
     public URI getRedirectedFrom() {
-        return redirectedFrom;
+        if (redirectChain.isEmpty()) return null;
+        
+        return redirectChain.get(0);
+    }
+    
+    /**
+     * Return all the URIs that redirected to the current URI, in the order in which they were followed.
+     * 
+     * @return 
+     */
+    public List<URI> getRedirectChain() {
+        return redirectChain;
+    }
+    
+    /**
+     * Get the redirect chain as a single string (for logging purposes).
+     * 
+     * The format of the output string is:
+     * 
+     * http://example.com/a -> https://example.com/a -> https://www.example.com/a
+     * 
+     * @return the chain, ending with the current URI, or null if no redirect was followed
+     */
+    public String getRedirectChainString() {
+        if (redirectChain.isEmpty()) return null;
+        
+        String out = "";
+        
+        for (URI hop : redirectChain) {
+            out += hop + " -> ";
+        }
+        
+        return out + uri;
     }
 
-    public void setRedirectedFrom(URI redirectedFrom) {
-        this.redirectedFrom = redirectedFrom;
+    /**
+     * Record that the chunk was redirected from the specified URI.
+     * 
+     * @param from 
+     */
+    public void addRedirect(URI from) {
+        redirectChain.add(from);
     }
     
     public long getDownloadedFileSize() {
@@ -214,7 +329,65 @@ public class CorpusChunk {
     public void setDownloadedFileSize(long fileSize) {
         this.downloadedFileSize = fileSize;
     }
+
+    /**
+     * Return the number of bytes received from the network (compressed, if
+     * the server used a content encoding)
+     * 
+     * @return 
+     */
+    public long getWireSize() {
+        return wireSize;
+    }
+
+    public String getWireSizeHR() {
+        if (getWireSize() < 1) return "0";
+        
+        return Utils.convertBytesToHRRepresentation(getWireSize());
+    }
     
+    public void setWireSize(long wireSize) {
+        this.wireSize = wireSize;
+    }
+
+    /**
+     * Return the number of bytes written to the downloaded file after decoding
+     * 
+     * @return 
+     */
+    public long getDecodedSize() {
+        return decodedSize;
+    }
+
+    public void setDecodedSize(long decodedSize) {
+        this.decodedSize = decodedSize;
+    }
+
+    /**
+     * Return the content encoding used by the server (gzip, deflate...), null if none
+     * 
+     * @return 
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public void setContentEncoding(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+    
+    /**
+     * 
+     * @return the charset parameter of the Content-Type header sent by the server, null if there was none
+     */
+    public String getDeclaredCharset() {
+        return declaredCharset;
+    }
+
+    public void setDeclaredCharset(String declaredCharset) {
+        this.declaredCharset = declaredCharset;
+    }
+
     public List<DetectedLanguage> getDetectedLanguages() {
         return detectedLanguages;
     }
@@ -349,4 +522,47 @@ public class CorpusChunk {
     public void setSkippedSentences(Integer skippedSentences) {
         this.skippedSentences = skippedSentences;
     }
+
+    /**
+     * Record how much text an HTML extraction mode extracted from the document
+     * 
+     * @param htmlExtractionMode
+     * @param characterCount
+     * @param tokenCount 
+     */
+    public void setModeStatistics(HtmlExtractionMode htmlExtractionMode, int characterCount, int tokenCount) {
+        if (modeStatistics == null) modeStatistics = new EnumMap<>(HtmlExtractionMode.class);
+        
+        modeStatistics.put(htmlExtractionMode, new int[] {characterCount, tokenCount});
+    }
+    
+    /**
+     * 
+     * @return true if the document was extracted with every HTML extraction mode
+     */
+    public boolean hasModeStatistics() {
+        return modeStatistics != null;
+    }
+    
+    /**
+     * 
+     * @param htmlExtractionMode
+     * @return the number of characters extracted by a mode, or null if the mode was not used
+     */
+    public Integer getModeCharacterCount(HtmlExtractionMode htmlExtractionMode) {
+        if (modeStatistics == null || !modeStatistics.containsKey(htmlExtractionMode)) return null;
+        
+        return modeStatistics.get(htmlExtractionMode)[0];
+    }
+    
+    /**
+     * 
+     * @param htmlExtractionMode
+     * @return the number of tokens extracted by a mode, or null if the mode was not used
+     */
+    public Integer getModeTokenCount(HtmlExtractionMode htmlExtractionMode) {
+        if (modeStatistics == null || !modeStatistics.containsKey(htmlExtractionMode)) return null;
+        
+        return modeStatistics.get(htmlExtractionMode)[1];
+    }
 }
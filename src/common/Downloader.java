@@ -12,7 +12,8 @@ package common;
 public enum Downloader {
     CURL_OS     ("Curl_OS", "The version of Curl shipped with your OS"),
     CURL_EXT    ("Curl_EXT", "The version of Curl shipped with BootCaT"),
-    INTERNAL    ("Internal", "Use this if you connect using a proxy");
+    INTERNAL    ("Internal", "Use this if you connect using a proxy"),
+    HTTP_CLIENT ("HttpClient", "Internal HTTP/2 client, reuses connections to the same host (faster)");
     
     private final String name;
     private final String description;
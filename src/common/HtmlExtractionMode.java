@@ -26,6 +26,7 @@ public enum HtmlExtractionMode {
     BOILERPIPE_DEFAULT          ("Generic", "A quite generic full-text extractor, but usually not as good as ArticleExtractor."),
     BOILERPIPE_KEEP_EVERYTHING  ("Keep everything", "Treats everything as 'content'. Useful to track down SAX parsing errors."),
     BOILERPIPE_LARGEST_CONTENT  ("Largest content", "Like DefaultExtractor, but only keeps the largest content block. Good for non-article style texts with only one main content block."),
+    JSOUP                       ("Fast (jsoup)", "Removes navigation, scripts and other common boilerplate elements and keeps blocks with enough text and few links. Much faster than Boilerpipe but less precise, good for large crawls."),
     TIKA                        ("Tika (not recommended)", "Use the Tika extractor");
     
     private final String label;
@@ -44,6 +45,14 @@ public enum HtmlExtractionMode {
         return label;
     }
     
+    /**
+     * 
+     * @return true if this mode uses a Boilerpipe extractor
+     */
+    public boolean isBoilerpipe() {
+        return this != TIKA && this != JSOUP;
+    }
+    
     @Override
     public String toString() {
         return label;
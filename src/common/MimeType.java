@@ -1046,4 +1046,63 @@ public enum MimeType {
     public String getMimeType() {
         return mimeType;
     }
+    
+    /**
+     * Return the mimetype conventionally associated with an extension
+     * @param extension the extension without the dot (i.e. "pdf")
+     * @return the mimetype or null if the extension is unknown
+     */
+    public static MimeType fromExtension(String extension) {
+        for (MimeType mimeType : values()) {
+            if (mimeType != _UNDEF && mimeType.extension.equalsIgnoreCase(extension)) return mimeType;
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Return true if text can be extracted from documents of this type.
+     * 
+     * Undefined and generic binary types are considered extractable since
+     * servers often use them for PDF or office documents: the parser will
+     * detect the actual type.
+     * 
+     * @return 
+     */
+    public boolean isExtractable() {
+        if (this == _UNDEF || "application/octet-stream".equals(mimeType)) return true;
+        
+        if (mimeType.startsWith("image/") || mimeType.startsWith("audio/") || mimeType.startsWith("video/") ||
+                mimeType.startsWith("font/") || mimeType.startsWith("model/") || mimeType.startsWith("chemical/")) {
+            return false;
+        }
+        
+        if (isHtmlOrText() || mimeType.endsWith("/xml") || mimeType.endsWith("+xml")) return true;
+        
+        switch (mimeType) {
+            case "application/pdf":
+            case "application/rtf":
+            case "application/msword":
+            case "application/vnd.ms-excel":
+            case "application/vnd.ms-powerpoint":
+            case "application/epub+zip":
+            case "application/x-tex":
+            case "application/vnd.oasis.opendocument.text":
+            case "application/vnd.oasis.opendocument.spreadsheet":
+            case "application/vnd.oasis.opendocument.presentation":
+                return true;
+                
+            default:
+                return mimeType.startsWith("application/vnd.openxmlformats-officedocument.");
+        }
+    }
+    
+    /**
+     * Return true if this is a web page or plain text type
+     * 
+     * @return 
+     */
+    public boolean isHtmlOrText() {
+        return this == _UNDEF || mimeType.startsWith("text/") || "application/xhtml+xml".equals(mimeType);
+    }
 }
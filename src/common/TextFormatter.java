@@ -17,15 +17,17 @@
 package common;
 
 import gui.Main;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import opennlp.tools.sentdetect.SentenceDetectorME;
 import opennlp.tools.sentdetect.SentenceModel;
+import opennlp.tools.util.Span;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 
@@ -35,6 +37,45 @@ import org.apache.commons.lang3.StringUtils;
  */
 public class TextFormatter {
 
+    private static SentenceModel                            sentenceModel;
+    private static final ThreadLocal<SentenceDetectorME>    sentenceDetectors = new ThreadLocal<>();
+    
+    /**
+     * Return the sentence detector of the current thread.
+     * 
+     * The model is loaded once and shared, detectors are not thread safe so
+     * every thread gets its own.
+     * 
+     * @return the detector or null if the model cannot be loaded
+     */
+    public static SentenceDetectorME getSentenceDetector() {
+        SentenceDetectorME sentenceDetector = sentenceDetectors.get();
+        
+        if (sentenceDetector == null) {
+            SentenceModel model = getSentenceModel();
+            
+            if (model == null) return null;
+            
+            sentenceDetector = new SentenceDetectorME(model);
+            sentenceDetectors.set(sentenceDetector);
+        }
+        
+        return sentenceDetector;
+    }
+    
+    private static synchronized SentenceModel getSentenceModel() {
+        if (sentenceModel == null) {
+            // use Apache OpenNLP library to split text into sentences
+            try (InputStream modelIn = TextFormatter.class.getResourceAsStream("/resources/en-sent.bin")) {
+                sentenceModel = new SentenceModel(modelIn);
+            } catch (IOException ex) {
+                Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
+            }
+        }
+        
+        return sentenceModel;
+    }
+
     /**
      * Remove all duplicate whitespace sequences and convert them to a single
      * space character.
@@ -111,45 +152,61 @@ public class TextFormatter {
      * @return 
      */
     public static String convertToXml(String text, CorpusChunk corpusChunk, LinkedHashMap<String, String> xmlAttributes) {
+        StringWriter output = new StringWriter();
         
-        String output = "<text id='" +
+        try {
+            writeXml(output, text, corpusChunk, xmlAttributes);
+        } catch (IOException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
+        }
+        
+        return output.toString();
+    }
+    
+    /**
+     * 
+     * Write a plain text string to a writer in SketchEngine friendly format,
+     * one sentence at a time
+     * 
+     * @param writer
+     * @param text the plain text
+     * @param corpusChunk
+     * @param xmlAttributes optional XML attribute HashMap, key is the attribute's name, value is the value
+     * @throws IOException if the writer cannot be written to
+     */
+    public static void writeXml(Writer writer, String text, CorpusChunk corpusChunk, LinkedHashMap<String, String> xmlAttributes) throws IOException {
+        
+        writer.write("<text id='" +
                 FilenameUtils.removeExtension(corpusChunk.getDownloadedFile().getName()) + "' filename='" +
                 corpusChunk.getDownloadedFile().getName() + "' uri='" +
                 corpusChunk.getUri().toString()  + "' mime_type='" +
-                corpusChunk.getMimeType() + "'";
+                corpusChunk.getMimeType() + "'");
         
         // if user specified optional XML attributes, add them
         if (xmlAttributes != null) {
             for (HashMap.Entry<String, String> entry : xmlAttributes.entrySet()) {
-                output += " " + entry.getKey() + "='" + entry.getValue() + "'";
+                writer.write(" " + entry.getKey() + "='" + entry.getValue() + "'");
             }            
         }
         
-        output += ">\n";
+        writer.write(">\n");
         
-        // use Apache OpenNLP library to split text into sentences
-        try (InputStream modelIn = TextFormatter.class.getResourceAsStream("/resources/en-sent.bin")) {
-            SentenceModel model = new SentenceModel(modelIn);
-            
-            SentenceDetectorME sentenceDetector = new SentenceDetectorME(model);
-            
-            String sentences[] = sentenceDetector.sentDetect(text);
-            
-            for (int i = 0; i < sentences.length; ++i) {
+        SentenceDetectorME sentenceDetector = getSentenceDetector();
+        
+        if (sentenceDetector == null) return;
 
-                // if sentence is empty, skip it
-                if (StringUtils.isBlank(sentences[i])) continue;
+        // only sentence boundaries are kept, sentences are written as they are cut from the text
+        for (Span span : sentenceDetector.sentPosDetect(text)) {
+            String sentence = text.substring(span.getStart(), span.getEnd());
 
-                output += "<s>" + sentences[i].replace("\n", " ") + "</s>\n";
-            }
-        
-            output += "</text>";            
-        } catch (FileNotFoundException ex) { 
-            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
-        } catch (IOException ex) {
-            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
+            // if sentence is empty, skip it
+            if (StringUtils.isBlank(sentence)) continue;
+
+            writer.write("<s>");
+            writer.write(sentence.replace("\n", " "));
+            writer.write("</s>\n");
         }
-        
-        return output;
+
+        writer.write("</text>");            
     }
 }
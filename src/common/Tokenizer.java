@@ -31,7 +31,53 @@ public class Tokenizer {
      * @return the number of tokens in a string
      */
     public static Integer count(String string) {
-        return tokenize(string).length;        
+        // like tokenize, an empty string is made of a single empty token
+        return Math.max(1, countTokens(string));
+    }
+    
+    /**
+     * Count the tokens in a piece of text without building them.
+     * 
+     * Tokens are the same returned by tokenize, but counts of consecutive
+     * lines of a text can be added up to get the count of the whole text.
+     * 
+     * @param text
+     * @return the number of tokens, 0 if there are none
+     */
+    public static int countTokens(CharSequence text) {
+        int     tokens  = 0;
+        boolean inToken = false;
+        
+        for (int i = 0; i < text.length(); ++i) {
+            boolean separator = isSeparator(text.charAt(i));
+            
+            if (!separator && !inToken) ++tokens;
+            
+            inToken = !separator;
+        }
+        
+        return tokens;
+    }
+    
+    /**
+     * Return true for whitespace and punctuation (as in \\s and \\p{Punct})
+     * 
+     * @param c
+     * @return 
+     */
+    private static boolean isSeparator(char c) {
+        switch (c) {
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\013':
+            case '\f':
+            case '\r':
+                return true;
+                
+            default:
+                return c < 128 && "!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~".indexOf(c) >= 0;
+        }
     }
     
     /**
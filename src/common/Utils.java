@@ -48,6 +48,7 @@ import java.nio.file.StandardCopyOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Random;
 import java.util.TreeSet;
@@ -109,6 +110,34 @@ public class Utils {
         }
     }
 
+    /**
+     * Extract the mime type from the value of a Content-Type HTTP header.
+     * 
+     * If no content type is provided, text/html is returned as a default:
+     * this is not ideal but since it's something we download from the Internet,
+     * let's assume it's a html page
+     * 
+     * @param contentType value of the Content-Type header (i.e. "text/html; charset=UTF-8"), may be null
+     * @return the mime type (i.e. "text/html")
+     */
+    public static String getMimeTypeFromContentType(String contentType) {
+        String mimeType = "text/html";
+        
+        if (contentType != null) {
+            contentType = contentType.replaceAll("'", "");
+
+            // content type includes character encoding, we're interested in mime type only (the first part of the string)
+            String[] cType = contentType.split(";");
+
+            // check length of array to avoid array out of bounds errors
+            if (cType.length > 0 && !cType[0].trim().isEmpty()) {
+                mimeType = cType[0].trim();
+            }
+        }
+        
+        return mimeType;
+    }
+    
     public static String generateId() {
     	return getMd5Digest(((Double) new Random().nextDouble()).toString());
     }
@@ -379,6 +408,33 @@ public class Utils {
         }
     }
     
+    /**
+     * Count how many queries (tuples) returned each URL in a collected URL list
+     * 
+     * @param collectedUrlList
+     * @return number of occurrences of each URL, empty if the list does not exist
+     */
+    public static HashMap<String, Integer> countUrlOccurrences(File collectedUrlList) {
+        HashMap<String, Integer> counts = new HashMap<>();
+        
+        if (collectedUrlList == null || !collectedUrlList.isFile()) return counts;
+        
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(collectedUrlList), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.startsWith("CURRENT_QUERY") || line.startsWith("NO_RESULTS_FOUND") || line.startsWith("FULL_QUERY")) continue;
+                if (line.trim().equals("")) continue;
+                
+                Integer count = counts.get(line.trim());
+                counts.put(line.trim(), (count == null) ? 1 : count + 1);
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
+        }
+        
+        return counts;
+    }
+    
     /**
      * Sort contents of inputFile and write them to outputFile discarding duplicate lines and removing empty lines
      * 
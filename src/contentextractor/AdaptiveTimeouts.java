@@ -0,0 +1,276 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Per-host connect and read timeouts learned from the latency observed during
+ * corpus creation.
+ *
+ * Once a few requests to a host have completed, its timeouts are derived from
+ * the 95th percentile of the observed latencies (multiplied by a safety
+ * factor) and kept between a floor and a ceiling: dead or very fast hosts get
+ * short timeouts, slow but working hosts get longer ones. Every time a request
+ * to a host times out, its timeouts are doubled (up to the ceiling) so that a
+ * host slower than expected can still be downloaded when the request is retried.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public class AdaptiveTimeouts {
+
+    private static final int    MAX_SAMPLES     = 50;
+    private static final int    MIN_SAMPLES     = 3;
+    private static final int    SAFETY_FACTOR   = 3;
+    private static final int    MAX_BOOST       = 5;
+
+    /**
+     * Latency statistics and learned timeouts of a host (used for reporting)
+     */
+    public static class HostStatistics {
+        private final String    host;
+        private final int       samples;
+        private final long      connectP50;
+        private final long      connectP95;
+        private final long      responseP50;
+        private final long      responseP95;
+        private final int       connectTimeout;
+        private final int       readTimeout;
+        private final int       timeouts;
+
+        private HostStatistics(String host, int samples, long connectP50, long connectP95, long responseP50, long responseP95,
+                int connectTimeout, int readTimeout, int timeouts) {
+            this.host           = host;
+            this.samples        = samples;
+            this.connectP50     = connectP50;
+            this.connectP95     = connectP95;
+            this.responseP50    = responseP50;
+            this.responseP95    = responseP95;
+            this.connectTimeout = connectTimeout;
+            this.readTimeout    = readTimeout;
+            this.timeouts       = timeouts;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public int getSamples() {
+            return samples;
+        }
+
+        public long getConnectP50() {
+            return connectP50;
+        }
+
+        public long getConnectP95() {
+            return connectP95;
+        }
+
+        public long getResponseP50() {
+            return responseP50;
+        }
+
+        public long getResponseP95() {
+            return responseP95;
+        }
+
+        public int getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public int getReadTimeout() {
+            return readTimeout;
+        }
+
+        public int getTimeouts() {
+            return timeouts;
+        }
+    }
+
+    private static class Host {
+        private final long[]    connectSamples  = new long[MAX_SAMPLES];
+        private final long[]    responseSamples = new long[MAX_SAMPLES];
+        private int             connectCount;
+        private int             responseCount;
+        private int             boost;
+        private int             timeouts;
+    }
+
+    private final int                   defaultConnectTimeout;
+    private final int                   defaultReadTimeout;
+    private final int                   floor;
+    private final int                   ceiling;
+    private final TreeMap<String, Host> hosts = new TreeMap<>();
+
+    /**
+     *
+     * @param defaultConnectTimeout connect timeout in milliseconds used until enough samples are available
+     * @param defaultReadTimeout read timeout in milliseconds used until enough samples are available
+     * @param floor minimum timeout in milliseconds
+     * @param ceiling maximum timeout in milliseconds
+     */
+    public AdaptiveTimeouts(int defaultConnectTimeout, int defaultReadTimeout, int floor, int ceiling) {
+        this.defaultConnectTimeout  = defaultConnectTimeout;
+        this.defaultReadTimeout     = defaultReadTimeout;
+        this.floor                  = floor;
+        this.ceiling                = Math.max(floor, ceiling);
+    }
+
+    /**
+     * Return the connect timeout to use for a URI
+     *
+     * @param uri
+     * @return timeout in milliseconds
+     */
+    public synchronized int getConnectTimeout(URI uri) {
+        Host host = hosts.get(HostLimiter.getHostKey(uri));
+
+        if (host == null) return clamp(defaultConnectTimeout);
+
+        return learn(host.connectSamples, host.connectCount, defaultConnectTimeout, host.boost);
+    }
+
+    /**
+     * Return the read timeout (time to wait for the response and for each chunk of data) to use for a URI
+     *
+     * @param uri
+     * @return timeout in milliseconds
+     */
+    public synchronized int getReadTimeout(URI uri) {
+        Host host = hosts.get(HostLimiter.getHostKey(uri));
+
+        if (host == null) return clamp(defaultReadTimeout);
+
+        return learn(host.responseSamples, host.responseCount, defaultReadTimeout, host.boost);
+    }
+
+    /**
+     * Record the time it took to connect to a host
+     *
+     * @param uri
+     * @param millis
+     */
+    public synchronized void recordConnect(URI uri, long millis) {
+        Host host = getHost(uri);
+
+        host.connectSamples[host.connectCount++ % MAX_SAMPLES] = millis;
+    }
+
+    /**
+     * Record the time it took to receive the response headers once connected
+     *
+     * @param uri
+     * @param millis
+     */
+    public synchronized void recordResponse(URI uri, long millis) {
+        Host host = getHost(uri);
+
+        host.responseSamples[host.responseCount++ % MAX_SAMPLES] = millis;
+
+        // the host answered in time, relax a previous boost
+        if (host.boost > 0) --host.boost;
+    }
+
+    /**
+     * Record that a request to a host timed out
+     *
+     * @param uri
+     */
+    public synchronized void timedOut(URI uri) {
+        Host host = getHost(uri);
+
+        ++host.timeouts;
+        if (host.boost < MAX_BOOST) ++host.boost;
+    }
+
+    /**
+     * Return the statistics of all hosts contacted so far, sorted by host name
+     *
+     * @return
+     */
+    public synchronized List<HostStatistics> getStatistics() {
+        ArrayList<HostStatistics> statistics = new ArrayList<>();
+
+        for (String name : hosts.keySet()) {
+            Host host = hosts.get(name);
+
+            statistics.add(new HostStatistics(
+                    name,
+                    Math.min(host.responseCount, MAX_SAMPLES),
+                    percentile(host.connectSamples, host.connectCount, 50),
+                    percentile(host.connectSamples, host.connectCount, 95),
+                    percentile(host.responseSamples, host.responseCount, 50),
+                    percentile(host.responseSamples, host.responseCount, 95),
+                    learn(host.connectSamples, host.connectCount, defaultConnectTimeout, host.boost),
+                    learn(host.responseSamples, host.responseCount, defaultReadTimeout, host.boost),
+                    host.timeouts));
+        }
+
+        return Collections.unmodifiableList(statistics);
+    }
+
+    private Host getHost(URI uri) {
+        String key = HostLimiter.getHostKey(uri);
+
+        Host host = hosts.get(key);
+        if (host == null) {
+            host = new Host();
+            hosts.put(key, host);
+        }
+
+        return host;
+    }
+
+    private int learn(long[] samples, int count, int defaultTimeout, int boost) {
+        long timeout = defaultTimeout;
+
+        if (count >= MIN_SAMPLES) timeout = percentile(samples, count, 95) * SAFETY_FACTOR;
+
+        return clamp(timeout << boost);
+    }
+
+    private int clamp(long timeout) {
+        return (int) Math.max(floor, Math.min(ceiling, timeout));
+    }
+
+    /**
+     * Compute a percentile of the samples (nearest rank method)
+     *
+     * @param samples circular buffer of samples
+     * @param count total number of samples recorded (may exceed the size of the buffer)
+     * @param percentile
+     * @return the percentile or -1 if there are no samples
+     */
+    private static long percentile(long[] samples, int count, int percentile) {
+        int size = Math.min(count, samples.length);
+
+        if (size == 0) return -1;
+
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+
+        int rank = (int) Math.ceil(percentile / 100.0 * size);
+
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import common.HtmlExtractionMode;
+import de.l3s.boilerpipe.BoilerpipeProcessingException;
+import de.l3s.boilerpipe.document.TextBlock;
+import de.l3s.boilerpipe.document.TextDocument;
+import de.l3s.boilerpipe.extractors.ArticleExtractor;
+import de.l3s.boilerpipe.extractors.DefaultExtractor;
+import de.l3s.boilerpipe.extractors.ExtractorBase;
+import de.l3s.boilerpipe.extractors.KeepEverythingExtractor;
+import de.l3s.boilerpipe.extractors.LargestContentExtractor;
+import de.l3s.boilerpipe.sax.BoilerpipeSAXInput;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Extract text from HTML pages with the Boilerpipe extractors.
+ *
+ * Pages are parsed once into a TextDocument, the classifiers of each mode are
+ * then applied to the document (or to a copy of it when several modes are
+ * needed), so that comparing modes doesn't parse the page again and again.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public class BoilerpipeModes {
+
+    // TextBlock.clone() copies everything the classifiers change, but it isn't public
+    private static final Method CLONE_METHOD;
+
+    static {
+        Method method;
+
+        try {
+            method = TextBlock.class.getDeclaredMethod("clone");
+            method.setAccessible(true);
+        } catch (NoSuchMethodException | SecurityException ex) {
+            method = null;
+        }
+
+        CLONE_METHOD = method;
+    }
+
+    private BoilerpipeModes() {
+    }
+
+    /**
+     * Parse an HTML page
+     *
+     * @param reader
+     * @return
+     * @throws BoilerpipeProcessingException
+     */
+    public static TextDocument parse(Reader reader) throws BoilerpipeProcessingException {
+        try {
+            return new BoilerpipeSAXInput(new InputSource(reader)).getTextDocument();
+        } catch (SAXException ex) {
+            throw new BoilerpipeProcessingException(ex);
+        }
+    }
+
+    /**
+     * Return the extractor of a mode
+     *
+     * @param htmlExtractionMode a Boilerpipe mode
+     * @return
+     */
+    public static ExtractorBase getExtractor(HtmlExtractionMode htmlExtractionMode) {
+        switch (htmlExtractionMode) {
+            default:
+            case BOILERPIPE_ARTICLE:
+                return ArticleExtractor.INSTANCE;
+
+            case BOILERPIPE_DEFAULT:
+                return DefaultExtractor.INSTANCE;
+
+            case BOILERPIPE_KEEP_EVERYTHING:
+                return KeepEverythingExtractor.INSTANCE;
+
+            case BOILERPIPE_LARGEST_CONTENT:
+                return LargestContentExtractor.INSTANCE;
+        }
+    }
+
+    /**
+     * Extract text from a parsed page, the document is modified
+     *
+     * @param document
+     * @param htmlExtractionMode a Boilerpipe mode
+     * @return
+     * @throws BoilerpipeProcessingException
+     */
+    public static String extract(TextDocument document, HtmlExtractionMode htmlExtractionMode) throws BoilerpipeProcessingException {
+        return getExtractor(htmlExtractionMode).getText(document);
+    }
+
+    /**
+     * Extract text from a parsed page with every Boilerpipe mode, the
+     * document is not modified
+     *
+     * @param document
+     * @return the text extracted by each mode
+     * @throws BoilerpipeProcessingException
+     */
+    public static EnumMap<HtmlExtractionMode, String> extractAll(TextDocument document) throws BoilerpipeProcessingException {
+        EnumMap<HtmlExtractionMode, String> texts = new EnumMap<>(HtmlExtractionMode.class);
+
+        for (HtmlExtractionMode mode : HtmlExtractionMode.values()) {
+            if (!mode.isBoilerpipe()) continue;
+
+            texts.put(mode, extract(copy(document), mode));
+        }
+
+        return texts;
+    }
+
+    /**
+     * Copy a parsed page, so that the classifiers of a mode can be applied
+     * without affecting the original (blocks are copied, not parsed again)
+     *
+     * @param document
+     * @return
+     * @throws BoilerpipeProcessingException
+     */
+    public static TextDocument copy(TextDocument document) throws BoilerpipeProcessingException {
+        if (CLONE_METHOD == null) throw new BoilerpipeProcessingException("cannot copy Boilerpipe documents");
+
+        List<TextBlock> blocks = new ArrayList<>(document.getTextBlocks().size());
+
+        try {
+            for (TextBlock block : document.getTextBlocks()) {
+                blocks.add((TextBlock) CLONE_METHOD.invoke(block));
+            }
+        } catch (IllegalAccessException | InvocationTargetException ex) {
+            throw new BoilerpipeProcessingException(ex);
+        }
+
+        return new TextDocument(document.getTitle(), blocks);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Find the character set of an HTML page from cheap, explicit sources:
+ * a byte order mark, the charset parameter of the Content-Type header and a
+ * meta tag in the first bytes of the page, in this order (as browsers do).
+ *
+ * Nothing is guessed, when none of them is available the caller has to fall
+ * back to statistical detection.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public class CharsetResolver {
+
+    // meta tags must be in the first 1024 bytes according to the HTML spec, be more tolerant
+    public static final int         SNIFF_SIZE = 4096;
+
+    private static final Pattern    META_CHARSET = Pattern.compile("(?i)<meta[^>]+charset\\s*=\\s*[\"']?\\s*([a-zA-Z0-9_\\-:.]+)");
+
+    private CharsetResolver() {
+    }
+
+    /**
+     * Return the charset parameter of a Content-Type header
+     *
+     * @param contentType
+     * @return the name of the character set or null if there is none
+     */
+    public static String getCharsetParameter(String contentType) {
+        if (contentType == null) return null;
+
+        for (String parameter : contentType.split(";")) {
+            String[] nameValue = parameter.trim().split("=", 2);
+
+            if (nameValue.length == 2 && nameValue[0].trim().equalsIgnoreCase("charset")) {
+                String charsetName = nameValue[1].trim().replace("\"", "").replace("'", "");
+
+                if (!charsetName.isEmpty()) return charsetName;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Find the character set of a downloaded page, only its first bytes are read
+     *
+     * @param content
+     * @param declaredCharset charset parameter of the Content-Type header, null if unknown
+     * @return the character set or null if it has to be detected statistically
+     * @throws IOException
+     */
+    public static Charset resolve(DocumentBuffer content, String declaredCharset) throws IOException {
+        byte[] head = new byte[SNIFF_SIZE];
+        int length = 0;
+        int bytesRead;
+
+        try (InputStream stream = content.openStream()) {
+            while (length < head.length && (bytesRead = stream.read(head, length, head.length - length)) != -1) {
+                length += bytesRead;
+            }
+        }
+
+        return resolve(head, length, declaredCharset);
+    }
+
+    /**
+     * Find the character set of a page from its first bytes
+     *
+     * @param head
+     * @param length number of bytes of head that are used
+     * @param declaredCharset charset parameter of the Content-Type header, null if unknown
+     * @return the character set or null if it has to be detected statistically
+     */
+    public static Charset resolve(byte[] head, int length, String declaredCharset) {
+        Charset charset = getBomCharset(head, length);
+
+        if (charset == null && declaredCharset != null) charset = forName(declaredCharset);
+
+        if (charset == null) {
+            Matcher matcher = META_CHARSET.matcher(new String(head, 0, Math.min(length, SNIFF_SIZE), StandardCharsets.ISO_8859_1));
+
+            if (matcher.find()) {
+                charset = forName(matcher.group(1));
+
+                // the meta tag could be read as ASCII, so the page cannot be in UTF-16
+                if (charset != null && charset.name().startsWith("UTF-16")) charset = StandardCharsets.UTF_8;
+            }
+        }
+
+        return charset;
+    }
+
+    private static Charset getBomCharset(byte[] head, int length) {
+        if (length >= 3 && (head[0] & 0xff) == 0xef && (head[1] & 0xff) == 0xbb && (head[2] & 0xff) == 0xbf) return StandardCharsets.UTF_8;
+        if (length >= 2 && (head[0] & 0xff) == 0xfe && (head[1] & 0xff) == 0xff) return StandardCharsets.UTF_16BE;
+        if (length >= 2 && (head[0] & 0xff) == 0xff && (head[1] & 0xff) == 0xfe) return StandardCharsets.UTF_16LE;
+
+        return null;
+    }
+
+    /**
+     * Return a character set from its name, labels that browsers treat as
+     * windows-1252 are mapped to it (i.e. pages declared as ISO-8859-1 often
+     * contain curly quotes)
+     *
+     * @param charsetName
+     * @return the character set or null if it is not supported
+     */
+    private static Charset forName(String charsetName) {
+        String name = charsetName.trim().toLowerCase(Locale.ROOT);
+
+        switch (name) {
+            case "iso-8859-1":
+            case "iso8859-1":
+            case "latin1":
+            case "us-ascii":
+            case "ascii":
+                name = "windows-1252";
+                break;
+        }
+
+        try {
+            return Charset.forName(name);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException ex) {
+            return null;
+        }
+    }
+}
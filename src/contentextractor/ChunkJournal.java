@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import com.optimaize.langdetect.DetectedLanguage;
+import com.optimaize.langdetect.i18n.LdLocale;
+import common.CorpusChunk;
+import common.Downloader;
+import common.HtmlExtractionMode;
+import gui.Main;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.tika.metadata.Metadata;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Append-only journal of the corpus chunks processed so far.
+ *
+ * One JSON record is appended (and flushed) every time a chunk is finished,
+ * so if corpus creation is interrupted the chunks that were already processed
+ * can be restored from the journal instead of being downloaded and extracted
+ * again.
+ *
+ * The first line of the journal contains a digest of the settings used for
+ * the run: a journal written with different settings (e.g. different filters)
+ * is discarded.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public class ChunkJournal {
+
+    private final File                          journalFile;
+    private final HashMap<String, JSONObject>   records = new HashMap<>();
+    private PrintWriter                         writer;
+
+    public ChunkJournal(File journalFile) {
+        this.journalFile = journalFile;
+    }
+
+    /**
+     * Load the records left by a previous run and open the journal for appending.
+     *
+     * @param settings digest of the settings of the current run
+     * @return number of records loaded from a previous run
+     */
+    public synchronized int open(String settings) {
+        records.clear();
+
+        boolean resume = false;
+
+        if (journalFile.exists()) {
+            try (BufferedReader br = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(journalFile), StandardCharsets.UTF_8))) {
+
+                String line = br.readLine();
+
+                if (line != null && settings.equals(new JSONObject(line).optString("settings"))) {
+                    resume = true;
+
+                    while ((line = br.readLine()) != null) {
+                        try {
+                            JSONObject record = new JSONObject(line);
+                            records.put(record.getString("baseFileName"), record);
+                        } catch (JSONException ex) {
+                            // most likely the last line, truncated when the previous run died
+                            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "skipping corrupted journal record: {0}", line);
+                        }
+                    }
+                }
+            } catch (IOException | JSONException ex) {
+                Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "cannot read journal " + journalFile, ex);
+                records.clear();
+                resume = false;
+            }
+        }
+
+        try {
+            writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(journalFile, resume), StandardCharsets.UTF_8));
+
+            if (!resume) {
+                JSONObject header = new JSONObject();
+                header.put("settings", settings);
+                writer.println(header.toString());
+                writer.flush();
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, "cannot write journal " + journalFile, ex);
+            writer = null;
+        }
+
+        return records.size();
+    }
+
+    /**
+     * Fill in a chunk with the outcome recorded by a previous run.
+     *
+     * Chunks that could not be downloaded are not restored (the error may have
+     * been temporary) and neither are chunks whose output files are missing.
+     *
+     * @param corpusChunk
+     * @param requestedUri the URI the chunk was created with (before redirects)
+     * @return true if the chunk was restored and must not be processed again
+     */
+    public synchronized boolean restore(CorpusChunk corpusChunk, URI requestedUri) {
+        JSONObject record = records.get(corpusChunk.getBaseFileName());
+
+        if (record == null) return false;
+        if (!String.valueOf(requestedUri).equals(record.optString("requestedUri"))) return false;
+
+        try {
+            CorpusChunk.CorpusChunkStatus status = CorpusChunk.CorpusChunkStatus.valueOf(record.getString("status"));
+
+            if (status == CorpusChunk.CorpusChunkStatus.CANNOT_DOWNLOAD) return false;
+
+            if (status == CorpusChunk.CorpusChunkStatus.OK &&
+                    (!corpusChunk.getExtractedFile().exists() || !corpusChunk.getExtractedXMLFile().exists())) {
+                return false;
+            }
+
+            corpusChunk.setStatus(status);
+
+            if (record.has("uri"))              corpusChunk.setUri(new URI(record.getString("uri")));
+            if (record.has("downloadedFile"))   corpusChunk.setDownloadedFile(new File(record.getString("downloadedFile")));
+            if (record.has("mimeType"))         corpusChunk.setMimeType(record.getString("mimeType"));
+            if (record.has("downloader"))       corpusChunk.setDownloader(Downloader.valueOf(record.getString("downloader")));
+            if (record.has("htmlExtractionMode")) corpusChunk.setHtmlExtractionMode(HtmlExtractionMode.valueOf(record.getString("htmlExtractionMode")));
+            if (record.has("characterCount"))   corpusChunk.setCharacterCount(record.getInt("characterCount"));
+            if (record.has("tokenCount"))       corpusChunk.setTokenCount(record.getInt("tokenCount"));
+            if (record.has("skippedSentences")) corpusChunk.setSkippedSentences(record.getInt("skippedSentences"));
+            if (record.has("downloadDate"))     corpusChunk.setDownloadDate(new Date(record.getLong("downloadDate")));
+            if (record.has("etag"))             corpusChunk.setEtag(record.getString("etag"));
+            if (record.has("lastModified"))     corpusChunk.setLastModified(record.getString("lastModified"));
+
+            corpusChunk.setDownloadedFileSize(record.optLong("downloadedFileSize"));
+            corpusChunk.setWireSize(record.optLong("wireSize"));
+            corpusChunk.setDecodedSize(record.optLong("decodedSize"));
+            if (record.has("contentEncoding"))  corpusChunk.setContentEncoding(record.getString("contentEncoding"));
+            corpusChunk.setDownloadedFromCache(record.optBoolean("downloadedFromCache"));
+
+            // only the creation date is needed from the metadata (it goes in the report)
+            if (record.has("creationDate")) {
+                Metadata metadata = new Metadata();
+                metadata.set("meta:creation-date", record.getString("creationDate"));
+                corpusChunk.setMetadata(metadata);
+            }
+
+            JSONArray redirectChain = record.optJSONArray("redirectChain");
+            if (redirectChain != null) {
+                for (int i = 0; i < redirectChain.length(); ++i) {
+                    corpusChunk.addRedirect(new URI(redirectChain.getString(i)));
+                }
+            }
+
+            JSONArray languages = record.optJSONArray("detectedLanguages");
+            if (languages != null) {
+                ArrayList<DetectedLanguage> detectedLanguages = new ArrayList<>();
+
+                for (int i = 0; i < languages.length(); ++i) {
+                    JSONObject language = languages.getJSONObject(i);
+                    detectedLanguages.add(new DetectedLanguage(
+                            LdLocale.fromString(language.getString("locale")),
+                            language.getDouble("probability")));
+                }
+
+                corpusChunk.setDetectedLanguages(detectedLanguages);
+            }
+        } catch (JSONException | URISyntaxException | IllegalArgumentException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "cannot restore " + corpusChunk.getBaseFileName() + " from journal", ex);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Append the outcome of a finished chunk to the journal.
+     *
+     * @param corpusChunk
+     * @param requestedUri the URI the chunk was created with (before redirects)
+     */
+    public synchronized void append(CorpusChunk corpusChunk, URI requestedUri) {
+        if (writer == null || corpusChunk.getStatus() == null) return;
+
+        JSONObject record = new JSONObject();
+
+        record.put("baseFileName",          corpusChunk.getBaseFileName());
+        record.put("requestedUri",          String.valueOf(requestedUri));
+        record.put("status",                corpusChunk.getStatus().name());
+        record.put("downloadedFileSize",    corpusChunk.getDownloadedFileSize());
+        record.put("wireSize",              corpusChunk.getWireSize());
+        record.put("decodedSize",           corpusChunk.getDecodedSize());
+        record.put("downloadedFromCache",   corpusChunk.isDownloadedFromCache());
+
+        if (corpusChunk.getUri() != null)                   record.put("uri", corpusChunk.getUri().toString());
+        if (corpusChunk.getDownloadedFile() != null)        record.put("downloadedFile", corpusChunk.getDownloadedFile().getPath());
+        if (corpusChunk.getMimeType() != null)              record.put("mimeType", corpusChunk.getMimeType().getMimeType());
+        if (corpusChunk.getDownloader() != null)            record.put("downloader", corpusChunk.getDownloader().name());
+        if (corpusChunk.getHtmlExtractionMode() != null)    record.put("htmlExtractionMode", corpusChunk.getHtmlExtractionMode().name());
+        if (corpusChunk.getCharacterCount() != null)        record.put("characterCount", corpusChunk.getCharacterCount());
+        if (corpusChunk.getTokenCount() != null)            record.put("tokenCount", corpusChunk.getTokenCount());
+        if (corpusChunk.getSkippedSentences() != null)      record.put("skippedSentences", corpusChunk.getSkippedSentences());
+        if (corpusChunk.getDownloadDate() != null)          record.put("downloadDate", corpusChunk.getDownloadDate().getTime());
+        if (corpusChunk.getEtag() != null)                  record.put("etag", corpusChunk.getEtag());
+        if (corpusChunk.getLastModified() != null)          record.put("lastModified", corpusChunk.getLastModified());
+        if (corpusChunk.getContentEncoding() != null)       record.put("contentEncoding", corpusChunk.getContentEncoding());
+        if (corpusChunk.getCreationDate() != null)          record.put("creationDate", corpusChunk.getCreationDate());
+
+        if (!corpusChunk.getRedirectChain().isEmpty()) {
+            JSONArray redirectChain = new JSONArray();
+
+            for (URI hop : corpusChunk.getRedirectChain()) {
+                redirectChain.put(hop.toString());
+            }
+
+            record.put("redirectChain", redirectChain);
+        }
+
+        if (corpusChunk.getDetectedLanguages() != null) {
+            JSONArray languages = new JSONArray();
+
+            for (DetectedLanguage detectedLanguage : corpusChunk.getDetectedLanguages()) {
+                JSONObject language = new JSONObject();
+                language.put("locale", detectedLanguage.getLocale().toString());
+                language.put("probability", detectedLanguage.getProbability());
+                languages.put(language);
+            }
+
+            record.put("detectedLanguages", languages);
+        }
+
+        writer.println(record.toString());
+        writer.flush();
+    }
+
+    public synchronized void close() {
+        if (writer != null) writer.close();
+        writer = null;
+    }
+
+    /**
+     * Close and remove the journal (i.e. once the corpus has been completed).
+     */
+    public synchronized void delete() {
+        close();
+        records.clear();
+
+        if (journalFile.exists() && !journalFile.delete()) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "cannot delete journal {0}", journalFile);
+        }
+    }
+
+    public File getJournalFile() {
+        return journalFile;
+    }
+}
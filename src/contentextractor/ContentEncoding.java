@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * HTTP content encodings the internal downloaders can decode.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public enum ContentEncoding {
+    IDENTITY,
+    GZIP,
+    DEFLATE;
+
+    /**
+     * Value of the Accept-Encoding request header
+     */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final int BUFFER_SIZE = 16384;
+
+    /**
+     * Return the encoding named in a Content-Encoding response header.
+     *
+     * @param contentEncoding value of the header, null if the header is missing
+     * @return the encoding or null if it is not supported
+     */
+    public static ContentEncoding fromHeader(String contentEncoding) {
+        if (contentEncoding == null) return IDENTITY;
+
+        switch (contentEncoding.trim().toLowerCase(Locale.ROOT)) {
+            case "":
+            case "identity":
+                return IDENTITY;
+
+            case "gzip":
+            case "x-gzip":
+                return GZIP;
+
+            case "deflate":
+                return DEFLATE;
+
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Return true if two bytes are a zlib header (RFC 1950).
+     *
+     * The "deflate" encoding is supposed to be zlib wrapped, but some servers
+     * send raw deflate data instead.
+     *
+     * @param cmf
+     * @param flg
+     * @return
+     */
+    static boolean isZlibHeader(int cmf, int flg) {
+        return (cmf & 0x0f) == 8 && ((((cmf & 0xff) << 8) | (flg & 0xff)) % 31) == 0;
+    }
+
+    /**
+     * Wrap a stream of encoded data into a stream returning the decoded data
+     *
+     * @param inputStream
+     * @return
+     * @throws IOException
+     */
+    public InputStream decode(InputStream inputStream) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPInputStream(inputStream, BUFFER_SIZE);
+
+            case DEFLATE:
+                PushbackInputStream pushbackStream = new PushbackInputStream(inputStream, 2);
+
+                byte[] header = new byte[2];
+                int length = 0;
+                int bytesRead;
+                while (length < 2 && (bytesRead = pushbackStream.read(header, length, 2 - length)) != -1) {
+                    length += bytesRead;
+                }
+
+                if (length > 0) pushbackStream.unread(header, 0, length);
+
+                boolean zlib = length == 2 && isZlibHeader(header[0], header[1]);
+
+                return new InflaterInputStream(pushbackStream, new Inflater(!zlib), BUFFER_SIZE) {
+                    @Override
+                    public void close() throws IOException {
+                        super.close();
+
+                        // the inflater was not created by InflaterInputStream, release it here
+                        inf.end();
+                    }
+                };
+
+            default:
+                return inputStream;
+        }
+    }
+}
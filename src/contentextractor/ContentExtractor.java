@@ -17,6 +17,7 @@
 
 package contentextractor;
 
+import common.ContentTypePolicy;
 import common.HtmlExtractionMode;
 import common.CorpusChunk;
 import common.Language;
@@ -32,10 +33,7 @@ import com.optimaize.langdetect.profiles.LanguageProfile;
 import com.optimaize.langdetect.profiles.LanguageProfileReader;
 import common.Downloader;
 import de.l3s.boilerpipe.BoilerpipeProcessingException;
-import de.l3s.boilerpipe.extractors.ArticleExtractor;
-import de.l3s.boilerpipe.extractors.DefaultExtractor;
-import de.l3s.boilerpipe.extractors.KeepEverythingExtractor;
-import de.l3s.boilerpipe.extractors.LargestContentExtractor;
+import de.l3s.boilerpipe.document.TextDocument;
 import gui.Config;
 import gui.Main;
 import gui.Project;
@@ -43,7 +41,6 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -51,11 +48,11 @@ import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
 import java.net.ProtocolException;
 import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.UnknownHostException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
@@ -64,13 +61,24 @@ import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
@@ -82,11 +90,25 @@ import javax.net.ssl.X509TrustManager;
 import javax.swing.JProgressBar;
 import javax.swing.JTextArea;   
 import opennlp.tools.sentdetect.SentenceDetectorME;
-import opennlp.tools.sentdetect.SentenceModel;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.tika.Tika;
+import org.apache.tika.detect.AutoDetectReader;
+import org.apache.tika.detect.CompositeEncodingDetector;
+import org.apache.tika.detect.EncodingDetector;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.fork.ForkParser;
+import org.apache.tika.fork.ParserFactoryFactory;
+import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParserFactory;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.parser.ParsingReader;
+import org.apache.tika.parser.txt.Icu4jEncodingDetector;
+import org.apache.tika.parser.txt.UniversalEncodingDetector;
 //import sun.tools.java.ClassPath;
 
 /**
@@ -99,6 +121,8 @@ public class ContentExtractor {
     
     private final String        userAgent;
     private final int           maxDownloadAttempts = 3;
+    private final int           maxLanguageSample   = 100000;   // characters of text used to detect the language of a document
+    private final int           BUFFER_BLOCK_SIZE   = 65536;
     
     private int                 connectionTimeout               = 5000;
     private int                 readTimeout                     = 5000;
@@ -106,10 +130,64 @@ public class ContentExtractor {
     private int                 maxBlackListTokens              = 10;
     
     private Tika                tika;
+    private ExecutorService     parseExecutor;
+    private ForkParser          forkParser;
+    private boolean             forkedParsing                   = false;
+    private int                 forkedParserHeapSize            = 512;     // MB
+    private int                 parseTimeout                    = 120000;  // milliseconds
+    private int                 maxBufferedDocumentSize         = 4194304; // bytes
+    private DocumentBuffer.Pool bufferPool;
+    private ExecutorService     archiveExecutor;
+    // documents downloaded by the internal downloader, until the extraction stage takes them
+    private final ConcurrentHashMap<CorpusChunk, DocumentBuffer> bufferedDownloads = new ConcurrentHashMap<>();
     private LanguageDetector    languageDetector;
     private HtmlExtractionMode  htmlExtractionMode = HtmlExtractionMode.BOILERPIPE_ARTICLE;
+    private boolean             compareHtmlExtractionModes = false;
+    private JsoupExtractor      jsoupExtractor = new JsoupExtractor();
+    // only used when the character set of a page is not declared anywhere
+    private final EncodingDetector statisticalEncodingDetector = new CompositeEncodingDetector(Arrays.<EncodingDetector>asList(
+            new UniversalEncodingDetector(),
+            new Icu4jEncodingDetector()));
+    private ContentTypePolicy   contentTypePolicy = ContentTypePolicy.EXTRACTABLE;
     
     private ArrayList<String>   blackList = new ArrayList<>();
+    private TextSink.Blacklist  compiledBlackList;
+    
+    private int                 downloadThreads                 = 1;
+    private int                 maxConnectionsPerHost           = 2;
+    private int                 extractionThreads               = 1;
+    private int                 filterThreads                   = 1;
+    private int                 writerThreads                   = 1;
+    private int                 pipelineQueueSize               = 16;
+    private int                 curlBatchSize                   = 0;
+    private boolean             earlyLanguageSniffing           = false;
+    private int                 languageSniffSize               = 16384;
+    private LanguageSniffer     languageSniffer;
+    private RateLimiter         rateLimiter;
+    private boolean             priorityDownloads               = false;
+    private Map<String, Integer> tupleCounts                    = new HashMap<>();
+    private DownloadScheduler<ChunkJob> downloadScheduler;
+    private HostLimiter         hostLimiter;
+    private HttpClientDownloader httpClientDownloader;
+    private DownloadCache       downloadCache;
+    private ExtractionCache     extractionCache;
+    private HostHealth          hostHealth;
+    private AdaptiveTimeouts    adaptiveTimeouts;
+    private ChunkJournal        journal;
+    private CurlBatch           curlBatch;
+    private final RedirectFollower redirectFollower = new RedirectFollower(RedirectFollower.DEFAULT_MAX_HOPS);
+    private final RetryScheduler retryScheduler     = new RetryScheduler(2000, 60000);
+    
+    // options of the current run
+    private Language                        language;
+    private boolean                         textLevelLanguageFilter;
+    private boolean                         sentLevelLanguageFilter;
+    private int                             minDocSize;
+    private int                             maxDocSize;
+    private int                             maxFileSize;
+    private LinkedHashMap<String, String>   xmlAttributes;
+    private JTextArea                       textArea;
+    private JProgressBar                    progBar;
         
     /**
      *
@@ -143,6 +221,18 @@ public class ContentExtractor {
     public ArrayList<CorpusChunk> extract (File urlList, Language language, boolean textLevelLanguageFilter, boolean sentLevelLanguageFilter, int minSize, int maxSize,
             int maxFileSize, String corpusName, File downloadDir, File corpusDir, File xmlCorpusDir,
             LinkedHashMap<String, String> xmlAttributes, JTextArea textArea, JProgressBar progBar) {
+
+        return extract(readUris(urlList), language, textLevelLanguageFilter, sentLevelLanguageFilter, minSize, maxSize, maxFileSize, corpusName, downloadDir, corpusDir,
+                xmlCorpusDir, xmlAttributes, textArea, progBar);
+    }
+    
+    /**
+     * Read the URLs in a file
+     * 
+     * @param urlList text file containing URLs (one URL per line)
+     * @return 
+     */
+    private ArrayList<URI> readUris(File urlList) {
         ArrayList<URI> uris = new ArrayList<>();
                 
         BufferedReader br;
@@ -164,8 +254,7 @@ public class ContentExtractor {
             Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
         }
 
-        return extract(uris, language, textLevelLanguageFilter, sentLevelLanguageFilter, minSize, maxSize, maxFileSize, corpusName, downloadDir, corpusDir,
-                xmlCorpusDir, xmlAttributes, textArea, progBar);
+        return uris;
     }
     
     private ArrayList<CorpusChunk> extract (ArrayList<URI> uris, Language language, boolean textLevelLanguageFilter, boolean sentLevelLanguageFilter, int minDocSize,
@@ -173,9 +262,375 @@ public class ContentExtractor {
             LinkedHashMap<String, String> xmlAttributes, JTextArea textArea, JProgressBar progBar) {
         
         ArrayList<CorpusChunk> corpusChunks = new ArrayList<>();
+        
+        // store options for this run, they are shared by all the workers
+        this.language                   = language;
+        this.textLevelLanguageFilter    = textLevelLanguageFilter;
+        this.sentLevelLanguageFilter    = sentLevelLanguageFilter;
+        this.minDocSize                 = minDocSize;
+        this.maxDocSize                 = maxDocSize;
+        this.maxFileSize                = maxFileSize;
+        this.xmlAttributes              = xmlAttributes;
+        this.textArea                   = textArea;
+        this.progBar                    = progBar;
                 
-        // initialize Tika
-        tika = new Tika();
+        startRun(extractionThreads);
+        
+        corpusChunks.addAll(createChunks(uris, corpusName, downloadDir, corpusDir, xmlCorpusDir));
+        
+        // resume an interrupted run: chunks recorded in the journal are not processed again
+        if (journal != null) {
+            int recorded = journal.open(getSettingsDigest());
+            if (recorded > 0 && textArea != null) {
+                textArea.append("Resuming previous run (" + recorded + " documents already processed)" + System.lineSeparator());
+            }
+        }
+        
+        downloadScheduler = priorityDownloads ? new DownloadScheduler<ChunkJob>() : null;
+        
+        ArrayList<ChunkJob> jobs = new ArrayList<>();
+        for (int i = 0; i < corpusChunks.size(); ++i) {
+            CorpusChunk corpusChunk = corpusChunks.get(i);
+            
+            if (journal != null && journal.restore(corpusChunk, corpusChunk.getUri())) {
+                // documents of the previous run tell which hosts are worth downloading from
+                if (downloadScheduler != null) downloadScheduler.record(corpusChunk.getUri(), corpusChunk.getStatus() == CorpusChunk.CorpusChunkStatus.OK);
+                updateProgressBar(progBar);
+                continue;
+            }
+            
+            ChunkJob job = new ChunkJob(corpusChunk);
+            
+            Integer tupleCount = tupleCounts.get(uris.get(i).toString());
+            if (tupleCount != null) job.tupleCount = tupleCount;
+            
+            jobs.add(job);
+        }
+        
+        // the number of connections to a single host is capped by the host limiter,
+        // it is shared by the workers and the curl batch
+        hostLimiter = new HostLimiter(maxConnectionsPerHost);
+        
+        // new chunks are handed out by the scheduler, best ones first
+        Iterator<ChunkJob> fresh = jobs.iterator();
+        
+        if (downloadScheduler != null) {
+            for (ChunkJob job : jobs) {
+                downloadScheduler.add(job, job.requestedUri, job.tupleCount);
+            }
+            
+            fresh = downloadScheduler;
+            
+            // the curl batch cannot follow the scheduler, give it the order the workers will most likely ask for
+            startCurlBatch(getPlannedOrder(jobs));
+        }
+        else {
+            startCurlBatch(jobs);
+        }
+        
+        // process chunks one at a time in this thread, chunks that failed for
+        // temporary reasons are retried when their delay expires
+        if (downloadThreads <= 1) {
+            PriorityQueue<ChunkJob> retries = new PriorityQueue<>(11, new Comparator<ChunkJob>() {
+                @Override
+                public int compare(ChunkJob job1, ChunkJob job2) {
+                    return Long.compare(job1.retryAt, job2.retryAt);
+                }
+            });
+            
+            while (fresh.hasNext() || !retries.isEmpty()) {
+                ChunkJob job;
+                
+                if (!retries.isEmpty() && (!fresh.hasNext() || retries.peek().retryAt <= System.currentTimeMillis())) {
+                    job = retries.poll();
+                    
+                    try {
+                        long wait = job.retryAt - System.currentTimeMillis();
+                        if (wait > 0) Thread.sleep(wait);
+                    } catch (InterruptedException ex) {
+                        Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "corpus creation interrupted", ex);
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                else {
+                    job = fresh.next();
+                }
+                
+                if (!processChunk(job)) retries.add(job);
+            }
+            
+            if (curlBatch != null) curlBatch.close();
+            if (journal != null) journal.close();
+            finishRun();
+            
+            return corpusChunks;
+        }
+        
+        // process chunks in a pipeline: every stage has its own pool of workers
+        // and they are joined by bounded queues, so downloads (I/O bound) and
+        // extraction (CPU bound) overlap without piling up documents in memory
+        final Pipeline<ChunkJob> pipeline = new Pipeline<>(new Pipeline.Listener<ChunkJob>() {
+            @Override
+            public void itemDone(ChunkJob job) {
+                // extracted text is not needed anymore
+                job.text = null;
+                job.sink = null;
+                if (journal != null) journal.append(job.chunk, job.requestedUri);
+                if (downloadScheduler != null) downloadScheduler.record(job.requestedUri, job.chunk.getStatus() == CorpusChunk.CorpusChunkStatus.OK);
+                updateProgressBar(ContentExtractor.this.progBar);
+            }
+
+            @Override
+            public void itemFailed(ChunkJob job, RuntimeException ex) {
+                job.chunk.setStatus(CorpusChunk.CorpusChunkStatus.CANNOT_EXTRACT);
+            }
+        });
+        
+        pipeline.addStage("download", downloadThreads, pipelineQueueSize, new Pipeline.Stage<ChunkJob>() {
+            @Override
+            public boolean process(ChunkJob job) {
+                if (downloadChunk(job.chunk)) return true;
+                
+                // temporary failures go back to the queue instead of blocking this worker
+                if (scheduleRetry(job)) {
+                    pipeline.retryLater(job, job.retryAt - System.currentTimeMillis());
+                }
+                
+                return false;
+            }
+        });
+        
+        pipeline.addStage("extract", extractionThreads, pipelineQueueSize, new Pipeline.Stage<ChunkJob>() {
+            @Override
+            public boolean process(ChunkJob job) {
+                return extractChunk(job);
+            }
+        });
+        
+        pipeline.addStage("filter", filterThreads, pipelineQueueSize, new Pipeline.Stage<ChunkJob>() {
+            @Override
+            public boolean process(ChunkJob job) {
+                return filterChunk(job);
+            }
+        });
+        
+        pipeline.addStage("write", writerThreads, pipelineQueueSize, new Pipeline.Stage<ChunkJob>() {
+            @Override
+            public boolean process(ChunkJob job) {
+                writeChunk(job);
+                return true;
+            }
+        });
+        
+        try {
+            pipeline.run(fresh);
+        } catch (InterruptedException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "corpus creation interrupted", ex);
+            Thread.currentThread().interrupt();
+        }
+        
+        if (curlBatch != null) curlBatch.close();
+        if (journal != null) journal.close();
+        finishRun();
+        
+        return corpusChunks;
+    }
+    
+    /**
+     * Extract text again from the files downloaded by a previous run, without
+     * downloading anything (e.g. to try another HTML extraction mode or other
+     * filters).
+     * 
+     * Extraction is CPU bound, so documents are processed by a work stealing
+     * pool with one worker per core. The URL list must be the one the files
+     * were downloaded from, since file names depend on the position of the
+     * URLs in the list.
+     * 
+     * @param urlList text file containing the URLs the files were downloaded from (one URL per line)
+     * @param language language documents are supposed to be in or null if no filtering is required
+     * @param textLevelLanguageFilter filter out texts in the wrong language
+     * @param sentLevelLanguageFilter filter out sentences in the wrong language
+     * @param minDocSize minimum size of the extracted text file, in characters (-1 means no filtering)
+     * @param maxDocSize maximum size of the extracted text file, in characters (-1 means no filtering)
+     * @param corpusName
+     * @param downloadDir directory where original downloaded files were saved
+     * @param corpusDir directory where extracted files will be saved
+     * @param xmlCorpusDir directory where extracted XML files will be saved
+     * @param xmlAttributes optional XML attribute HashMap, key is the attribute's name, value is the value
+     * @param textArea a TextArea GUI element where messages will be printed out
+     * @param progBar a ProgressBar GUI element that will track job progress
+     * @return 
+     */
+    public ArrayList<CorpusChunk> reextract(File urlList, Language language, boolean textLevelLanguageFilter, boolean sentLevelLanguageFilter, int minDocSize,
+            int maxDocSize, String corpusName, File downloadDir, File corpusDir, File xmlCorpusDir,
+            LinkedHashMap<String, String> xmlAttributes, JTextArea textArea, JProgressBar progBar) {
+        
+        // store options for this run, they are shared by all the workers
+        this.language                   = language;
+        this.textLevelLanguageFilter    = textLevelLanguageFilter;
+        this.sentLevelLanguageFilter    = sentLevelLanguageFilter;
+        this.minDocSize                 = minDocSize;
+        this.maxDocSize                 = maxDocSize;
+        this.maxFileSize                = 0;
+        this.xmlAttributes              = xmlAttributes;
+        this.textArea                   = textArea;
+        this.progBar                    = progBar;
+        
+        int workers = Runtime.getRuntime().availableProcessors();
+        
+        startRun(workers);
+        
+        ArrayList<CorpusChunk> corpusChunks = createChunks(readUris(urlList), corpusName, downloadDir, corpusDir, xmlCorpusDir);
+        
+        // downloaded files are named after their chunk, with the extension of their type
+        HashMap<String, File> downloadedFiles = new HashMap<>();
+        File[] files = downloadDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                downloadedFiles.put(file.getName(), file);
+                downloadedFiles.put(FilenameUtils.removeExtension(file.getName()), file);
+            }
+        }
+        
+        if (textArea != null) textArea.append("Extracting text from downloaded files with " + workers + " workers" + System.lineSeparator());
+        
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        
+        try {
+            pool.submit(new ReextractionTask(corpusChunks, downloadedFiles, 0, corpusChunks.size())).get();
+        } catch (InterruptedException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "corpus creation interrupted", ex);
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
+        }
+        
+        pool.shutdown();
+        finishRun();
+        
+        return corpusChunks;
+    }
+    
+    /**
+     * Extract, filter and write a range of already downloaded chunks,
+     * splitting it so that idle workers can steal half of it
+     */
+    private class ReextractionTask extends RecursiveAction {
+        private static final long           serialVersionUID = 1L;
+
+        private final List<CorpusChunk>     corpusChunks;
+        private final Map<String, File>     downloadedFiles;
+        private final int                   from;
+        private final int                   to;
+
+        private ReextractionTask(List<CorpusChunk> corpusChunks, Map<String, File> downloadedFiles, int from, int to) {
+            this.corpusChunks       = corpusChunks;
+            this.downloadedFiles    = downloadedFiles;
+            this.from               = from;
+            this.to                 = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ReextractionTask(corpusChunks, downloadedFiles, from, middle),
+                        new ReextractionTask(corpusChunks, downloadedFiles, middle, to));
+                return;
+            }
+            
+            if (to > from) {
+                CorpusChunk corpusChunk = corpusChunks.get(from);
+                reextractChunk(corpusChunk, downloadedFiles.get(corpusChunk.getBaseFileName()));
+            }
+        }
+    }
+    
+    /**
+     * Extract, filter and write a chunk from a file downloaded by a previous run.
+     * 
+     * @param corpusChunk
+     * @param downloadedFile the downloaded file or null if the chunk was not downloaded
+     */
+    private void reextractChunk(CorpusChunk corpusChunk, File downloadedFile) {
+        // files written by the previous run must not survive if the document is discarded this time
+        corpusChunk.getExtractedFile().delete();
+        corpusChunk.getExtractedXMLFile().delete();
+        
+        try {
+            if (downloadedFile == null) {
+                corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.CANNOT_DOWNLOAD);
+            }
+            else {
+                corpusChunk.setDownloadedFile(downloadedFile);
+                
+                // the content type sent by the server is lost, detect it from the file
+                DocumentBuffer content = DocumentBuffer.load(downloadedFile, bufferPool, maxBufferedDocumentSize);
+                String mimeType = detectMimeType(content, downloadedFile.getName());
+                
+                if (mimeType == null) {
+                    content.release();
+                    corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.CANNOT_PARSE);
+                }
+                else {
+                    corpusChunk.setMimeType(mimeType);
+                    
+                    // the extraction stage takes the file from memory
+                    bufferedDownloads.put(corpusChunk, content);
+                    
+                    ChunkJob job = new ChunkJob(corpusChunk);
+                    
+                    if (extractChunk(job) && filterChunk(job)) {
+                        writeChunk(job);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
+            corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.CANNOT_EXTRACT);
+        } catch (RuntimeException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, "unexpected error while processing " + corpusChunk.getUri(), ex);
+            corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.CANNOT_EXTRACT);
+        }
+        
+        updateProgressBar(progBar);
+    }
+    
+    /**
+     * Set up what is shared by the workers of a run
+     * 
+     * @param workers number of extraction workers
+     */
+    private void startRun(int workers) {
+        // initialize Tika once, the parser is thread safe and shared by all the workers
+        if (tika == null) tika = new Tika();
+        
+        // parse documents in separate JVMs, so that a pathological document cannot stall or crash the build
+        forkParser = forkedParsing ? createForkParser(workers) : null;
+        
+        // documents are parsed by a fixed pool of threads while the extraction workers read the text
+        parseExecutor = Executors.newFixedThreadPool(Math.max(1, workers), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "tika-parser");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        
+        // downloaded documents are kept in memory for parsing, the copy in the
+        // download directory is written in the background
+        bufferPool = new DocumentBuffer.Pool(BUFFER_BLOCK_SIZE, 16 * (downloadThreads + workers));
+        archiveExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "archive-writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
         
         // initialize language detector
         try {
@@ -190,13 +645,49 @@ public class ContentExtractor {
         } catch (IOException ex) {
             Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
         }
-
+        
+        // drop pages in the wrong language while they are being downloaded
+        languageSniffer = null;
+        if (earlyLanguageSniffing && textLevelLanguageFilter && languageDetector != null && language != null && language != Language._unspecified) {
+            languageSniffer = new LanguageSniffer(languageDetector, language, languageSniffSize);
+        }
+        
+        // blacklisted words are counted while the text is extracted
+        compiledBlackList = blackList.isEmpty() ? null : new TextSink.Blacklist(blackList);
+    }
+    
+    /**
+     * Release what was set up by startRun
+     */
+    private void finishRun() {
+        parseExecutor.shutdownNow();
+        if (forkParser != null) forkParser.close();
+        finishArchiving();
+    }
+    
+    /**
+     * Create the chunks of a list of URIs, file names only depend on the
+     * position of the URI in the list
+     * 
+     * @param uris
+     * @param corpusName
+     * @param downloadDir
+     * @param corpusDir
+     * @param xmlCorpusDir
+     * @return 
+     */
+    private ArrayList<CorpusChunk> createChunks(List<URI> uris, String corpusName, File downloadDir, File corpusDir, File xmlCorpusDir) {
+        ArrayList<CorpusChunk> corpusChunks = new ArrayList<>();
+        
         // compute number of figures for file names
         Integer leadingZeroes = (int) Math.ceil(Math.log10(uris.size()));
         if (leadingZeroes <1) leadingZeroes = 1;
         
         int fileCount = 0;
 
+        // create all corpus chunks beforehand, so that file names only depend on
+        // the position of the URI in the list and not on the order in which
+        // downloads are completed
         Iterator<URI> it = uris.iterator();
         while (it.hasNext()) {
             URI currentURI = it.next();
@@ -216,140 +707,548 @@ public class ContentExtractor {
             corpusChunk.setXmlCorpusDir(xmlCorpusDir);
 
             corpusChunks.add(corpusChunk);
+        }
+        
+        return corpusChunks;
+    }
+    
+    /**
+     * Wait until all downloaded documents have been written to the download
+     * directory, even if corpus creation was interrupted
+     */
+    private void finishArchiving() {
+        archiveExecutor.shutdown();
+        
+        boolean interrupted = Thread.interrupted();
+        
+        while (true) {
+            try {
+                if (archiveExecutor.awaitTermination(1, TimeUnit.MINUTES)) break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        
+        if (interrupted) Thread.currentThread().interrupt();
+        
+        bufferedDownloads.clear();
+    }
+    
+    /**
+     * Return the order in which the scheduler would hand out the jobs if no
+     * outcome was recorded in the meantime
+     * 
+     * @param jobs
+     * @return 
+     */
+    private List<ChunkJob> getPlannedOrder(List<ChunkJob> jobs) {
+        DownloadScheduler<ChunkJob> plan = new DownloadScheduler<>();
+        
+        for (ChunkJob job : jobs) {
+            plan.add(job, job.requestedUri, job.tupleCount);
+        }
+        
+        ArrayList<ChunkJob> plannedJobs = new ArrayList<>(jobs.size());
+        while (plan.hasNext()) plannedJobs.add(plan.next());
+        
+        return plannedJobs;
+    }
+    
+    /**
+     * Start downloading all the chunks with a few curl processes instead of
+     * one process per chunk (or two, since the content type is requested
+     * separately), if curl is the selected downloader.
+     * 
+     * Only chunks that need a network request are downloaded in batch: chunks
+     * in the download cache are left to the workers, so that stale copies can
+     * still be revalidated.
+     * 
+     * No batch is started while the request rate is limited: curl ignores
+     * --rate in parallel mode and starts the whole batch at once, so the
+     * requests are left to the workers, which wait for the rate limiter.
+     * 
+     * @param jobs 
+     */
+    private void startCurlBatch(List<ChunkJob> jobs) {
+        curlBatch = null;
+        
+        Downloader downloader = mainPanel.getMain().getConfig().getDownloader();
+        String curlPath = mainPanel.getPaths().getCurlPath();
+        
+        if (curlBatchSize <= 0 || curlPath == null || (downloader != Downloader.CURL_OS && downloader != Downloader.CURL_EXT)) return;
+        if (rateLimiter != null && rateLimiter.getRequestsPerSecond() > 0) return;
+        
+        ArrayList<CorpusChunk> batchChunks = new ArrayList<>();
+        for (ChunkJob job : jobs) {
+            URI uri = job.chunk.getUri();
             
-            // determine file size
-            Integer fileSize = determineFileSize(corpusChunk.getUri());
-            corpusChunk.setDownloadedFileSize(fileSize);
-                        
-            // if file is too big, skip it
-            if (maxFileSize > 0 && fileSize > maxFileSize) {
-                // print status to GUI textarea
-                if (textArea != null) {
-                    textArea.append("Skipping " + fixedUri + " file is too large (" +
-                        Utils.convertBytesToHRRepresentation(fileSize.longValue()) + ") limit was set by user at " +
-                        Utils.convertBytesToHRRepresentation(maxFileSize) +
-                        System.lineSeparator());
+            if (uri == null || (!"http".equals(uri.getScheme()) && !"https".equals(uri.getScheme()))) continue;
+            if (downloadCache != null && downloadCache.lookup(uri) != null) continue;
+            
+            batchChunks.add(job.chunk);
+        }
+        
+        if (batchChunks.isEmpty()) return;
+        
+        Config config = mainPanel.getMain().getConfig();
+        Project project = mainPanel.getProject();
+        
+        curlBatch = new CurlBatch(curlPath, userAgent, downloadThreads, curlBatchSize);
+        curlBatch.setMaxFileSize(maxFileSize);
+        curlBatch.setMaxRedirects(redirectFollower.getMaxHops());
+        curlBatch.setConnectTimeout(connectionTimeout);
+        curlBatch.setReadTimeout(readTimeout);
+        curlBatch.setAdaptiveTimeouts(adaptiveTimeouts);
+        curlBatch.setRateLimiter(rateLimiter);
+        curlBatch.setHostLimiter(hostLimiter);
+        
+        if (config.getUseProxy()) {
+            curlBatch.setProxy(config.getHttpProxy(), config.getHttpProxyPort(), config.getHttpsProxy(), config.getHttpsProxyPort());
+            
+            if (config.getProxyAuth()) {
+                curlBatch.setProxyCredentials(project.getHttpProxyUser(), project.getHttpProxyPassword(),
+                        project.getHttpsProxyUser(), project.getHttpsProxyPassword());
+            }
+        }
+        
+        curlBatch.start(batchChunks);
+    }
+    
+    /**
+     * Compute a digest of the options that affect the outcome of a run, so that
+     * a journal written with different options is not used to resume it.
+     * 
+     * @return 
+     */
+    private String getSettingsDigest() {
+        String settings =
+                language + "|" +
+                textLevelLanguageFilter + "|" +
+                sentLevelLanguageFilter + "|" +
+                minDocSize + "|" +
+                maxDocSize + "|" +
+                maxFileSize + "|" +
+                htmlExtractionMode + "|" +
+                jsoupExtractor + "|" +
+                compareHtmlExtractionModes + "|" +
+                earlyLanguageSniffing + "|" +
+                languageSniffSize + "|" +
+                contentTypePolicy + "|" +
+                maxBlackListTypes + "|" +
+                maxBlackListTokens + "|" +
+                blackList + "|" +
+                xmlAttributes;
+        
+        return Utils.getMd5Digest(settings);
+    }
+    
+    /**
+     * Run all the processing stages on a single chunk, one after the other.
+     * 
+     * The outcome is recorded in the status of the chunk.
+     * 
+     * @param job 
+     * @return true if the chunk is done, false if the download must be retried later
+     */
+    private boolean processChunk(ChunkJob job) {
+        try {
+            if (!downloadChunk(job.chunk)) {
+                if (scheduleRetry(job)) return false;
+            }
+            else if (extractChunk(job) && filterChunk(job)) {
+                writeChunk(job);
+            }
+        } catch (RuntimeException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, "unexpected error while processing " + job.chunk.getUri(), ex);
+            job.chunk.setStatus(CorpusChunk.CorpusChunkStatus.CANNOT_EXTRACT);
+        }
+        
+        job.text = null;
+        job.sink = null;
+        if (journal != null) journal.append(job.chunk, job.requestedUri);
+        if (downloadScheduler != null) downloadScheduler.record(job.requestedUri, job.chunk.getStatus() == CorpusChunk.CorpusChunkStatus.OK);
+        updateProgressBar(progBar);
+        
+        return true;
+    }
+    
+    /**
+     * Decide whether a failed download must be tried again and when.
+     * 
+     * Only failures that may be temporary (timeouts, connection errors, 5xx
+     * responses...) are retried, up to maxDownloadAttempts times.
+     * 
+     * @param job
+     * @return true if the chunk must be retried (job.retryAt is set), false otherwise
+     */
+    private boolean scheduleRetry(ChunkJob job) {
+        CorpusChunk corpusChunk = job.chunk;
+        
+        if (!corpusChunk.isRetryable() || corpusChunk.getDownloadAttempts() >= maxDownloadAttempts) return false;
+        
+        long delay = retryScheduler.failure(corpusChunk.getUri(), corpusChunk.getDownloadAttempts());
+        job.retryAt = System.currentTimeMillis() + delay;
+        
+        if (textArea != null) {
+            textArea.append("Will retry " + corpusChunk.getUri() + " in " + (delay / 1000) + " seconds" + System.lineSeparator());
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Network part of the processing: determine size and download the chunk.
+     * 
+     * If concurrent downloads are enabled, the number of connections to the
+     * host of the chunk is limited by the host limiter.
+     * 
+     * @param corpusChunk
+     * @return true if the file was downloaded, false otherwise (status is set accordingly)
+     */
+    private boolean downloadChunk(CorpusChunk corpusChunk) {
+        URI fixedUri = corpusChunk.getUri();
+        
+        if (fixedUri == null) {
+            corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.CANNOT_DOWNLOAD);
+            return false;
+        }
+        
+        boolean limited = hostLimiter != null;
+        
+        try {
+            // the curl batch holds the connection while it downloads a chunk, unless it could not download it
+            if (limited && isInCurlBatch(corpusChunk)) limited = curlBatch.await(corpusChunk) == null;
+            
+            if (limited) hostLimiter.acquire(fixedUri);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.CANNOT_DOWNLOAD);
+            return false;
+        }
+        
+        try {
+            // serve fresh copies from the download cache without touching the network
+            DownloadCache.Entry cached = null;
+            if (downloadCache != null && !"file".equals(fixedUri.getScheme())) {
+                cached = downloadCache.lookup(fixedUri);
+                
+                if (cached != null && downloadCache.isFresh(cached)) {
+                    // the cache is shared by all projects, the document may exceed the limit of this one
+                    if (maxFileSize > 0 && cached.getBodySize() > maxFileSize) {
+                        corpusChunk.setDownloadedFileSize(cached.getBodySize());
+                        corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.FILE_TOO_LARGE);
+                        reportFailure(fixedUri, corpusChunk);
+                        return false;
+                    }
+                    
+                    // its content type policy may also differ, the type of the copy is known without reading it
+                    corpusChunk.setMimeType(cached.getMimeType());
+                    if (!isAdmitted(corpusChunk)) {
+                        reportFailure(fixedUri, corpusChunk);
+                        return false;
+                    }
+                    
+                    if (downloadCache.materialize(cached, corpusChunk)) {
+                        if (textArea != null) textArea.append("Using cached copy of " + fixedUri + System.lineSeparator());
+                        return true;
+                    }
                 }
-
-                corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.FILE_TOO_LARGE);
-                updateProgressBar(progBar);
-                continue;
-            }            
+            }
+            
+            // don't waste time on hosts that keep failing (chunks in a curl batch were already requested)
+            if (hostHealth != null && !isInCurlBatch(corpusChunk) && !hostHealth.allowRequest(fixedUri)) {
+                corpusChunk.setRetryable(false);
+                corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.CANNOT_DOWNLOAD);
+                if (textArea != null) textArea.append("Skipping " + fixedUri + " host is not responding" + System.lineSeparator());
+                return false;
+            }
+            
+            // there is no curl batch while requests are limited, the batch only shares the bandwidth limit
+            if (rateLimiter != null && !isInCurlBatch(corpusChunk)) {
+                try {
+                    rateLimiter.acquireRequest();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.CANNOT_DOWNLOAD);
+                    return false;
+                }
+            }
             
             // print progress to GUI textarea
             if (textArea != null) textArea.append("Downloading " + fixedUri + System.lineSeparator());
+
+            // download file, the file size limit is enforced while downloading
+            boolean downloaded = download(corpusChunk);
             
-            // download file
-            if (!download(corpusChunk)) {
-                corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.CANNOT_DOWNLOAD);
-                if (textArea != null) textArea.append("Could not download " + fixedUri + System.lineSeparator());
-                updateProgressBar(progBar);
-                continue;
+            if (hostHealth != null) updateHostHealth(fixedUri, corpusChunk, downloaded);
+            
+            if (!downloaded) {
+                reportFailure(fixedUri, corpusChunk);
+                return false;
             }
-
+            
+            retryScheduler.success(fixedUri);
+            
+            // a stale copy may have been revalidated by the server, otherwise cache the new file
+            if (downloadCache != null && !corpusChunk.isDownloadedFromCache() && !"file".equals(fixedUri.getScheme())) {
+                // the cache copies the file, it must have been written
+                DocumentBuffer content = bufferedDownloads.get(corpusChunk);
+                if (content != null) content.awaitArchived();
+                
+                downloadCache.store(fixedUri, corpusChunk);
+            }
+        } finally {
+            // the probe of an open breaker was not reported if the request was never sent or failed unexpectedly
+            if (hostHealth != null) hostHealth.release(fixedUri);
+            
+            if (limited) hostLimiter.release(fixedUri);
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Print the reason why a chunk was not downloaded to the GUI textarea,
+     * chunks that were skipped for no specific reason could not be downloaded.
+     * 
+     * @param uri
+     * @param corpusChunk 
+     */
+    private void reportFailure(URI uri, CorpusChunk corpusChunk) {
+        
+        // if file is too big, skip it
+        if (corpusChunk.getStatus() == CorpusChunk.CorpusChunkStatus.FILE_TOO_LARGE) {
+            // print status to GUI textarea
+            if (textArea != null) {
+                textArea.append("Skipping " + uri + " file is too large (" +
+                    Utils.convertBytesToHRRepresentation(Math.max(1, corpusChunk.getDownloadedFileSize())) + ") limit was set by user at " +
+                    Utils.convertBytesToHRRepresentation(maxFileSize) +
+                    System.lineSeparator());
+            }
+            
+            return;
+        }
+        
+        if (corpusChunk.getStatus() == CorpusChunk.CorpusChunkStatus.WRONG_LANGUAGE) {
+            if (textArea != null) textArea.append("Skipping " + uri + " document is in the wrong language" + System.lineSeparator());
+            return;
+        }
+        
+        if (corpusChunk.getStatus() == CorpusChunk.CorpusChunkStatus.UNSUPPORTED_CONTENT_TYPE) {
+            if (textArea != null) textArea.append("Skipping " + uri + " content type " + corpusChunk.getMimeType().getMimeType() + " is not accepted" + System.lineSeparator());
+            return;
+        }
+        
+        corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.CANNOT_DOWNLOAD);
+        if (textArea != null) textArea.append("Could not download " + uri + System.lineSeparator());
+    }
+    
+    /**
+     * Record the outcome of a download in the host health tracker.
+     * 
+     * Only failures that may be temporary count against the host, any other
+     * outcome means that the host answered.
+     * 
+     * @param requestedUri URI requested before following redirects
+     * @param corpusChunk
+     * @param downloaded 
+     */
+    private void updateHostHealth(URI requestedUri, CorpusChunk corpusChunk, boolean downloaded) {
+        boolean sameHost = HostLimiter.getHostKey(requestedUri).equals(HostLimiter.getHostKey(corpusChunk.getUri()));
+        
+        if (!downloaded && corpusChunk.isRetryable()) {
+            if (hostHealth.failure(corpusChunk.getUri())) {
+                Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "too many failures, skipping host {0} for a while", corpusChunk.getUri().getHost());
+            }
+            
+            // the requested host answered with a redirect
+            if (!sameHost) hostHealth.success(requestedUri);
+            
+            return;
+        }
+        
+        hostHealth.success(requestedUri);
+        if (!sameHost) hostHealth.success(corpusChunk.getUri());
+    }
+    
+    /**
+     * Extraction stage: parse the downloaded file and extract its text.
+     * 
+     * @param job
+     * @return true if text was extracted, false otherwise (status is set accordingly)
+     */
+    private boolean extractChunk(ChunkJob job) {
+        CorpusChunk corpusChunk = job.chunk;
+        
+        // documents downloaded by the internal downloader are already in memory, others are read once
+        DocumentBuffer content = bufferedDownloads.remove(corpusChunk);
+        if (content == null) {
+            try {
+                content = DocumentBuffer.load(corpusChunk.getDownloadedFile(), bufferPool, maxBufferedDocumentSize);
+            } catch (IOException ex) {
+                Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
+                corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.CANNOT_EXTRACT);
+                return false;
+            }
+        }
+        
+        try {
             // set file size in corpus chunk
-            corpusChunk.setDownloadedFileSize(corpusChunk.getDownloadedFile().length());
+            corpusChunk.setDownloadedFileSize(content.length());
 
             if (textArea != null) textArea.append("Parsing file " + System.lineSeparator());
 
             corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.OK);
 
-            // parse content and extract metadata
-            Reader tikaFileReader = parse(corpusChunk);
+            // characters, tokens and blacklisted words are counted as the text comes in
+            job.sink = new TextSink(compiledBlackList);
 
-            if (corpusChunk.getMetadata() == null) {
-                corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.CANNOT_PARSE);
-                updateProgressBar(progBar);
-                continue;
+            boolean useHtmlExtractor = corpusChunk.getMimeType().getMimeType().contains("html") && htmlExtractionMode != HtmlExtractionMode.TIKA;
+
+            // the same document extracted in the same way by a previous run only needs to be filtered again
+            String cacheKey = null;
+            if (extractionCache != null) {
+                try {
+                    String extractionSettings;
+                    if (!useHtmlExtractor)                                      extractionSettings = HtmlExtractionMode.TIKA.name();
+                    else if (htmlExtractionMode == HtmlExtractionMode.JSOUP)    extractionSettings = htmlExtractionMode.name() + " " + jsoupExtractor;
+                    else                                                        extractionSettings = htmlExtractionMode.name();
+
+                    // the page is decoded with the character set declared by the server, if any
+                    if (useHtmlExtractor) extractionSettings += " charset=" + corpusChunk.getDeclaredCharset();
+
+                    cacheKey = ExtractionCache.getKey(content, corpusChunk.getMimeType().getMimeType(), extractionSettings);
+                } catch (IOException ex) {
+                    Logger.getLogger(Main.LOGNAME).log(Level.WARNING, null, ex);
+                }
+
+                // cached text has no statistics for the other modes
+                ExtractionCache.Extraction cached = (cacheKey == null || compareHtmlExtractionModes) ? null : extractionCache.lookup(cacheKey);
+
+                if (cached != null) {
+                    corpusChunk.setMetadata(cached.getMetadata());
+                    if (useHtmlExtractor) corpusChunk.setHtmlExtractionMode(htmlExtractionMode);
+
+                    job.text = cached.getText();
+                    job.sink.append(job.text);
+                    corpusChunk.setCharacterCount(job.sink.getCharacterCount());
+
+                    return true;
+                }
             }
-            
-            String text;
-            // use BolierPipe for HTML files or Tika for everything else
-            // extracted text will be written to output file, metadata of the
-            // operation will be saved in the corpusChunk object
-            if (corpusChunk.getMimeType().getMimeType().contains("html") && htmlExtractionMode != HtmlExtractionMode.TIKA) {
-                text = extractWithBoilerpipe(corpusChunk, xmlAttributes);
+
+            // use BolierPipe (or jsoup) for HTML files or Tika for everything else
+            // metadata of the operation will be saved in the corpusChunk object
+            if (useHtmlExtractor) {
+                // Boilerpipe and jsoup parse the page by themselves, they only need the character set
+                detectEncoding(corpusChunk, content);
+
+                if (corpusChunk.getMetadata() == null) {
+                    corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.CANNOT_PARSE);
+                    return false;
+                }
+
+                if (htmlExtractionMode == HtmlExtractionMode.JSOUP) job.text = extractWithJsoup(corpusChunk, content);
+                else job.text = extractWithBoilerpipe(corpusChunk, content);
+                if (job.text != null) job.sink.append(job.text);
                 corpusChunk.setHtmlExtractionMode(htmlExtractionMode);
             }
             else {
-                text = extractWithTikaReader(tikaFileReader, corpusChunk, xmlAttributes);
-            }
+                // parse content and extract metadata
+                Reader tikaFileReader = parse(corpusChunk, content);
 
-            if (text == null) {
-                corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.CANNOT_EXTRACT);
-                updateProgressBar(progBar);
-                continue;
-            }
-
-            // check blacklisted words
-            if (!getBlackList().isEmpty()) {
-                if (isBadDocument(text)) {
-                    corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.TOO_MANY_BLACKLISTED_WORDS);
-                    corpusChunk.getExtractedFile().delete();
-                    corpusChunk.getExtractedXMLFile().delete();
-                    updateProgressBar(progBar);
-                    continue;
+                if (corpusChunk.getMetadata() == null) {
+                    corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.CANNOT_PARSE);
+                    return false;
                 }
-            }
 
-            // check whitelisted words
-            // FIXME: THIS IS JUST A HACK I USED TO CREATE A FEW SPECIFIC CORPORA
-//            if (!isGoodDocument(text, "fluegelhorn")) {
-//                corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.TOO_FEW_WHITELISTED_WORDS_FIX_ME);
-//                corpusChunk.getExtractedFile().delete();
-//                corpusChunk.getExtractedXMLFile().delete();
-//                updateProgressBar(progBar);
-//                continue;
-//            }
-
-            // check text length
-            if (minDocSize > 0 && corpusChunk.getCharacterCount() < minDocSize) {
-                corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.DOC_TOO_SMALL);
-                corpusChunk.getExtractedFile().delete();
-                corpusChunk.getExtractedXMLFile().delete();
-                updateProgressBar(progBar);
-                continue;      
+                job.text = extractWithTikaReader(tikaFileReader, corpusChunk, job.sink);
             }
 
-            if (maxDocSize > 0 && corpusChunk.getCharacterCount() > maxDocSize) {
-                corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.DOC_TOO_LARGE);
-                corpusChunk.getExtractedFile().delete();
-                corpusChunk.getExtractedXMLFile().delete();
-                updateProgressBar(progBar);
-                continue;
+            if (cacheKey != null && job.text != null) extractionCache.store(cacheKey, job.text, corpusChunk.getMetadata());
+        } finally {
+            content.release();
+        }
+
+        if (job.text == null) {
+            if (corpusChunk.getStatus() != CorpusChunk.CorpusChunkStatus.CANNOT_PARSE) {
+                corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.CANNOT_EXTRACT);
             }
-            
-            // discard the text if the language is wrong or if it cannot be detected
-            if (textLevelLanguageFilter) {
-                // try to detect language
-                detectLanguage(text, language, corpusChunk);                
-                if (corpusChunk.getStatus().equals(CorpusChunk.CorpusChunkStatus.WRONG_LANGUAGE) ||
-                        corpusChunk.getStatus().equals(CorpusChunk.CorpusChunkStatus.CANNOT_DETERMINE_LANGUAGE)) {
-
-                    corpusChunk.getExtractedFile().delete();
-                    corpusChunk.getExtractedXMLFile().delete();
-                    updateProgressBar(progBar);
-                    continue;                
-                }                
+            return false;
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Filter stage: discard documents that do not pass the filters selected by
+     * the user and remove sentences in the wrong language.
+     * 
+     * Nothing has been written to the corpus yet at this point, so discarded
+     * documents leave no files behind.
+     * 
+     * @param job
+     * @return true if the document must be kept, false otherwise (status is set accordingly)
+     */
+    private boolean filterChunk(ChunkJob job) {
+        CorpusChunk corpusChunk = job.chunk;
+        
+        // check blacklisted words
+        if (!getBlackList().isEmpty()) {
+            if (isBadDocument(job.sink)) {
+                corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.TOO_MANY_BLACKLISTED_WORDS);
+                return false;
             }
-            
-            // filter out sentences in the wrong language
-            if (sentLevelLanguageFilter) {
-                text = filterOutSentences(text, language, corpusChunk);
+        }
 
-                // overwrite old extracted files with new ones
-                // FIXME: you should probably find a better way of doing this, now the files are written twice
-                writePlainTextFile(corpusChunk, text);
-                writeXMLFile(corpusChunk, text, xmlAttributes);                
-            }
+        // check whitelisted words
+        // FIXME: THIS IS JUST A HACK I USED TO CREATE A FEW SPECIFIC CORPORA
+//        if (!isGoodDocument(job.text, "fluegelhorn")) {
+//            corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.TOO_FEW_WHITELISTED_WORDS_FIX_ME);
+//            return false;
+//        }
+
+        // check text length
+        if (minDocSize > 0 && corpusChunk.getCharacterCount() < minDocSize) {
+            corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.DOC_TOO_SMALL);
+            return false;      
+        }
 
-            // count tokens
-            corpusChunk.setTokenCount(Tokenizer.count(text));
-            
-            updateProgressBar(progBar);
+        if (maxDocSize > 0 && corpusChunk.getCharacterCount() > maxDocSize) {
+            corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.DOC_TOO_LARGE);
+            return false;
+        }
+
+        // discard the text if the language is wrong or if it cannot be detected
+        if (textLevelLanguageFilter) {
+            // try to detect language
+            detectLanguage(job.sink.getLanguageSample(maxLanguageSample), language, corpusChunk);
+            if (corpusChunk.getStatus().equals(CorpusChunk.CorpusChunkStatus.WRONG_LANGUAGE) ||
+                    corpusChunk.getStatus().equals(CorpusChunk.CorpusChunkStatus.CANNOT_DETERMINE_LANGUAGE)) {
+                return false;                
+            }                
+        }
+
+        // filter out sentences in the wrong language
+        if (sentLevelLanguageFilter) {
+            job.sink = filterOutSentences(job.text, language, corpusChunk);
+            job.text = job.sink.getText();
         }
         
-        return corpusChunks;
+        return true;
+    }
+    
+    /**
+     * Write stage: write the plain text and XML files and count tokens.
+     * 
+     * @param job 
+     */
+    private void writeChunk(ChunkJob job) {
+        writePlainTextFile(job.chunk, job.text);
+        writeXMLFile(job.chunk, job.text, xmlAttributes);
+
+        // tokens were counted while the text was extracted
+        job.chunk.setTokenCount(job.sink.getTokenCount());
     }
     
     private URI fixURI(URI uri) {
@@ -402,17 +1301,23 @@ public class ContentExtractor {
         return null;
     }
     
-    private void updateProgressBar(JProgressBar progBar) {
-        // update progress bar
+    private void updateProgressBar(final JProgressBar progBar) {
+        // update progress bar (on the event dispatch thread, since several
+        // workers may be updating it at the same time)
         if (progBar != null){
-            progBar.setIndeterminate(false);
-            progBar.setValue(progBar.getValue() + 1);                
+            java.awt.EventQueue.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    progBar.setIndeterminate(false);
+                    progBar.setValue(progBar.getValue() + 1);
+                }
+            });
         }            
         
     }
     
     /**
-     * Detect file languages based on a sample of the first 10000 bytes of the chunk
+     * Detect file languages based on a sample of the text of the chunk
      * 
      * @param text
      * @param language
@@ -447,22 +1352,20 @@ public class ContentExtractor {
      * @param text
      * @param language
      * @param corpusChunk
-     * @return 
+     * @return the sentences that were kept
      */
-    private String filterOutSentences(String text, Language language, CorpusChunk corpusChunk) {
+    private TextSink filterOutSentences(String text, Language language, CorpusChunk corpusChunk) {
         
         double  minConfidence = 0.9;    // the minimum confidence that the language is the *wrong one*
         int     minSentenceLength = 0;  // if sentence is shorter than this (in chars) then keep it because there's not enough data for detection
         
-        String output = "";
+        TextSink output = new TextSink(null);
         int skippedSentences = 0;
                
-        // use Apache OpenNLP library to split text into sentences
-        try (InputStream modelIn = ContentExtractor.class.getResourceAsStream("/resources/en-sent.bin")) {
-            
-            SentenceModel model = new SentenceModel(modelIn);
-            
-            SentenceDetectorME sentenceDetector = new SentenceDetectorME(model);
+        // use Apache OpenNLP library to split text into sentences, detectors are not thread safe so every worker has its own
+        SentenceDetectorME sentenceDetector = TextFormatter.getSentenceDetector();
+        
+        if (sentenceDetector != null) {
             
             String sentences[] = sentenceDetector.sentDetect(text);
             
@@ -477,13 +1380,13 @@ public class ContentExtractor {
                 
                 // if sentence is too short, play it safe and keep the sentence
                 if (currentSentence.length() < minSentenceLength) {
-                    output += currentSentence + "\n";
+                    output.append(currentSentence + "\n");
                     continue;                    
                 }
                 
                 // if language could not be detected, play it safe and keep the sentence
                 if (detectedLangs.isEmpty()) {
-                    output += currentSentence + "\n";
+                    output.append(currentSentence + "\n");
                     continue;
                 }                
                 
@@ -494,12 +1397,8 @@ public class ContentExtractor {
                 }
 
                 // if we got this far, keep the sentence
-                output += currentSentence + "\n";
+                output.append(currentSentence + "\n");
             }
-        } catch (FileNotFoundException ex) { 
-            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
-        } catch (IOException ex) {
-            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
         }
         
         corpusChunk.setSkippedSentences(skippedSentences);
@@ -511,17 +1410,35 @@ public class ContentExtractor {
         
         // convert URL to File
         File sourceFile = new File(corpusChunk.getUri());
-
-        // detect file type
-        String mimeType = detectMimeType(sourceFile);
-        corpusChunk.setMimeType(mimeType);
-                
-        // create reference to downloaded file
-        File downloadedFile = new File(corpusChunk.getDownloadDir() + File.separator + corpusChunk.getBaseFileName() + corpusChunk.getMimeType().getDotExtension());
-        corpusChunk.setDownloadedFile(downloadedFile);
         
+        // if file is too big, skip it
+        if (maxFileSize > 0 && sourceFile.length() > maxFileSize) {
+            corpusChunk.setDownloadedFileSize(sourceFile.length());
+            corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.FILE_TOO_LARGE);
+            return false;
+        }
+
         try {
-            FileUtils.copyFile(sourceFile, corpusChunk.getDownloadedFile());
+            // read the file once: detection and extraction work on the copy in memory
+            DocumentBuffer content = DocumentBuffer.load(sourceFile, bufferPool, maxBufferedDocumentSize);
+            
+            // detect file type
+            String mimeType = detectMimeType(content, sourceFile.getName());
+            corpusChunk.setMimeType(mimeType);
+
+            // create reference to downloaded file
+            File downloadedFile = new File(corpusChunk.getDownloadDir() + File.separator + corpusChunk.getBaseFileName() + corpusChunk.getMimeType().getDotExtension());
+            corpusChunk.setDownloadedFile(downloadedFile);
+            
+            if (content.isInMemory()) {
+                content.archive(downloadedFile, archiveExecutor);
+                bufferedDownloads.put(corpusChunk, content);
+            }
+            else {
+                content.release();
+                FileUtils.copyFile(sourceFile, downloadedFile);
+            }
+            
             return true;
         } catch (IOException ex) {
             Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
@@ -541,33 +1458,86 @@ public class ContentExtractor {
      * @return 
      */    
     private boolean download(CorpusChunk corpusChunk) {
+        boolean downloaded = dispatchDownload(corpusChunk);
+        
+        // some downloaders only learn the content type once the file has been transferred
+        if (downloaded && !isAdmitted(corpusChunk)) {
+            DocumentBuffer content = bufferedDownloads.remove(corpusChunk);
+            if (content != null) {
+                content.awaitArchived();
+                content.release();
+            }
+            
+            if (!corpusChunk.isDownloadedFromCache() && corpusChunk.getDownloadedFile() != null) corpusChunk.getDownloadedFile().delete();
+            return false;
+        }
+        
+        return downloaded;
+    }
+    
+    /**
+     * Check the content type of a chunk against the content type policy.
+     * 
+     * @param corpusChunk
+     * @return true if the chunk must be downloaded, false otherwise (status is set accordingly)
+     */
+    private boolean isAdmitted(CorpusChunk corpusChunk) {
+        if (contentTypePolicy.admits(corpusChunk.getMimeType())) return true;
+        
+        corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.UNSUPPORTED_CONTENT_TYPE);
+        corpusChunk.setRetryable(false);
+        
+        return false;
+    }
+    
+    /**
+     * Download a chunk with the downloader suitable for its URI
+     * 
+     * @param corpusChunk
+     * @return 
+     */
+    private boolean dispatchDownload(CorpusChunk corpusChunk) {
 
         if (corpusChunk.incrementDownloadAttempts() > maxDownloadAttempts) return false;
         
+        corpusChunk.setRetryable(false);
+        
+        // the first attempt of chunks in a curl batch is downloaded by the batch
+        if (isInCurlBatch(corpusChunk)) {
+            try {
+                CurlBatch.Transfer transfer = curlBatch.await(corpusChunk);
+                
+                if (transfer != null) return downloadViaCurlBatch(corpusChunk, transfer);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        
+        // go straight to the target of redirects already seen during this run
+        try {
+            redirectFollower.resolve(corpusChunk);
+        } catch (RedirectException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, ex.getMessage());
+            return false;
+        }
+        
         Downloader downloader = mainPanel.getMain().getConfig().getDownloader();
         
         switch (corpusChunk.getUri().getScheme()) {
             case "https":
-                
-                switch (downloader) {
-                    case CURL_EXT:
-                    case CURL_OS:
-                        return downloadViaCurl(corpusChunk);
-                    
-                    default:
-                    case INTERNAL:
-                        return downloadViaHTTPS(corpusChunk);
-                }
-                
             case "http":
                 switch (downloader) {
                     case CURL_EXT:
                     case CURL_OS:
                         return downloadViaCurl(corpusChunk);
+                        
+                    case HTTP_CLIENT:
+                        return getHttpClientDownloader().download(corpusChunk);
 
                     default:
                     case INTERNAL:
-                        return downloadViaHTTP(corpusChunk);
+                        return downloadViaURLConnection(corpusChunk);
                 }
 
             case "file":
@@ -579,6 +1549,43 @@ public class ContentExtractor {
         }
     }
     
+    /**
+     * Return the HttpClient based downloader, creating it on first use.
+     * 
+     * A single instance (and therefore a single connection pool) is shared by
+     * all workers for the whole corpus creation.
+     * 
+     * @return 
+     */
+    private synchronized HttpClientDownloader getHttpClientDownloader() {
+        if (httpClientDownloader == null) {
+            Config config = mainPanel.getMain().getConfig();
+            Project project = mainPanel.getProject();
+            
+            httpClientDownloader = new HttpClientDownloader(userAgent, connectionTimeout, readTimeout);
+            httpClientDownloader.setMaxFileSize(maxFileSize);
+            httpClientDownloader.setDownloadCache(downloadCache);
+            httpClientDownloader.setRedirectFollower(redirectFollower);
+            httpClientDownloader.setAdaptiveTimeouts(adaptiveTimeouts);
+            httpClientDownloader.setContentTypePolicy(contentTypePolicy);
+            httpClientDownloader.setLanguageSniffer(languageSniffer);
+            httpClientDownloader.setRateLimiter(rateLimiter);
+            
+            httpClientDownloader.setUseProxy(config.getUseProxy());
+            httpClientDownloader.setHttpProxy(config.getHttpProxy());
+            httpClientDownloader.setHttpProxyPort(config.getHttpProxyPort());
+            httpClientDownloader.setHttpsProxy(config.getHttpsProxy());
+            httpClientDownloader.setHttpsProxyPort(config.getHttpsProxyPort());
+            httpClientDownloader.setProxyAuth(config.getProxyAuth());
+            httpClientDownloader.setHttpProxyUser(project.getHttpProxyUser());
+            httpClientDownloader.setHttpProxyPassword(project.getHttpProxyPassword());
+            httpClientDownloader.setHttpsProxyUser(project.getHttpsProxyUser());
+            httpClientDownloader.setHttpsProxyPassword(project.getHttpsProxyPassword());
+        }
+        
+        return httpClientDownloader;
+    }
+    
     private boolean downloadViaCurl(CorpusChunk corpusChunk) {
         String curlPath = mainPanel.getPaths().getCurlPath();
         
@@ -605,87 +1612,285 @@ public class ContentExtractor {
         curlWrapper.setHttpsProxyUser(project.getHttpsProxyUser());
         curlWrapper.setHttpsProxyPassword(project.getHttpsProxyPassword());
         
+        curlWrapper.setMaxFileSize(maxFileSize);
+        curlWrapper.setMaxRedirects(redirectFollower.getMaxHops());
+        curlWrapper.setConnectTimeout(getConnectTimeout(corpusChunk.getUri()));
+        curlWrapper.setReadTimeout(getReadTimeout(corpusChunk.getUri()));
+        
+        // curl cannot share the limiter, give each process its share of the bandwidth
+        if (rateLimiter != null) curlWrapper.setLimitRate(rateLimiter.getBytesPerSecondPerTransfer(downloadThreads));
+        
         //first determine contentType
         corpusChunk.setMimeType(curlWrapper.getMimeType());
+        corpusChunk.setDeclaredCharset(CharsetResolver.getCharsetParameter(curlWrapper.getContentType()));
+        
+        if (!isAdmitted(corpusChunk)) return false;
+        
+        // the file is fetched with a second request, which counts against the request rate too
+        if (rateLimiter != null) {
+            try {
+                rateLimiter.acquireRequest();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
         
         curlWrapper.getFile();
         
-        if (curlWrapper.getExitCode() == 0) {
-            corpusChunk.setDownloader(config.getDownloader());
+        return checkCurlResult(corpusChunk, curlWrapper.getExitCode(), curlWrapper.getHttpCode(),
+                curlWrapper.getConnectTime(), curlWrapper.getResponseTime(), curlWrapper.getEffectiveUri());
+    }
+    
+    /**
+     * Return true if the chunk is downloaded by the curl batch and has not been tried yet
+     * 
+     * @param corpusChunk
+     * @return 
+     */
+    private boolean isInCurlBatch(CorpusChunk corpusChunk) {
+        return curlBatch != null && corpusChunk.getDownloadAttempts() <= 1 && curlBatch.contains(corpusChunk);
+    }
+    
+    /**
+     * Collect a chunk downloaded by the curl batch.
+     * 
+     * The batch learns the content type from the same request that downloads
+     * the file, so the file is moved to its final name only now.
+     * 
+     * @param corpusChunk
+     * @param transfer
+     * @return 
+     */
+    private boolean downloadViaCurlBatch(CorpusChunk corpusChunk, CurlBatch.Transfer transfer) {
+        corpusChunk.setMimeType(Utils.getMimeTypeFromContentType(transfer.getContentType()));
+        corpusChunk.setDeclaredCharset(CharsetResolver.getCharsetParameter(transfer.getContentType()));
+        
+        // create reference to downloaded file
+        File downloadedFile = new File(corpusChunk.getDownloadDir() + File.separator + corpusChunk.getBaseFileName() + corpusChunk.getMimeType().getDotExtension());
+        corpusChunk.setDownloadedFile(downloadedFile);
+        
+        if (transfer.getOutputFile().exists()) {
+            downloadedFile.delete();
+            
+            if (!transfer.getOutputFile().renameTo(downloadedFile)) {
+                Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, "cannot rename {0}", transfer.getOutputFile());
+                transfer.getOutputFile().delete();
+                return false;
+            }
+        }
+        
+        return checkCurlResult(corpusChunk, transfer.getExitCode(), transfer.getHttpCode(),
+                transfer.getConnectTime(), transfer.getResponseTime(), transfer.getEffectiveUri());
+    }
+    
+    /**
+     * Interpret the outcome of a curl transfer
+     * 
+     * @param corpusChunk
+     * @param exitCode
+     * @param httpCode
+     * @param connectTime
+     * @param responseTime
+     * @param effectiveUri
+     * @return true if the file was downloaded
+     */
+    private boolean checkCurlResult(CorpusChunk corpusChunk, int exitCode, int httpCode, long connectTime, long responseTime, URI effectiveUri) {
+        if (exitCode == CurlWrapper.EXIT_FILE_TOO_LARGE) {
+            corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.FILE_TOO_LARGE);
+            corpusChunk.getDownloadedFile().delete();
+            return false;
+        }
+        
+        if (exitCode == CurlWrapper.EXIT_TOO_MANY_REDIRECTS) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "too many redirects from {0}", corpusChunk.getUri());
+            corpusChunk.getDownloadedFile().delete();
+            return false;
+        }
+        
+        if (adaptiveTimeouts != null) {
+            if (exitCode == CurlWrapper.EXIT_TIMEOUT) {
+                adaptiveTimeouts.timedOut(corpusChunk.getUri());
+            }
+            else if (httpCode > 0) {
+                adaptiveTimeouts.recordConnect(corpusChunk.getUri(), connectTime);
+                adaptiveTimeouts.recordResponse(corpusChunk.getUri(), responseTime);
+            }
+        }
+        
+        if (CurlWrapper.isTransientExitCode(exitCode)) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "curl exit code {0} for {1}", new Object[] {exitCode, corpusChunk.getUri()});
+            corpusChunk.setRetryable(true);
+            corpusChunk.getDownloadedFile().delete();
+            return false;
+        }
+        
+        // don't keep error pages
+        if (httpCode >= 400) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "HTTP status {0} for {1}", new Object[] {httpCode, corpusChunk.getUri()});
+            corpusChunk.setRetryable(RetryScheduler.isTransientStatus(httpCode));
+            corpusChunk.getDownloadedFile().delete();
+            return false;
+        }
+        
+        if (exitCode == 0) {
+            corpusChunk.setDownloader(mainPanel.getMain().getConfig().getDownloader());
+        }
+        
+        // curl follows redirects by itself, only the final URI is known
+        if (effectiveUri != null && !effectiveUri.equals(corpusChunk.getUri())) {
+            redirectFollower.record(corpusChunk.getUri(), effectiveUri);
+            corpusChunk.addRedirect(corpusChunk.getUri());
+            corpusChunk.setUri(effectiveUri);
         }
         
         return true;
     }
     
     /**
-     * TODO: see if you can merge downloadViaHTTPS with downloadViaHTTP, maybe the only thing that changes is the class used for the connection?
+     * Download a corpus chunk using HttpURLConnection (HttpsURLConnection for https URIs).
+     * 
      * @param corpusChunk
      * @return 
      */
-    private boolean downloadViaHTTPS(CorpusChunk corpusChunk) {
-        int BUFFER_SIZE = 4096;
+    private boolean downloadViaURLConnection(CorpusChunk corpusChunk) {
         
         try {
             
-            URI uri = corpusChunk.getUri();
+            // the cache is keyed by the URI that was originally requested
+            DownloadCache.Entry cached = (downloadCache == null) ? null : downloadCache.lookup(corpusChunk.getRequestedUri());
+            
+            HttpURLConnection conn;
+            
+            // follow redirects ourselves, so that every hop is recorded and loops are detected
+            while (true) {
+                // for https URIs this is actually a HttpsURLConnection
+                conn = (HttpURLConnection) corpusChunk.getUri().toURL().openConnection();
+
+                conn.setInstanceFollowRedirects(false);
+                conn.setRequestProperty("User-Agent", userAgent);
+                conn.setRequestProperty("Accept-Encoding", ContentEncoding.ACCEPT_ENCODING);
+                conn.setConnectTimeout(getConnectTimeout(corpusChunk.getUri()));
+                conn.setReadTimeout(getReadTimeout(corpusChunk.getUri()));
+
+                // if we have a stale copy in the cache, ask the server whether it changed
+                if (cached != null) {
+                    if (cached.getEtag() != null) conn.setRequestProperty("If-None-Match", cached.getEtag());
+                    if (cached.getLastModified() != null) conn.setRequestProperty("If-Modified-Since", cached.getLastModified());
+                }
 
-            HttpsURLConnection conn = (HttpsURLConnection) uri.toURL().openConnection();
+                // time connection and response, so that timeouts can be adapted to the host
+                long start = System.currentTimeMillis();
+                conn.connect();
+                long connected = System.currentTimeMillis();
+                conn.getResponseCode();
+                
+                if (adaptiveTimeouts != null) {
+                    adaptiveTimeouts.recordConnect(corpusChunk.getUri(), connected - start);
+                    adaptiveTimeouts.recordResponse(corpusChunk.getUri(), System.currentTimeMillis() - connected);
+                }
+                
+                if (!RedirectFollower.isRedirect(conn.getResponseCode())) break;
+                
+                // discard the body of the redirect page, so that the connection can be reused
+                try (InputStream inputStream = conn.getInputStream()) {
+                    byte[] buffer = new byte[4096];
+                    while (inputStream.read(buffer) != -1) {
+                        // nothing to do
+                    }
+                } catch (IOException ex) {
+                    conn.disconnect();
+                }
+                
+                redirectFollower.follow(corpusChunk, conn.getHeaderField("Location"));
+            }
+            
+            if (cached != null && conn.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                conn.getInputStream().close();
+                
+                // the copy may have been stored by a project with a larger limit
+                if (maxFileSize > 0 && cached.getBodySize() > maxFileSize) throw new FileTooLargeException(cached.getBodySize(), maxFileSize);
+                
+                downloadCache.revalidated(cached);
+                corpusChunk.setDownloader(Downloader.INTERNAL);
+                return downloadCache.materialize(cached, corpusChunk);
+            }
 
-            conn.setRequestProperty("User-Agent", userAgent);
-            conn.setConnectTimeout(connectionTimeout);
-            conn.setReadTimeout(readTimeout);
-            conn.connect();
+            // errors such as 503 or 429 may go away if we try again later
+            int responseCode = conn.getResponseCode();
+            if (responseCode >= 400) {
+                Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "HTTP status {0} for {1}", new Object[] {responseCode, corpusChunk.getUri()});
+                corpusChunk.setRetryable(RetryScheduler.isTransientStatus(responseCode));
+                conn.disconnect();
+                return false;
+            }
 
             // determine mime type
+            corpusChunk.setMimeType(Utils.getMimeTypeFromContentType(conn.getContentType()));
+            corpusChunk.setDeclaredCharset(CharsetResolver.getCharsetParameter(conn.getContentType()));
             
-            // set text/html as a default in case the remote server doesn't provide a content-type
-            // this is not ideal but since it's something we download from the Internet,
-            // let's assume it's a html page
-            String mimeType = "text/html";
-            
-            String contentType = conn.getContentType();            
+            // don't transfer the body of documents we are not interested in
+            if (!isAdmitted(corpusChunk)) {
+                conn.disconnect();
+                return false;
+            }
             
-            if (contentType != null) {
-                contentType = contentType.replaceAll("'", "");
-                
-                // content type includes character encoding, we're interested in mime type only (the first part of the string)
-                String[] cType = contentType.split(";");
-                
-                // check length of array to avoid array out of bounds errors
-                if (cType.length > 0) {
-                    mimeType = cType[0];
-                }                
+            ContentEncoding contentEncoding = ContentEncoding.fromHeader(conn.getContentEncoding());
+            if (contentEncoding == null) {
+                Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "unsupported content encoding {0} for {1}", new Object[] {conn.getContentEncoding(), corpusChunk.getUri()});
+                conn.disconnect();
+                return false;
             }
             
-            corpusChunk.setMimeType(mimeType);
-                        
-            // if we get a redirection response, record information in corpushunk and try again with new URL
-            if (conn.getResponseCode() == 301) {
-                corpusChunk.setRedirectedFrom(uri);
-                corpusChunk.setUri(new URI(conn.getHeaderField("Location")));
-                return download(corpusChunk);
+            // if the server tells us the file is too big, don't download it
+            long contentLength = conn.getContentLengthLong();
+            if (maxFileSize > 0 && contentLength > maxFileSize) {
+                conn.disconnect();
+                throw new FileTooLargeException(contentLength, maxFileSize);
             }
 
             // create reference to downloaded file
             File downloadedFile = new File(corpusChunk.getDownloadDir() + File.separator + corpusChunk.getBaseFileName() + corpusChunk.getMimeType().getDotExtension());
             corpusChunk.setDownloadedFile(downloadedFile);
             
-            // opens input stream from the HTTP connection
-            InputStream inputStream = conn.getInputStream();
-            File saveFilePath = corpusChunk.getDownloadedFile();
-
-            // opens an output stream to save into file
-            FileOutputStream outputStream = new FileOutputStream(saveFilePath);
-
-            int bytesRead = -1;
-            byte[] buffer = new byte[BUFFER_SIZE];
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                outputStream.write(buffer, 0, bytesRead);
+            // decode the response body while copying it to memory, closing the stream allows the connection to be reused
+            DocumentBuffer content = new DocumentBuffer(bufferPool, maxBufferedDocumentSize, downloadedFile);
+            InputStream connStream = conn.getInputStream();
+            if (rateLimiter != null) connStream = new ThrottledInputStream(connStream, rateLimiter);
+            
+            try (CountingInputStream wireStream = new CountingInputStream(connStream);
+                    InputStream inputStream = contentEncoding.decode(wireStream)) {
+                
+                // look at the beginning of web pages before writing anything
+                InputStream bodyStream = inputStream;
+                if (languageSniffer != null && corpusChunk.getMimeType().isHtmlOrText()) {
+                    bodyStream = languageSniffer.check(inputStream, conn.getContentType());
+                }
+                
+                corpusChunk.setDecodedSize(copyToBuffer(bodyStream, content));
+                corpusChunk.setWireSize(wireStream.getByteCount());
+                corpusChunk.setContentEncoding(contentEncoding == ContentEncoding.IDENTITY ? null : conn.getContentEncoding());
             }
-
-            outputStream.close();
-            inputStream.close();            
-
+            
+            corpusChunk.setEtag(conn.getHeaderField("ETag"));
+            corpusChunk.setLastModified(conn.getHeaderField("Last-Modified"));
+            
+            // the file is written while the document is being parsed
+            content.archive(downloadedFile, archiveExecutor);
+            bufferedDownloads.put(corpusChunk, content);
+
+        } catch (FileTooLargeException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.INFO, "{0}: {1}", new Object[] {corpusChunk.getUri(), ex.getMessage()});
+            corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.FILE_TOO_LARGE);
+            corpusChunk.setDownloadedFileSize(ex.getSize());
+            if (corpusChunk.getDownloadedFile() != null) corpusChunk.getDownloadedFile().delete();
+            return false;
+        } catch (WrongLanguageException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.INFO, "{0}: {1}", new Object[] {corpusChunk.getUri(), ex.getMessage()});
+            corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.WRONG_LANGUAGE);
+            corpusChunk.setDetectedLanguages(ex.getDetectedLanguages());
+            if (corpusChunk.getDownloadedFile() != null) corpusChunk.getDownloadedFile().delete();
+            return false;
         } catch (ProtocolException ex) {
             Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
             return false;
@@ -693,11 +1898,24 @@ public class ContentExtractor {
             Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "SSLHandshakeException, disabling SSL verification and retrying", ex);
             disableSslVerification();
             return download(corpusChunk);
-        } catch (SSLException | SocketTimeoutException ex) {
+        } catch (SocketTimeoutException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "timeout while downloading {0}", corpusChunk.getUri());
+            if (adaptiveTimeouts != null) adaptiveTimeouts.timedOut(corpusChunk.getUri());
+            corpusChunk.setRetryable(true);
+            return false;
+        } catch (SSLException ex) {
             Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
             return false;
-        } catch (IOException | URISyntaxException ex) {
+        } catch (RedirectException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, ex.getMessage());
+            return false;
+        } catch (UnknownHostException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "unknown host {0}", corpusChunk.getUri().getHost());
+            return false;
+        } catch (IOException ex) {
+            // connection refused, connection reset... the host may be back later
             Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
+            corpusChunk.setRetryable(true);
             return false;
         }
         
@@ -706,83 +1924,42 @@ public class ContentExtractor {
         return true;
     }
     
-    private boolean downloadViaHTTP(CorpusChunk corpusChunk) {
-        int BUFFER_SIZE = 4096;
-
+    /**
+     * Copy a stream to a document buffer, aborting if the maximum file size is exceeded.
+     * 
+     * The buffer is released if copying fails.
+     * 
+     * @param inputStream
+     * @param content
+     * @return number of bytes written
+     * @throws FileTooLargeException if more than maxFileSize bytes are read
+     * @throws IOException 
+     */
+    private long copyToBuffer(InputStream inputStream, DocumentBuffer content) throws IOException {
+        int BUFFER_SIZE = 16384;
+        
+        long totalBytes = 0;
+        
         try {
-            URI uri = corpusChunk.getUri();
-
-            HttpURLConnection conn = (HttpURLConnection) uri.toURL().openConnection();
-
-            conn.setRequestProperty("User-Agent", userAgent);
-            conn.setConnectTimeout(connectionTimeout);
-            conn.setReadTimeout(readTimeout);
-            conn.connect();
-            
-            // determine mime type
-            
-            // set text/html as a default in case the remote server doesn't provide a content-type
-            // this is not ideal but since it's something we download from the Internet,
-            // let's assume it's a html page
-            String mimeType = "text/html";            
-
-            String contentType = conn.getContentType();            
-            
-            if (contentType != null) {
-                contentType = contentType.replaceAll("'", "");
-                
-                // content type includes character encoding, we're interested in mime type only (the first part of the string)
-                String[] cType = contentType.split(";");
-
-                // check length of array to avoid array out of bounds errors
-                if (cType.length > 0) {
-                    mimeType = cType[0];
-                }                
-            }
-            
-            corpusChunk.setMimeType(mimeType);
-            
-            // if we get a redirection response, record information in corpushunk and try again with new URL
-            if (conn.getResponseCode() == 301) {
-                corpusChunk.setRedirectedFrom(uri);
-                corpusChunk.setUri(new URI(conn.getHeaderField("Location")));
-                return download(corpusChunk);
-            }
-
-            // create reference to downloaded file
-            File downloadedFile = new File(corpusChunk.getDownloadDir() + File.separator + corpusChunk.getBaseFileName() + corpusChunk.getMimeType().getDotExtension());
-            corpusChunk.setDownloadedFile(downloadedFile);
-            
-            // opens input stream from the HTTP connection
-            InputStream inputStream = conn.getInputStream();
-            File saveFilePath = corpusChunk.getDownloadedFile();
-
-            // opens an output stream to save into file
-            FileOutputStream outputStream = new FileOutputStream(saveFilePath);
-
-            int bytesRead = -1;
+            int bytesRead;
             byte[] buffer = new byte[BUFFER_SIZE];
             while ((bytesRead = inputStream.read(buffer)) != -1) {
-                outputStream.write(buffer, 0, bytesRead);
+                totalBytes += bytesRead;
+                
+                if (maxFileSize > 0 && totalBytes > maxFileSize) {
+                    throw new FileTooLargeException(totalBytes, maxFileSize);
+                }
+                
+                content.write(buffer, 0, bytesRead);
             }
-
-            outputStream.close();
-            inputStream.close();
-
-        } catch (ProtocolException ex) {
-            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);            
-            return false;
-        } catch (SocketTimeoutException ex) {
-            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
-            return false;            
-        } catch (IOException | URISyntaxException ex) {
-            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
-            return false;
+            
+            content.finish();
+        } catch (IOException | RuntimeException ex) {
+            content.release();
+            throw ex;
         }
         
-        corpusChunk.setDownloader(Downloader.INTERNAL);
-        
-        return true;
+        return totalBytes;
     }
     
     /**
@@ -826,78 +2003,134 @@ public class ContentExtractor {
     }
     
     /**
-     * Determine file size.
+     * Detect mime type
+     * @param content
+     * @param fileName
+     * @return String describing mime type or null if detection fails
+     */
+    private String detectMimeType(DocumentBuffer content, String fileName) {
+                
+        try (InputStream stream = content.openStream()) {
+            return tika.detect(stream, fileName);
+            
+        } catch (IOException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Parse a corpus chunk and fill Metadata field
      * 
-     * File size of remote files will be determined without downloading them.
+     * The document is parsed by a thread of the parse executor while the
+     * returned reader is consumed, the reader must be closed.
      * 
-     * @param uri
+     * @param corpusChunk
+     * @param content the downloaded document, it must not be released before the reader is closed
      * @return 
      */
-    private int determineFileSize(URI uri) {
+    private Reader parse (CorpusChunk corpusChunk, DocumentBuffer content) {
         
-        // if file is local determine length and return it
-        if (uri.toString().startsWith("file:")) {
-            try {
-                File file = new File(uri.toURL().getFile());
-                Long fileLength = file.length();
-                return fileLength.intValue();                
-            } catch (MalformedURLException ex) {
-                Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "cannot determine file size", ex);
-                return -1;
-            }
-        }
-
-        // if file is remote, ask length to remote server
-        HttpURLConnection conn = null;
+        Metadata metadata = new Metadata();
+        
+        // forked parsers handle embedded documents by themselves, the context is sent to them and must be serializable
+        ParseContext context = new ParseContext();
+        if (forkParser == null) context.set(Parser.class, tika.getParser());
+        
+        Parser parser = (forkParser == null) ? tika.getParser() : forkParser;
+                
         try {
-            conn = (HttpURLConnection) uri.toURL().openConnection();
-            conn.setConnectTimeout(connectionTimeout);
-            conn.setReadTimeout(readTimeout);
-            conn.setRequestMethod("HEAD");
-            conn.getInputStream();
-            return conn.getContentLength();
-        } catch (IOException e) {
-            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "cannot determine file size, trying to download it anyway", e);
-            return -1;
-        } finally {
-            if (conn != null) conn.disconnect();
+            InputStream stream;
+            if (content.isInMemory()) {
+                metadata.set(Metadata.RESOURCE_NAME_KEY, corpusChunk.getDownloadedFile().getName());
+                metadata.set(Metadata.CONTENT_LENGTH, Long.toString(content.length()));
+                stream = TikaInputStream.get(content.openStream());
+            }
+            else {
+                stream = TikaInputStream.get(content.getFile().toPath(), metadata);
+            }
+            
+            Reader reader = new ParsingReader(parser, stream, metadata, context, parseExecutor);
+            corpusChunk.setMetadata(metadata);
+            return reader;
+        } catch (IOException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);            
+            return null;
         }
     }
     
     /**
-     * Detect mime type
-     * @param file
-     * @return String describing mime type or null if detection fails
+     * Create a pool of JVMs parsing documents with Tika, one per extraction worker.
+     * 
+     * Each JVM has a limited heap and is killed if parsing a document takes
+     * longer than parseTimeout, a new one is started for the next document.
+     * The JVMs load Tika from the directory its jar is in.
+     * 
+     * @param workers number of extraction workers
+     * @return the parser or null if Tika is not in a directory of jars
      */
-    private String detectMimeType(File file) {
-                
+    private ForkParser createForkParser(int workers) {
+        File tikaLibDir;
+        
         try {
-            return tika.detect(file);
-            
-        } catch (IOException ex) {
-            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
+            tikaLibDir = new File(Tika.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getParentFile();
+        } catch (URISyntaxException | SecurityException ex) {
+            tikaLibDir = null;
         }
         
-        return null;
+        if (tikaLibDir == null || !tikaLibDir.isDirectory()) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "cannot find Tika libraries, documents will be parsed in process");
+            return null;
+        }
+        
+        ForkParser parser = new ForkParser(tikaLibDir.toPath(), new ParserFactoryFactory(AutoDetectParserFactory.class.getName(), new HashMap<String, String>()));
+        
+        parser.setPoolSize(Math.max(1, workers));
+        parser.setJavaCommand(Arrays.asList(
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                "-Xmx" + forkedParserHeapSize + "m",
+                "-Djava.awt.headless=true"));
+        parser.setServerParseTimeoutMillis(parseTimeout);
+        
+        return parser;
     }
     
     /**
-     * Parse a corpus chunk and fill Metadata field
-     * @param corpusChunk
-     * @return 
+     * Detect the character set of an HTML file and fill Metadata field,
+     * without parsing the whole document.
+     * 
+     * The byte order mark, the Content-Type header and meta tags in the first
+     * bytes of the file are checked first (see CharsetResolver), statistical
+     * detection is only used when none of them is available.
+     * 
+     * @param corpusChunk 
+     * @param content 
      */
-    private Reader parse (CorpusChunk corpusChunk) {
+    private void detectEncoding(CorpusChunk corpusChunk, DocumentBuffer content) {
         
         Metadata metadata = new Metadata();
-                
+        metadata.set(Metadata.CONTENT_TYPE, corpusChunk.getMimeType().getMimeType());
+        
         try {
-            Reader reader = tika.parse(corpusChunk.getDownloadedFile(), metadata);
-            corpusChunk.setMetadata(metadata);
-            return reader;
+            Charset charset = CharsetResolver.resolve(content, corpusChunk.getDeclaredCharset());
+            
+            if (charset == null) {
+                try (AutoDetectReader reader = new AutoDetectReader(content.openStream(), metadata, statisticalEncodingDetector)) {
+                    charset = reader.getCharset();
+                }
+            }
+            
+            metadata.set(Metadata.CONTENT_ENCODING, charset.name());
+        } catch (TikaException ex) {
+            // no character set detected, the default one will be used
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "cannot detect character set of {0}", corpusChunk.getDownloadedFile());
         } catch (IOException ex) {
-            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);            
-            return null;
+            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
+            return;
         }
+        
+        corpusChunk.setMetadata(metadata);
     }
     
     /**
@@ -906,118 +2139,110 @@ public class ContentExtractor {
      * This method uses the 'Boilerpipe' htmlExtractionMode to strip boilerplate from HTML documents.
      * 
      * @param corpusChunk
-     * @param htmlExtractor
+     * @param content
      * @return extracted text or null if extraction failed
      */
-    private String extractWithBoilerpipe(CorpusChunk corpusChunk,
-            LinkedHashMap<String, String> xmlAttributes) {
+    private String extractWithBoilerpipe(CorpusChunk corpusChunk, DocumentBuffer content) {
         
         String text = null;
-        String xmlText = null;
         
         Charset charset = Charset.forName(corpusChunk.getDownloadedFileEncoding());
-        File file       = corpusChunk.getDownloadedFile();
 
-        try {
-            // create an input stream and then a buffered reader (we use this method because we need to be
-            // able to specify a character encoding)
-            InputStream in = new FileInputStream(file);
-            BufferedReader reader = new BufferedReader(new InputStreamReader(in, charset));
-            
-            switch (this.htmlExtractionMode) {
-                default:
-                case BOILERPIPE_ARTICLE:
-                    text = ArticleExtractor.INSTANCE.getText(reader);
-                    break;
-                
-                case BOILERPIPE_DEFAULT:
-                    text = DefaultExtractor.INSTANCE.getText(reader);
-                    break;
-                    
-                case BOILERPIPE_KEEP_EVERYTHING:
-                    text = KeepEverythingExtractor.INSTANCE.getText(reader);
-                    break;
-                
-                case BOILERPIPE_LARGEST_CONTENT:
-                    text = LargestContentExtractor.INSTANCE.getText(reader);
-                    break;
+        // create an input stream and then a buffered reader (we use this method because we need to be
+        // able to specify a character encoding)
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(content.openStream(), charset))) {
+            
+            // the page is parsed once, other modes only run their classifiers on a copy of it
+            TextDocument document = BoilerpipeModes.parse(reader);
+            
+            if (compareHtmlExtractionModes) {
+                for (Map.Entry<HtmlExtractionMode, String> entry : BoilerpipeModes.extractAll(document).entrySet()) {
+                    String modeText = TextFormatter.replaceAnnoyingCharacters(TextFormatter.normalizeNewlines(entry.getValue()));
+                    corpusChunk.setModeStatistics(entry.getKey(), modeText.length(), Tokenizer.count(modeText));
+                }
             }
             
+            text = BoilerpipeModes.extract(document, htmlExtractionMode);
+            
             text = TextFormatter.normalizeNewlines(text);
             text = TextFormatter.replaceAnnoyingCharacters(text);
             
             // set document length
             corpusChunk.setCharacterCount(text.length());
             
-            // write plain text file
-            writePlainTextFile(corpusChunk, text);
-            
-            // write XML file
-            writeXMLFile(corpusChunk, text, xmlAttributes);
-            
             return text;
             
-        } catch (FileNotFoundException | BoilerpipeProcessingException ex) {
+        } catch (IOException | BoilerpipeProcessingException ex) {
             Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
         }
 
         return null;
     }
     
+    /**
+     * Extract text from HTML file stripping boilerplate with jsoup.
+     * 
+     * Faster but less precise than Boilerpipe, see JsoupExtractor.
+     * 
+     * @param corpusChunk
+     * @param content
+     * @return extracted text or null if extraction failed
+     */
+    private String extractWithJsoup(CorpusChunk corpusChunk, DocumentBuffer content) {
+        
+        try (InputStream stream = content.openStream()) {
+            String text = jsoupExtractor.getText(stream, corpusChunk.getDownloadedFileEncoding());
+            
+            text = TextFormatter.normalizeNewlines(text);
+            text = TextFormatter.replaceAnnoyingCharacters(text);
+            
+            // set document length
+            corpusChunk.setCharacterCount(text.length());
+            
+            return text;
+        } catch (IOException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
+        }
+        
+        return null;
+    }
+    
     private void writePlainTextFile(CorpusChunk corpusChunk, String text) {
-        PrintWriter plainTextWriter;
-        try {
-            plainTextWriter = new PrintWriter(corpusChunk.getExtractedFile(), "UTF-8");
+        try (PrintWriter plainTextWriter = new PrintWriter(corpusChunk.getExtractedFile(), "UTF-8")) {
             plainTextWriter.println(text);
-            plainTextWriter.flush();
-            plainTextWriter.close();
-
-            plainTextWriter = null;
-            System.gc();
         } catch (FileNotFoundException | UnsupportedEncodingException ex) {
             Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
         }        
     }
     
     private void writeXMLFile(CorpusChunk corpusChunk, String text, LinkedHashMap<String, String> xmlAttributes) {
-        String xmlText = TextFormatter.convertToXml(text, corpusChunk, xmlAttributes);        
-        
-        PrintWriter xmlFileWriter;
-        try {
-            xmlFileWriter = new PrintWriter(corpusChunk.getExtractedXMLFile(), "UTF-8");
-            xmlFileWriter.println(xmlText);
-            xmlFileWriter.flush();
-            xmlFileWriter.close();
-
-            xmlFileWriter = null;
-            System.gc();
-        } catch (FileNotFoundException | UnsupportedEncodingException ex) {
+        // sentences are written as they are detected, the XML is never built in memory
+        try (PrintWriter xmlFileWriter = new PrintWriter(corpusChunk.getExtractedXMLFile(), "UTF-8")) {
+            TextFormatter.writeXml(xmlFileWriter, text, corpusChunk, xmlAttributes);
+            xmlFileWriter.println();
+        } catch (IOException ex) {
             Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
         }        
     }
     
     /**
      * 
-     * Extract text content from a file and write it to a plain text file.
+     * Extract text content from a file.
      * 
      * This method uses Tika to extract text from documents. Text from PDF documents
      * will also have newlines and extra whitespace removed aggressively 
      * 
+     * @param reader Tika reader for the document
      * @param corpusChunk the chunk from which you want to extract content
+     * @param sink receives the text line by line
      * @return extracted text or null if extraction failed
      */
-    private String extractWithTikaReader(Reader reader, CorpusChunk corpusChunk, LinkedHashMap<String, String> xmlAttributes) {
+    private String extractWithTikaReader(Reader reader, CorpusChunk corpusChunk, TextSink sink) {
         
-        try {            
-            BufferedReader br = new BufferedReader(reader);
-                        
-            PrintWriter writer = new PrintWriter(corpusChunk.getExtractedFile(), "UTF-8");            
-            
-            // initialize character counter
-            int characterCount = 0;
+        // closing the reader also stops the parsing thread if the text was not read to the end
+        try (BufferedReader br = new BufferedReader(reader)) {
             
             String line;
-            String text = "";
             while ((line = br.readLine()) != null) {
                 
                 // reformat PDF files removing extra whitespaces and newlines
@@ -1041,50 +2266,21 @@ public class ContentExtractor {
                 
                 if (line.trim().isEmpty()) continue;
                 
-                // add characters in line to total
-                characterCount += line.length();
-                
-                writer.append(line);
-                text = text.concat(line);
+                sink.append(line);
             }
             
-            corpusChunk.setCharacterCount(characterCount);
-            
-            // cleanup
-            writer.flush();
-            writer.close();
-            reader.close();
-            br.close();
-            
-            writer = null;
-            reader = null;
-            br     = null;
-            line   = null;
-            
-            // convert extracted plain text to XML
-            String xmlText = TextFormatter.convertToXml(text, corpusChunk, xmlAttributes);
-            
-            // write XML file
-            PrintWriter xmlFileWriter;
-            try {
-                xmlFileWriter = new PrintWriter(corpusChunk.getExtractedXMLFile(), "UTF-8");
-                xmlFileWriter.println(xmlText);
-                xmlFileWriter.flush();
-                xmlFileWriter.close();
-
-                xmlFileWriter = null;
-                System.gc();
-            } catch (FileNotFoundException | UnsupportedEncodingException ex) {
-                Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
-            }            
-            
-            System.gc();
+            corpusChunk.setCharacterCount(sink.getCharacterCount());
             
-            return text;
+            return sink.getText();
         } catch (IOException ex) {
-            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
-        } finally {
+            // the parser failed, crashed or took too long
+            if (ex.getCause() instanceof TikaException) {
+                Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "cannot parse {0}: {1}", new Object[] {corpusChunk.getUri(), ex.getCause().getMessage()});
+                corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.CANNOT_PARSE);
+                return null;
+            }
             
+            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
         }
         
         return null;
@@ -1092,27 +2288,11 @@ public class ContentExtractor {
     
     /**
      * 
-     * @param text
+     * @param sink the extracted text, blacklisted words were counted while it was extracted
      * @return 
      */
-    private boolean isBadDocument(String text) {
-        int totalTokenCount = 0;
-        int typeCount       = 0;
-                
-        for (String badWord : blackList) {
-            Pattern pattern = Pattern.compile("\\b" + badWord.toLowerCase() + "\\b");
-            Matcher matcher = pattern.matcher(text.toLowerCase());
-            
-            int tokenCount = 0;    
-            
-            while (matcher.find())
-                tokenCount++;
-            
-            totalTokenCount += tokenCount;
-            if (tokenCount > 0) typeCount++;
-        }
-                
-        return (typeCount >= maxBlackListTypes && totalTokenCount >= maxBlackListTokens);
+    private boolean isBadDocument(TextSink sink) {
+        return (sink.getBlacklistTypes() >= maxBlackListTypes && sink.getBlacklistTokens() >= maxBlackListTokens);
     }
 
     /**
@@ -1166,6 +2346,307 @@ public class ContentExtractor {
         this.blackList = blackList;
     }
 
+    public int getDownloadThreads() {
+        return downloadThreads;
+    }
+
+    /**
+     * Set the number of documents that will be downloaded and processed at the same time
+     * (1 means documents are processed one at a time)
+     * 
+     * @param downloadThreads 
+     */
+    public void setDownloadThreads(int downloadThreads) {
+        this.downloadThreads = downloadThreads;
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    /**
+     * Set the maximum number of simultaneous connections to the same host
+     * (only relevant if concurrent downloads are enabled)
+     * 
+     * @param maxConnectionsPerHost 
+     */
+    public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    public int getExtractionThreads() {
+        return extractionThreads;
+    }
+
+    /**
+     * Set the number of workers parsing documents and extracting text from them
+     * (only relevant if concurrent downloads are enabled)
+     * 
+     * @param extractionThreads 
+     */
+    public void setExtractionThreads(int extractionThreads) {
+        this.extractionThreads = extractionThreads;
+    }
+
+    public int getFilterThreads() {
+        return filterThreads;
+    }
+
+    /**
+     * Set the number of workers applying filters to extracted texts
+     * (only relevant if concurrent downloads are enabled)
+     * 
+     * @param filterThreads 
+     */
+    public void setFilterThreads(int filterThreads) {
+        this.filterThreads = filterThreads;
+    }
+
+    public int getWriterThreads() {
+        return writerThreads;
+    }
+
+    /**
+     * Set the number of workers writing plain text and XML files
+     * (only relevant if concurrent downloads are enabled)
+     * 
+     * @param writerThreads 
+     */
+    public void setWriterThreads(int writerThreads) {
+        this.writerThreads = writerThreads;
+    }
+
+    public int getPipelineQueueSize() {
+        return pipelineQueueSize;
+    }
+
+    /**
+     * Set the maximum number of documents waiting in front of each processing stage
+     * 
+     * @param pipelineQueueSize 
+     */
+    public void setPipelineQueueSize(int pipelineQueueSize) {
+        this.pipelineQueueSize = pipelineQueueSize;
+    }
+
+    public int getCurlBatchSize() {
+        return curlBatchSize;
+    }
+
+    /**
+     * Set the number of URLs downloaded by a single curl process, 0 disables batch downloads
+     * 
+     * @param curlBatchSize 
+     */
+    public void setCurlBatchSize(int curlBatchSize) {
+        this.curlBatchSize = curlBatchSize;
+    }
+
+    public boolean getForkedParsing() {
+        return forkedParsing;
+    }
+
+    /**
+     * Parse documents with Tika in separate JVMs (not used for HTML pages
+     * extracted with Boilerpipe). Documents that take too long or use too much
+     * memory get the CANNOT_PARSE status.
+     * 
+     * @param forkedParsing 
+     */
+    public void setForkedParsing(boolean forkedParsing) {
+        this.forkedParsing = forkedParsing;
+    }
+
+    /**
+     * Set the maximum heap size of each parsing JVM
+     * 
+     * @param forkedParserHeapSize size in MB
+     */
+    public void setForkedParserHeapSize(int forkedParserHeapSize) {
+        this.forkedParserHeapSize = forkedParserHeapSize;
+    }
+
+    /**
+     * Set the time a parsing JVM may spend on a single document
+     * 
+     * @param parseTimeout timeout in milliseconds
+     */
+    public void setParseTimeout(int parseTimeout) {
+        this.parseTimeout = parseTimeout;
+    }
+
+    public int getMaxBufferedDocumentSize() {
+        return maxBufferedDocumentSize;
+    }
+
+    /**
+     * Set the size of the largest document kept in memory while it is parsed,
+     * larger documents are read from disk
+     * 
+     * @param maxBufferedDocumentSize size in bytes
+     */
+    public void setMaxBufferedDocumentSize(int maxBufferedDocumentSize) {
+        this.maxBufferedDocumentSize = maxBufferedDocumentSize;
+    }
+
+    public boolean getPriorityDownloads() {
+        return priorityDownloads;
+    }
+
+    /**
+     * Download the URLs most likely to end up in the corpus first (see
+     * DownloadScheduler) instead of following the order of the URL list.
+     * File names still follow the order of the list.
+     * 
+     * @param priorityDownloads 
+     */
+    public void setPriorityDownloads(boolean priorityDownloads) {
+        this.priorityDownloads = priorityDownloads;
+    }
+
+    /**
+     * Set the number of tuples that returned each URL, URLs that are not in
+     * the map count as returned by a single tuple
+     * 
+     * @param tupleCounts keys are URLs as they appear in the URL list
+     */
+    public void setTupleCounts(Map<String, Integer> tupleCounts) {
+        this.tupleCounts = tupleCounts;
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Set the limiter for the bandwidth and the request rate of all downloads,
+     * null means no limit. Limits can be changed on the limiter while downloading.
+     * 
+     * @param rateLimiter 
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    public boolean getEarlyLanguageSniffing() {
+        return earlyLanguageSniffing;
+    }
+
+    /**
+     * Guess the language of web pages from the first bytes of the response and
+     * abort the download if it's clearly wrong (only if the text level language
+     * filter is enabled)
+     * 
+     * @param earlyLanguageSniffing 
+     */
+    public void setEarlyLanguageSniffing(boolean earlyLanguageSniffing) {
+        this.earlyLanguageSniffing = earlyLanguageSniffing;
+    }
+
+    public int getLanguageSniffSize() {
+        return languageSniffSize;
+    }
+
+    /**
+     * Set the number of bytes of a web page used to guess its language
+     * 
+     * @param languageSniffSize 
+     */
+    public void setLanguageSniffSize(int languageSniffSize) {
+        this.languageSniffSize = languageSniffSize;
+    }
+
+    public DownloadCache getDownloadCache() {
+        return downloadCache;
+    }
+
+    /**
+     * Set the download cache to use, null disables caching
+     * 
+     * @param downloadCache 
+     */
+    public void setDownloadCache(DownloadCache downloadCache) {
+        this.downloadCache = downloadCache;
+    }
+
+    public ExtractionCache getExtractionCache() {
+        return extractionCache;
+    }
+
+    /**
+     * Set the cache of extracted text to use, null disables caching
+     * 
+     * @param extractionCache 
+     */
+    public void setExtractionCache(ExtractionCache extractionCache) {
+        this.extractionCache = extractionCache;
+    }
+
+    /**
+     * Return the connect timeout for a URI, learned from previous requests to the same host if possible
+     * 
+     * @param uri
+     * @return timeout in milliseconds
+     */
+    private int getConnectTimeout(URI uri) {
+        if (adaptiveTimeouts == null) return connectionTimeout;
+        
+        return adaptiveTimeouts.getConnectTimeout(uri);
+    }
+    
+    /**
+     * Return the read timeout for a URI, learned from previous requests to the same host if possible
+     * 
+     * @param uri
+     * @return timeout in milliseconds
+     */
+    private int getReadTimeout(URI uri) {
+        if (adaptiveTimeouts == null) return readTimeout;
+        
+        return adaptiveTimeouts.getReadTimeout(uri);
+    }
+
+    public AdaptiveTimeouts getAdaptiveTimeouts() {
+        return adaptiveTimeouts;
+    }
+
+    /**
+     * Set the tracker used to learn timeouts from the latency of each host,
+     * null means that fixed timeouts are used
+     * 
+     * @param adaptiveTimeouts 
+     */
+    public void setAdaptiveTimeouts(AdaptiveTimeouts adaptiveTimeouts) {
+        this.adaptiveTimeouts = adaptiveTimeouts;
+    }
+
+    public HostHealth getHostHealth() {
+        return hostHealth;
+    }
+
+    /**
+     * Set the tracker used to skip hosts that keep failing, null disables it
+     * 
+     * @param hostHealth 
+     */
+    public void setHostHealth(HostHealth hostHealth) {
+        this.hostHealth = hostHealth;
+    }
+
+    public ChunkJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Set the journal used to record finished chunks and to resume interrupted
+     * runs, null disables journaling
+     * 
+     * @param journal 
+     */
+    public void setJournal(ChunkJournal journal) {
+        this.journal = journal;
+    }
+
     public HtmlExtractionMode getHtmlExtractorMode() {
         return htmlExtractionMode;
     }
@@ -1173,4 +2654,55 @@ public class ContentExtractor {
     public void setHtmlExtractorMode(HtmlExtractionMode htmlExtractionMode) {
         this.htmlExtractionMode = htmlExtractionMode;
     }
+
+    /**
+     * Also extract the text of HTML pages with every Boilerpipe mode and
+     * record how much text each mode keeps, the corpus is still built with
+     * the selected mode
+     * 
+     * @param compareHtmlExtractionModes 
+     */
+    public void setCompareHtmlExtractionModes(boolean compareHtmlExtractionModes) {
+        this.compareHtmlExtractionModes = compareHtmlExtractionModes;
+    }
+
+    /**
+     * Set the extractor used by the jsoup HTML extraction mode
+     * 
+     * @param jsoupExtractor 
+     */
+    public void setJsoupExtractor(JsoupExtractor jsoupExtractor) {
+        this.jsoupExtractor = jsoupExtractor;
+    }
+
+    public ContentTypePolicy getContentTypePolicy() {
+        return contentTypePolicy;
+    }
+
+    /**
+     * Set which content types are downloaded, other documents are skipped
+     * as soon as their content type is known
+     * 
+     * @param contentTypePolicy 
+     */
+    public void setContentTypePolicy(ContentTypePolicy contentTypePolicy) {
+        this.contentTypePolicy = contentTypePolicy;
+    }
+    
+    /**
+     * A corpus chunk together with the data produced while processing it.
+     */
+    private static class ChunkJob {
+        private final CorpusChunk   chunk;
+        private final URI           requestedUri;
+        private String              text;
+        private TextSink            sink;
+        private long                retryAt;
+        private int                 tupleCount = 1;
+
+        private ChunkJob(CorpusChunk chunk) {
+            this.chunk          = chunk;
+            this.requestedUri   = chunk.getUri();
+        }
+    }
 }
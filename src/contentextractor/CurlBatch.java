@@ -0,0 +1,560 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import common.CorpusChunk;
+import gui.Main;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Download many corpus chunks with a single curl process.
+ *
+ * Chunks are split in slices; for each slice a curl config file listing all
+ * the transfers is written and a single "curl --parallel" process downloads
+ * them. Every transfer prints a JSON line (--write-out %{json}) with content
+ * type, status code, size, final URI and timings, so there is no need for a
+ * separate request to find out the content type.
+ *
+ * Slices are downloaded in a background thread in the order in which chunks
+ * were given; callers wait for the result of a single chunk with await.
+ * curl cannot limit the number of connections to a single host, so no slice
+ * holds more transfers to a host than the host limiter allows and the batch
+ * takes a slot of the host limiter for each transfer while it is running.
+ * Requires curl 7.70 or later: with older versions (or if curl cannot be
+ * run) await returns null and the caller must download the chunk by itself.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public class CurlBatch {
+
+    /**
+     * Outcome of a single transfer
+     */
+    public static class Transfer {
+        private final CorpusChunk       corpusChunk;
+        private final File              outputFile;
+        private final CountDownLatch    done = new CountDownLatch(1);
+        private boolean                 completed;
+        private boolean                 limited;
+        private int                     exitCode;
+        private int                     httpCode;
+        private String                  contentType;
+        private long                    size;
+        private URI                     effectiveUri;
+        private long                    connectTime;
+        private long                    responseTime;
+
+        private Transfer(CorpusChunk corpusChunk, File outputFile) {
+            this.corpusChunk    = corpusChunk;
+            this.outputFile     = outputFile;
+        }
+
+        /**
+         * Return the file the body was written to; it must be renamed once
+         * the content type (and therefore the file extension) is known
+         *
+         * @return
+         */
+        public File getOutputFile() {
+            return outputFile;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public int getHttpCode() {
+            return httpCode;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public URI getEffectiveUri() {
+            return effectiveUri;
+        }
+
+        public long getConnectTime() {
+            return connectTime;
+        }
+
+        public long getResponseTime() {
+            return responseTime;
+        }
+    }
+
+    private final String                        curlPath;
+    private final String                        userAgent;
+    private final int                           parallelMax;
+    private final int                           sliceSize;
+    private final HashMap<CorpusChunk, Transfer> transfers = new HashMap<>();
+    private final ArrayList<Transfer>           queue = new ArrayList<>();
+
+    private long                                maxFileSize;
+    private int                                 maxRedirects = RedirectFollower.DEFAULT_MAX_HOPS;
+    private int                                 connectTimeout;
+    private int                                 readTimeout;
+    private AdaptiveTimeouts                    adaptiveTimeouts;
+    private RateLimiter                         rateLimiter;
+    private HostLimiter                         hostLimiter;
+    private volatile boolean                    closed;
+    private Process                             process;
+    private String                              httpProxy;
+    private int                                 httpProxyPort;
+    private String                              httpsProxy;
+    private int                                 httpsProxyPort;
+    private String                              httpProxyCredentials;
+    private String                              httpsProxyCredentials;
+
+    /**
+     *
+     * @param curlPath
+     * @param userAgent
+     * @param parallelMax maximum number of simultaneous transfers
+     * @param sliceSize number of chunks downloaded by each curl process
+     */
+    public CurlBatch(String curlPath, String userAgent, int parallelMax, int sliceSize) {
+        this.curlPath       = curlPath;
+        this.userAgent      = userAgent;
+        this.parallelMax    = Math.max(1, Math.min(300, parallelMax));
+        this.sliceSize      = Math.max(1, sliceSize);
+    }
+
+    /**
+     * Start downloading the chunks in a background thread
+     *
+     * @param corpusChunks
+     */
+    public synchronized void start(List<CorpusChunk> corpusChunks) {
+        for (CorpusChunk corpusChunk : corpusChunks) {
+            File outputFile = new File(corpusChunk.getDownloadDir() + File.separator + corpusChunk.getBaseFileName() + ".curl.tmp");
+            Transfer transfer = new Transfer(corpusChunk, outputFile);
+
+            transfers.put(corpusChunk, transfer);
+            queue.add(transfer);
+        }
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                boolean supported = true;
+
+                for (List<Transfer> slice : getSlices()) {
+                    // once curl proved unable to run batches, let callers download chunks by themselves
+                    if (supported && !closed) supported = runSlice(slice);
+
+                    for (Transfer transfer : slice) {
+                        if (!transfer.completed) transfer.outputFile.delete();
+                        transfer.done.countDown();
+                    }
+                }
+            }
+        }, "curl-batch");
+
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Split the queue in slices of at most sliceSize transfers, in the order
+     * of the queue. Transfers to a host that already has as many transfers in
+     * the slice as the host limiter allows are left for the next slices.
+     *
+     * @return
+     */
+    private List<List<Transfer>> getSlices() {
+        int maxPerHost = (hostLimiter == null) ? Integer.MAX_VALUE : hostLimiter.getMaxConnectionsPerHost();
+
+        ArrayList<List<Transfer>> slices = new ArrayList<>();
+        LinkedList<Transfer> pending = new LinkedList<>(queue);
+
+        while (!pending.isEmpty()) {
+            ArrayList<Transfer> slice = new ArrayList<>();
+            HashMap<String, Integer> perHost = new HashMap<>();
+
+            Iterator<Transfer> iterator = pending.iterator();
+            while (iterator.hasNext() && slice.size() < sliceSize) {
+                Transfer transfer = iterator.next();
+                String host = HostLimiter.getHostKey(transfer.corpusChunk.getUri());
+
+                Integer count = perHost.get(host);
+                if (count == null) count = 0;
+                if (count >= maxPerHost) continue;
+
+                perHost.put(host, count + 1);
+                slice.add(transfer);
+                iterator.remove();
+            }
+
+            slices.add(slice);
+        }
+
+        return slices;
+    }
+
+    /**
+     * Return true if the chunk is downloaded by this batch
+     *
+     * @param corpusChunk
+     * @return
+     */
+    public synchronized boolean contains(CorpusChunk corpusChunk) {
+        return transfers.containsKey(corpusChunk);
+    }
+
+    /**
+     * Wait until the transfer of a chunk is over.
+     *
+     * @param corpusChunk
+     * @return the outcome of the transfer or null if the chunk was not downloaded by the batch
+     * @throws InterruptedException
+     */
+    public Transfer await(CorpusChunk corpusChunk) throws InterruptedException {
+        Transfer transfer;
+
+        synchronized (this) {
+            transfer = transfers.get(corpusChunk);
+        }
+
+        if (transfer == null) return null;
+
+        transfer.done.await();
+
+        if (!transfer.completed) return null;
+
+        return transfer;
+    }
+
+    /**
+     * Download a slice of chunks with a single curl process
+     *
+     * @param slice
+     * @return false if curl does not support batch downloads
+     */
+    private boolean runSlice(List<Transfer> slice) {
+        HashMap<String, Transfer> byFile = new HashMap<>();
+
+        File configFile = null;
+
+        try {
+            configFile = File.createTempFile("bootcat_curl", ".conf");
+
+            try (PrintWriter config = new PrintWriter(new OutputStreamWriter(new FileOutputStream(configFile), StandardCharsets.UTF_8))) {
+                for (int i = 0; i < slice.size(); ++i) {
+                    Transfer transfer = slice.get(i);
+
+                    if (i > 0) config.println("next");
+
+                    writeTransfer(config, transfer);
+
+                    byFile.put(transfer.outputFile.getAbsolutePath(), transfer);
+                }
+            }
+
+            // connections to the hosts of the slice are taken before the transfers start
+            if (!acquireHosts(slice)) return true;
+
+            String[] params = new String[] {
+                curlPath,
+                "--parallel",
+                "--parallel-max", Integer.toString(parallelMax),
+                "--config", configFile.getAbsolutePath()
+            };
+
+            Process process;
+
+            synchronized (this) {
+                if (closed) return true;
+
+                process = Runtime.getRuntime().exec(params);
+                this.process = process;
+            }
+
+            process.getOutputStream().close();
+
+            // transfers are reported as soon as they are finished
+            BufferedReader is = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+
+            String line;
+            int reported = 0;
+
+            while ((line = is.readLine()) != null) {
+                Transfer transfer = parseTransfer(line, byFile);
+
+                if (transfer != null) {
+                    releaseHost(transfer);
+                    transfer.completed = true;
+                    transfer.done.countDown();
+                    ++reported;
+                }
+            }
+
+            process.waitFor();
+
+            // curl exits with 2 when it does not know an option, i.e. it's too old for this
+            if (reported == 0 && process.exitValue() == 2) {
+                Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "this version of curl cannot download in batch mode, falling back to one process per file");
+                return false;
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, "cannot run curl in batch mode", ex);
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (this) {
+                this.process = null;
+            }
+
+            for (Transfer transfer : slice) {
+                releaseHost(transfer);
+            }
+
+            if (configFile != null) configFile.delete();
+        }
+
+        return true;
+    }
+
+    /**
+     * Take a slot of the host limiter for each transfer of a slice
+     *
+     * @param slice
+     * @return false if interrupted (the curl process is killed)
+     */
+    private boolean acquireHosts(List<Transfer> slice) {
+        if (hostLimiter == null) return true;
+
+        try {
+            for (Transfer transfer : slice) {
+                hostLimiter.acquire(transfer.corpusChunk.getUri());
+                transfer.limited = true;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            close();
+            return false;
+        }
+
+        return true;
+    }
+
+    private void releaseHost(Transfer transfer) {
+        if (!transfer.limited) return;
+
+        transfer.limited = false;
+        hostLimiter.release(transfer.corpusChunk.getUri());
+    }
+
+    /**
+     * Stop downloading: the running curl process is killed and transfers
+     * that were not completed are left to the callers
+     */
+    public synchronized void close() {
+        closed = true;
+
+        if (process != null) process.destroy();
+    }
+
+    private void writeTransfer(PrintWriter config, Transfer transfer) {
+        URI uri = transfer.corpusChunk.getUri();
+
+        config.println("url = " + quote(uri.toString()));
+        config.println("output = " + quote(transfer.outputFile.getAbsolutePath()));
+        config.println("user-agent = " + quote(userAgent));
+        config.println("silent");
+        config.println("location");
+        config.println("max-redirs = " + maxRedirects);
+        config.println("write-out = \"%{json}\\n\"");
+
+        if (maxFileSize > 0) config.println("max-filesize = " + maxFileSize);
+
+        // the bandwidth is shared among the simultaneous transfers
+        long limitRate = (rateLimiter == null) ? 0 : rateLimiter.getBytesPerSecondPerTransfer(parallelMax);
+        if (limitRate > 0) config.println("limit-rate = " + limitRate);
+
+        // every transfer gets the timeouts learned for its host
+        int connect = (adaptiveTimeouts == null) ? connectTimeout : adaptiveTimeouts.getConnectTimeout(uri);
+        int read    = (adaptiveTimeouts == null) ? readTimeout : adaptiveTimeouts.getReadTimeout(uri);
+
+        if (connect > 0) config.println("connect-timeout = " + String.format(Locale.ROOT, "%.3f", connect / 1000.0));
+
+        // curl has no read timeout, abort if less than 1 byte per second is received for that long
+        if (read > 0) {
+            config.println("speed-limit = 1");
+            config.println("speed-time = " + Math.max(1, read / 1000));
+        }
+
+        if ("https".equals(uri.getScheme()) && httpsProxy != null) {
+            config.println("proxy = " + quote(httpsProxy + ":" + httpsProxyPort));
+            if (httpsProxyCredentials != null) config.println("proxy-user = " + quote(httpsProxyCredentials));
+        }
+        else if (httpProxy != null) {
+            config.println("proxy = " + quote(httpProxy + ":" + httpProxyPort));
+            if (httpProxyCredentials != null) config.println("proxy-user = " + quote(httpProxyCredentials));
+        }
+    }
+
+    private Transfer parseTransfer(String line, HashMap<String, Transfer> byFile) {
+        try {
+            JSONObject json = new JSONObject(line);
+
+            Transfer transfer = byFile.get(new File(json.optString("filename_effective")).getAbsolutePath());
+
+            if (transfer == null) return null;
+
+            transfer.httpCode       = json.optInt("http_code", json.optInt("response_code"));
+            transfer.exitCode       = json.optInt("exitcode", transfer.httpCode > 0 ? 0 : -1);
+            transfer.contentType    = json.optString("content_type", null);
+            transfer.size           = json.optLong("size_download");
+
+            // curl reports times in seconds
+            transfer.connectTime    = Math.round(json.optDouble("time_connect", 0) * 1000);
+            transfer.responseTime   = Math.max(0, Math.round(json.optDouble("time_starttransfer", 0) * 1000) - transfer.connectTime);
+
+            String effectiveUrl = json.optString("url_effective", null);
+            if (effectiveUrl != null && !effectiveUrl.isEmpty()) {
+                try {
+                    transfer.effectiveUri = new URI(effectiveUrl);
+                } catch (URISyntaxException ex) {
+                    Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "curl returned an invalid URI: {0}", effectiveUrl);
+                }
+            }
+
+            return transfer;
+        } catch (JSONException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "cannot parse curl output: {0}", line);
+            return null;
+        }
+    }
+
+    /**
+     * Quote a string for a curl config file
+     *
+     * @param value
+     * @return
+     */
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    public void setMaxFileSize(long maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    public void setMaxRedirects(int maxRedirects) {
+        this.maxRedirects = maxRedirects;
+    }
+
+    /**
+     *
+     * @param connectTimeout timeout in milliseconds, 0 means curl's default
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     *
+     * @param readTimeout timeout in milliseconds, 0 means no timeout
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Use timeouts learned from the latency of each host instead of the fixed ones
+     *
+     * @param adaptiveTimeouts
+     */
+    public void setAdaptiveTimeouts(AdaptiveTimeouts adaptiveTimeouts) {
+        this.adaptiveTimeouts = adaptiveTimeouts;
+    }
+
+    /**
+     * Limit the bandwidth of the batch (curl ignores --rate in parallel mode,
+     * so the batch must not be used while requests are limited)
+     *
+     * @param rateLimiter
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Share the limit of connections per host with the other downloaders,
+     * null means no limit
+     *
+     * @param hostLimiter
+     */
+    public void setHostLimiter(HostLimiter hostLimiter) {
+        this.hostLimiter = hostLimiter;
+    }
+
+    /**
+     * Set the proxies to use, null means no proxy
+     *
+     * @param httpProxy
+     * @param httpProxyPort
+     * @param httpsProxy
+     * @param httpsProxyPort
+     */
+    public void setProxy(String httpProxy, int httpProxyPort, String httpsProxy, int httpsProxyPort) {
+        this.httpProxy      = httpProxy;
+        this.httpProxyPort  = httpProxyPort;
+        this.httpsProxy     = httpsProxy;
+        this.httpsProxyPort = httpsProxyPort;
+    }
+
+    /**
+     * Set the proxy credentials, null means no authentication
+     *
+     * @param httpProxyUser
+     * @param httpProxyPassword
+     * @param httpsProxyUser
+     * @param httpsProxyPassword
+     */
+    public void setProxyCredentials(String httpProxyUser, String httpProxyPassword, String httpsProxyUser, String httpsProxyPassword) {
+        this.httpProxyCredentials   = httpProxyUser + ":" + httpProxyPassword;
+        this.httpsProxyCredentials  = httpsProxyUser + ":" + httpsProxyPassword;
+    }
+}
@@ -11,7 +11,10 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Locale;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.lang3.SystemUtils;
@@ -22,6 +25,21 @@ import org.apache.commons.lang3.SystemUtils;
  */
 public class CurlWrapper {
 
+    /**
+     * Exit code returned by curl when the file is larger than --max-filesize
+     */
+    public static final int     EXIT_FILE_TOO_LARGE = 63;
+    
+    /**
+     * Exit code returned by curl when more than --max-redirs redirects were followed
+     */
+    public static final int     EXIT_TOO_MANY_REDIRECTS = 47;
+    
+    /**
+     * Exit code returned by curl when the operation timed out
+     */
+    public static final int     EXIT_TIMEOUT = 28;
+
     private final String        curlPath;
     private final CorpusChunk   corpusChunk;
     private Process             process;
@@ -37,6 +55,16 @@ public class CurlWrapper {
     private String              httpProxyPassword;
     private String              httpsProxyPassword;
     private String              userAgent;
+    private long                maxFileSize;
+    private int                 maxRedirects = 10;
+    private URI                 effectiveUri;
+    private int                 httpCode;
+    private int                 connectTimeout;
+    private int                 readTimeout;
+    private long                limitRate;
+    private long                connectTime;
+    private long                responseTime;
+    private String              contentType;
 
     public int getExitCode() {
         return exitCode;
@@ -122,6 +150,117 @@ public class CurlWrapper {
         this.httpsProxyPassword = httpsProxyPassword;
     }
     
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    /**
+     * Set the maximum size of downloaded files, curl will abort larger files
+     * 
+     * @param maxFileSize maximum size in bytes, 0 means no limit
+     */
+    public void setMaxFileSize(long maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+    
+    public int getMaxRedirects() {
+        return maxRedirects;
+    }
+
+    /**
+     * Set the maximum number of redirects curl will follow
+     * 
+     * @param maxRedirects 
+     */
+    public void setMaxRedirects(int maxRedirects) {
+        this.maxRedirects = maxRedirects;
+    }
+
+    /**
+     * Return the URI the file was actually downloaded from, after following redirects
+     * 
+     * @return the final URI or null if it is unknown
+     */
+    public URI getEffectiveUri() {
+        return effectiveUri;
+    }
+
+    /**
+     * Return the HTTP status code of the last response received by getFile
+     * 
+     * @return the status code or 0 if no response was received
+     */
+    public int getHttpCode() {
+        return httpCode;
+    }
+
+    /**
+     * Set the connect timeout
+     * 
+     * @param connectTimeout timeout in milliseconds, 0 means curl's default
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Set the read timeout, the transfer is aborted if no data is received for this long
+     * 
+     * @param readTimeout timeout in milliseconds, 0 means no timeout
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Set the maximum transfer speed of getFile
+     * 
+     * @param limitRate bytes per second, 0 means no limit
+     */
+    public void setLimitRate(long limitRate) {
+        this.limitRate = limitRate;
+    }
+
+    /**
+     * Return the time it took to connect during the last call to getFile
+     * 
+     * @return time in milliseconds
+     */
+    public long getConnectTime() {
+        return connectTime;
+    }
+
+    /**
+     * Return the time between connection and first byte of the response during the last call to getFile
+     * 
+     * @return time in milliseconds
+     */
+    public long getResponseTime() {
+        return responseTime;
+    }
+    
+    /**
+     * Return true if a curl exit code denotes an error that may be temporary
+     * (connection refused, timeout, connection reset...)
+     * 
+     * @param exitCode
+     * @return 
+     */
+    public static boolean isTransientExitCode(int exitCode) {
+        switch (exitCode) {
+            case 7:     // failed to connect
+            case 18:    // partial file
+            case 28:    // operation timed out
+            case 52:    // empty reply from server
+            case 55:    // failed sending network data
+            case 56:    // failure in receiving network data
+                return true;
+                
+            default:
+                return false;
+        }
+    }
+    
     public CurlWrapper(String curlPath, CorpusChunk corpusChunk, String userAgent) {
         this.curlPath = curlPath;
         this.corpusChunk = corpusChunk;
@@ -132,6 +271,15 @@ public class CurlWrapper {
         getFile(false);
     }
 
+    /**
+     * Return the Content-Type header of the last response, available after getMimeType()
+     * 
+     * @return 
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
     public String getMimeType() {        
         String devNull = "/dev/null";
         if (SystemUtils.IS_OS_WINDOWS) {
@@ -142,6 +290,9 @@ public class CurlWrapper {
         
         parameters.add(curlPath);
         parameters.add("-s");
+        parameters.add("-L");
+        parameters.add("--max-redirs");
+        parameters.add(Integer.toString(maxRedirects));
         parameters.add("-o");
         parameters.add(devNull);
         parameters.add("-w");
@@ -194,6 +345,7 @@ public class CurlWrapper {
         }
         
         contentType = contentType.replaceAll("'", "");
+        this.contentType = contentType;
         String[] cType = contentType.split(";");
 
         // set text/html as a default in case the remote server doesn't provide a content-type
@@ -223,6 +375,38 @@ public class CurlWrapper {
         parameters.add(curlPath);
         parameters.add("-A");
         parameters.add(userAgent);
+        
+        if (maxFileSize > 0) {
+            parameters.add("--max-filesize");
+            parameters.add(Long.toString(maxFileSize));
+        }
+        
+        if (connectTimeout > 0) {
+            parameters.add("--connect-timeout");
+            parameters.add(String.format(Locale.ROOT, "%.3f", connectTimeout / 1000.0));
+        }
+        
+        // curl has no read timeout, abort if less than 1 byte per second is received for that long
+        if (readTimeout > 0) {
+            parameters.add("--speed-limit");
+            parameters.add("1");
+            parameters.add("--speed-time");
+            parameters.add(Integer.toString(Math.max(1, readTimeout / 1000)));
+        }
+        
+        if (limitRate > 0) {
+            parameters.add("--limit-rate");
+            parameters.add(Long.toString(limitRate));
+        }
+        
+        // follow redirects and print the status code, timings and the final URI
+        parameters.add("-s");
+        parameters.add("-L");
+        parameters.add("--max-redirs");
+        parameters.add(Integer.toString(maxRedirects));
+        parameters.add("-w");
+        parameters.add("%{http_code} %{time_connect} %{time_starttransfer} %{url_effective}");
+        
         parameters.add("-o");
         parameters.add(corpusChunk.getDownloadedFile().getPath());
         parameters.add(corpusChunk.getUri().toString());
@@ -254,11 +438,34 @@ public class CurlWrapper {
         
         try {
             process = Runtime.getRuntime().exec(params);
+            
+            BufferedReader is = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            
+            String output = "";
+            String line;
+            while ((line = is.readLine(  )) != null) {
+                output += line;
+            }
+            
             process.waitFor();
             exitCode = process.exitValue();
             
+            String[] writeOut = output.trim().split(" ", 4);
+            
+            httpCode = Integer.parseInt(writeOut[0]);
+            
+            if (writeOut.length > 2) {
+                // curl prints times in seconds
+                connectTime     = Math.round(Double.parseDouble(writeOut[1].replace(',', '.')) * 1000);
+                responseTime    = Math.max(0, Math.round(Double.parseDouble(writeOut[2].replace(',', '.')) * 1000) - connectTime);
+            }
+            
+            if (writeOut.length > 3 && !writeOut[3].isEmpty()) effectiveUri = new URI(writeOut[3]);
+            
         } catch (IOException | InterruptedException ex) {
             Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
+        } catch (URISyntaxException | NumberFormatException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "cannot parse curl output", ex);
         }
     }
     
@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Body subscriber that decodes a gzip or deflate encoded body while it is
+ * received, so that the delegate subscriber (i.e. one writing to a file) only
+ * sees the decoded data.
+ *
+ * Both the bytes received from the network and the decoded bytes are
+ * counted. Identity encoded bodies are passed on unchanged. The time data was
+ * last received is recorded, so that stalled transfers can be detected, and
+ * the transfer can be cancelled from another thread (i.e. when it times out).
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ * @param <T>
+ */
+public class DecodingBodySubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+    private static final int GZIP_FEXTRA   = 4;
+    private static final int GZIP_FNAME    = 8;
+    private static final int GZIP_FCOMMENT = 16;
+    private static final int GZIP_FHCRC    = 2;
+
+    private final HttpResponse.BodySubscriber<T>    delegate;
+    private final ContentEncoding                   contentEncoding;
+    private final ByteArrayOutputStream             header = new ByteArrayOutputStream();
+    private final byte[]                            output = new byte[16384];
+    private Inflater                                inflater;
+    private Flow.Subscription                       subscription;
+    private long                                    wireBytes;
+    private long                                    decodedBytes;
+    private boolean                                 aborted;
+    private volatile long                           lastActivity = System.nanoTime();
+
+    /**
+     *
+     * @param delegate
+     * @param contentEncoding encoding of the body, as sent by the server
+     */
+    public DecodingBodySubscriber(HttpResponse.BodySubscriber<T> delegate, ContentEncoding contentEncoding) {
+        this.delegate           = delegate;
+        this.contentEncoding    = contentEncoding;
+    }
+
+    @Override
+    public CompletionStage<T> getBody() {
+        return delegate.getBody();
+    }
+
+    @Override
+    public synchronized void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+
+        // cancelled before the body started, the delegate never sees it
+        if (aborted) {
+            subscription.cancel();
+            return;
+        }
+
+        delegate.onSubscribe(subscription);
+    }
+
+    @Override
+    public synchronized void onNext(List<ByteBuffer> items) {
+        lastActivity = System.nanoTime();
+
+        if (aborted) return;
+
+        if (contentEncoding == ContentEncoding.IDENTITY) {
+            for (ByteBuffer item : items) {
+                wireBytes += item.remaining();
+                decodedBytes += item.remaining();
+            }
+
+            delegate.onNext(items);
+            return;
+        }
+
+        // the delegate requests more data after each call, so it must be called even if nothing was decoded
+        ArrayList<ByteBuffer> decoded = new ArrayList<>();
+
+        try {
+            for (ByteBuffer item : items) {
+                byte[] data = new byte[item.remaining()];
+                item.get(data);
+                wireBytes += data.length;
+
+                inflate(data, decoded);
+            }
+        } catch (DataFormatException | ZipException ex) {
+            aborted = true;
+            subscription.cancel();
+            release();
+            delegate.onError(new ZipException("cannot decode " + contentEncoding + " body: " + ex.getMessage()));
+            return;
+        }
+
+        delegate.onNext(decoded);
+    }
+
+    @Override
+    public synchronized void onError(Throwable throwable) {
+        if (aborted) return;
+
+        release();
+        delegate.onError(throwable);
+    }
+
+    @Override
+    public synchronized void onComplete() {
+        if (aborted) return;
+
+        boolean truncated = contentEncoding != ContentEncoding.IDENTITY && (inflater == null ? wireBytes > 0 : !inflater.finished());
+
+        release();
+
+        if (truncated) {
+            delegate.onError(new EOFException("unexpected end of " + contentEncoding + " body"));
+            return;
+        }
+
+        delegate.onComplete();
+    }
+
+    /**
+     * Decode a block of data, the compression header is skipped first
+     *
+     * @param data
+     * @param decoded
+     * @throws DataFormatException
+     * @throws ZipException
+     */
+    private void inflate(byte[] data, List<ByteBuffer> decoded) throws DataFormatException, ZipException {
+        if (inflater == null) {
+            header.write(data, 0, data.length);
+
+            byte[] headerBytes = header.toByteArray();
+            int headerLength;
+
+            if (contentEncoding == ContentEncoding.GZIP) {
+                headerLength = getGzipHeaderLength(headerBytes);
+                if (headerLength < 0) return;
+
+                inflater = new Inflater(true);
+            }
+            else {
+                if (headerBytes.length < 2) return;
+
+                // the zlib header is parsed by the inflater itself
+                headerLength = 0;
+                inflater = new Inflater(!ContentEncoding.isZlibHeader(headerBytes[0], headerBytes[1]));
+            }
+
+            // continue with what's left of the accumulated bytes
+            data = Arrays.copyOfRange(headerBytes, headerLength, headerBytes.length);
+            header.reset();
+        }
+
+        // the gzip trailer (checksum and size) is ignored
+        if (inflater.finished()) return;
+
+        inflater.setInput(data);
+
+        while (!inflater.finished()) {
+            int length = inflater.inflate(output);
+
+            if (length > 0) {
+                decodedBytes += length;
+                decoded.add(ByteBuffer.wrap(Arrays.copyOf(output, length)));
+            }
+            else if (inflater.needsInput()) {
+                break;
+            }
+            else if (inflater.needsDictionary()) {
+                throw new ZipException("preset dictionaries are not supported");
+            }
+            else {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Return the length of a gzip header (RFC 1952)
+     *
+     * @param bytes
+     * @return the length of the header or -1 if more bytes are needed
+     * @throws ZipException if the data is not in gzip format
+     */
+    private static int getGzipHeaderLength(byte[] bytes) throws ZipException {
+        if (bytes.length < 10) return -1;
+
+        if ((bytes[0] & 0xff) != 0x1f || (bytes[1] & 0xff) != 0x8b || bytes[2] != 8) {
+            throw new ZipException("not in gzip format");
+        }
+
+        int flags = bytes[3] & 0xff;
+        int position = 10;
+
+        if ((flags & GZIP_FEXTRA) != 0) {
+            if (bytes.length < position + 2) return -1;
+            position += 2 + ((bytes[position] & 0xff) | ((bytes[position + 1] & 0xff) << 8));
+        }
+
+        // zero terminated file name and comment
+        for (int flag : new int[] {GZIP_FNAME, GZIP_FCOMMENT}) {
+            if ((flags & flag) == 0) continue;
+
+            do {
+                if (position >= bytes.length) return -1;
+            } while (bytes[position++] != 0);
+        }
+
+        if ((flags & GZIP_FHCRC) != 0) position += 2;
+
+        if (position > bytes.length) return -1;
+
+        return position;
+    }
+
+    /**
+     * Stop the transfer, the delegate gets an error so that it releases what
+     * it holds (i.e. closes the file it is writing to)
+     */
+    public synchronized void cancel() {
+        if (aborted) return;
+
+        aborted = true;
+
+        // not subscribed yet, onSubscribe() will cancel the subscription
+        if (subscription == null) return;
+
+        subscription.cancel();
+        release();
+        delegate.onError(new IOException("transfer cancelled"));
+    }
+
+    private void release() {
+        if (inflater != null) inflater.end();
+    }
+
+    /**
+     * Return when data was last received (or when the subscriber was
+     * created, i.e. when the headers were received)
+     *
+     * @return a System.nanoTime() value
+     */
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    /**
+     * Return the number of bytes received from the network
+     *
+     * @return
+     */
+    public long getWireBytes() {
+        return wireBytes;
+    }
+
+    /**
+     * Return the number of bytes passed on to the delegate after decoding
+     *
+     * @return
+     */
+    public long getDecodedBytes() {
+        return decodedBytes;
+    }
+}
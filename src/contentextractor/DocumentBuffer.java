@@ -0,0 +1,371 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import gui.Main;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The bytes of a downloaded document, kept in memory so that detection,
+ * parsing and extraction don't read the file again and again.
+ *
+ * Documents are stored in blocks taken from a pool and given back when the
+ * buffer is released. Documents larger than the given size are written to
+ * their file as soon as they exceed it and read back from there.
+ *
+ * The buffer is written by a single thread, once writing is finished it can
+ * be read by any number of threads.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public class DocumentBuffer {
+
+    /**
+     * Blocks of memory that can be used again by other buffers
+     */
+    public static class Pool {
+        private final int                   blockSize;
+        private final int                   maxPooledBlocks;
+        private final ArrayDeque<byte[]>    blocks = new ArrayDeque<>();
+
+        /**
+         *
+         * @param blockSize size of each block in bytes
+         * @param maxPooledBlocks number of free blocks kept, others are left to the garbage collector
+         */
+        public Pool(int blockSize, int maxPooledBlocks) {
+            this.blockSize          = blockSize;
+            this.maxPooledBlocks    = maxPooledBlocks;
+        }
+
+        private synchronized byte[] acquire() {
+            byte[] block = blocks.poll();
+
+            return (block != null) ? block : new byte[blockSize];
+        }
+
+        private synchronized void release(byte[] block) {
+            if (blocks.size() < maxPooledBlocks) blocks.push(block);
+        }
+    }
+
+    private final Pool              pool;
+    private final long              maxInMemory;
+    private final File              file;
+    private final ArrayList<byte[]> blocks = new ArrayList<>();
+    private long                    length;
+    private boolean                 inMemory = true;
+    private OutputStream            spillStream;
+    private Future<?>               archived;
+    private int                     references = 1;
+
+    /**
+     * Create an empty buffer
+     *
+     * @param pool
+     * @param maxInMemory documents larger than this (in bytes) are written to file
+     * @param file where the document is written if it gets too large
+     */
+    public DocumentBuffer(Pool pool, long maxInMemory, File file) {
+        this.pool           = pool;
+        this.maxInMemory    = maxInMemory;
+        this.file           = file;
+    }
+
+    /**
+     * Read a file in a buffer, large files are not read and will be read
+     * from disk when needed.
+     *
+     * @param file
+     * @param pool
+     * @param maxInMemory
+     * @return
+     * @throws IOException
+     */
+    public static DocumentBuffer load(File file, Pool pool, long maxInMemory) throws IOException {
+        DocumentBuffer buffer = new DocumentBuffer(pool, maxInMemory, file);
+
+        if (file.length() > maxInMemory) {
+            buffer.inMemory = false;
+            buffer.length   = file.length();
+            return buffer;
+        }
+
+        try (InputStream inputStream = new FileInputStream(file)) {
+            byte[] chunk = new byte[pool.blockSize];
+            int bytesRead;
+
+            while ((bytesRead = inputStream.read(chunk)) != -1) {
+                buffer.write(chunk, 0, bytesRead);
+            }
+        } catch (IOException ex) {
+            buffer.release();
+            throw ex;
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Append bytes to the document
+     *
+     * @param bytes
+     * @param offset
+     * @param count
+     * @throws IOException if the document was too large and cannot be written to file
+     */
+    public void write(byte[] bytes, int offset, int count) throws IOException {
+        if (inMemory && length + count > maxInMemory) spill();
+
+        if (!inMemory) {
+            spillStream.write(bytes, offset, count);
+            length += count;
+            return;
+        }
+
+        while (count > 0) {
+            int blockIndex  = (int) (length / pool.blockSize);
+            int position    = (int) (length % pool.blockSize);
+
+            if (blockIndex == blocks.size()) blocks.add(pool.acquire());
+
+            int n = Math.min(count, pool.blockSize - position);
+            System.arraycopy(bytes, offset, blocks.get(blockIndex), position, n);
+
+            offset  += n;
+            count   -= n;
+            length  += n;
+        }
+    }
+
+    /**
+     * Signal that the whole document has been written
+     *
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        if (spillStream != null) {
+            spillStream.close();
+            spillStream = null;
+        }
+    }
+
+    /**
+     * Move what has been written so far to file, the rest of the document
+     * will be written there
+     *
+     * @throws IOException
+     */
+    private void spill() throws IOException {
+        spillStream = new BufferedOutputStream(new FileOutputStream(file));
+
+        writeBlocks(spillStream);
+        freeBlocks();
+
+        inMemory = false;
+    }
+
+    private void writeBlocks(OutputStream outputStream) throws IOException {
+        long remaining = length;
+
+        for (byte[] block : blocks) {
+            int n = (int) Math.min(remaining, block.length);
+            outputStream.write(block, 0, n);
+            remaining -= n;
+        }
+    }
+
+    /**
+     * Write the document to its file with the given executor, if it is
+     * still in memory.
+     *
+     * @param target file to write, it becomes the file of the buffer
+     * @param executor
+     */
+    public void archive(final File target, ExecutorService executor) {
+        if (!inMemory) return;
+
+        retain();
+
+        archived = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try (OutputStream outputStream = new FileOutputStream(target)) {
+                    writeBlocks(outputStream);
+                } catch (IOException ex) {
+                    Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, "cannot write " + target, ex);
+                } finally {
+                    release();
+                }
+            }
+        });
+    }
+
+    /**
+     * Wait until the document has been written by archive()
+     */
+    public void awaitArchived() {
+        if (archived == null) return;
+
+        try {
+            archived.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Open a stream on the document, it must be closed
+     *
+     * @return
+     * @throws IOException
+     */
+    public InputStream openStream() throws IOException {
+        if (!inMemory) return new BufferedInputStream(new FileInputStream(file));
+
+        return new InputStream() {
+            private long position;
+            private long mark;
+
+            @Override
+            public int read() {
+                if (position >= length) return -1;
+
+                int value = blocks.get((int) (position / pool.blockSize))[(int) (position % pool.blockSize)] & 0xff;
+                ++position;
+
+                return value;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int count) {
+                if (count == 0) return 0;
+                if (position >= length) return -1;
+
+                int total = 0;
+
+                while (count > 0 && position < length) {
+                    int blockPosition   = (int) (position % pool.blockSize);
+                    int n               = (int) Math.min(Math.min(count, pool.blockSize - blockPosition), length - position);
+
+                    System.arraycopy(blocks.get((int) (position / pool.blockSize)), blockPosition, bytes, offset, n);
+
+                    offset      += n;
+                    count       -= n;
+                    total       += n;
+                    position    += n;
+                }
+
+                return total;
+            }
+
+            @Override
+            public long skip(long count) {
+                long skipped = Math.max(0, Math.min(count, length - position));
+                position += skipped;
+                return skipped;
+            }
+
+            @Override
+            public int available() {
+                return (int) Math.min(Integer.MAX_VALUE, length - position);
+            }
+
+            @Override
+            public boolean markSupported() {
+                return true;
+            }
+
+            @Override
+            public synchronized void mark(int readLimit) {
+                mark = position;
+            }
+
+            @Override
+            public synchronized void reset() {
+                position = mark;
+            }
+        };
+    }
+
+    /**
+     *
+     * @return true if the document is in memory, false if it must be read from its file
+     */
+    public boolean isInMemory() {
+        return inMemory;
+    }
+
+    /**
+     *
+     * @return the file the document is read from when it is not in memory
+     */
+    public File getFile() {
+        return file;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    private synchronized void retain() {
+        ++references;
+    }
+
+    /**
+     * Give the memory back to the pool once the document is not needed
+     * anymore (and it has been written to file, if requested)
+     */
+    public synchronized void release() {
+        if (--references > 0) return;
+
+        if (spillStream != null) {
+            try {
+                spillStream.close();
+            } catch (IOException ex) {
+                Logger.getLogger(Main.LOGNAME).log(Level.WARNING, null, ex);
+            }
+            spillStream = null;
+        }
+
+        freeBlocks();
+    }
+
+    private void freeBlocks() {
+        for (byte[] block : blocks) {
+            pool.release(block);
+        }
+
+        blocks.clear();
+    }
+}
@@ -0,0 +1,427 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import common.CorpusChunk;
+import common.Utils;
+import gui.Main;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent download cache shared by all projects.
+ *
+ * Every cached document is stored as two files named after the MD5 digest of
+ * the normalized URI: the body itself and a small properties file with the
+ * mime type, the character set and the validators (ETag and Last-Modified)
+ * sent by the server.
+ *
+ * Fresh entries are served without touching the network, stale entries can be
+ * revalidated with a conditional GET. When the total size of the cache exceeds
+ * the limit, the least recently used entries are evicted.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public class DownloadCache {
+
+    private static final String BODY_EXTENSION = ".body";
+    private static final String META_EXTENSION = ".properties";
+    private static final long   STALE_TMP_AGE  = 24L * 60 * 60 * 1000;     // milliseconds
+
+    private final File                      cacheDir;
+    private final long                      maxSize;
+    private final long                      maxAge;
+    private final HashMap<String, Entry>    entries = new HashMap<>();
+    private long                            totalSize;
+
+    public static class Entry {
+        private final String    key;
+        private File            bodyFile;
+        private File            metaFile;
+        private URI             uri;
+        private URI             finalUri;
+        private List<URI>       redirectChain = new ArrayList<>();
+        private String          mimeType;
+        private String          charset;
+        private String          etag;
+        private String          lastModified;
+        private long            storedAt;
+        private long            lastAccess;
+        private long            size;
+
+        private Entry(String key) {
+            this.key = key;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        public URI getFinalUri() {
+            return finalUri;
+        }
+
+        /**
+         * Return the size of the cached document
+         *
+         * @return
+         */
+        public long getBodySize() {
+            return bodyFile.length();
+        }
+    }
+
+    /**
+     *
+     * @param cacheDir directory where cached files are stored (created if needed)
+     * @param maxSize maximum total size of the cache in bytes
+     * @param maxAge time in milliseconds during which an entry is served without revalidation
+     */
+    public DownloadCache(File cacheDir, long maxSize, long maxAge) {
+        this.cacheDir   = cacheDir;
+        this.maxSize    = maxSize;
+        this.maxAge     = maxAge;
+
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "cannot create download cache directory {0}", cacheDir);
+        }
+
+        load();
+    }
+
+    /**
+     * Normalize a URI so that trivially different spellings share the same entry
+     * (scheme and host are lowercased, default ports, empty paths and fragments are removed).
+     *
+     * @param uri
+     * @return
+     */
+    public static String normalize(URI uri) {
+        String scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase();
+        String host   = uri.getHost()   == null ? "" : uri.getHost().toLowerCase();
+
+        int port = uri.getPort();
+        if ((port == 80 && scheme.equals("http")) || (port == 443 && scheme.equals("https"))) port = -1;
+
+        String path = uri.normalize().getRawPath();
+        if (path == null || path.isEmpty()) path = "/";
+
+        String normalized = scheme + "://" + host + (port == -1 ? "" : ":" + port) + path;
+
+        if (uri.getRawQuery() != null) normalized += "?" + uri.getRawQuery();
+
+        return normalized;
+    }
+
+    /**
+     * Look up a URI in the cache.
+     *
+     * @param uri
+     * @return the cache entry or null if the URI was never cached
+     */
+    public synchronized Entry lookup(URI uri) {
+        return entries.get(Utils.getMd5Digest(normalize(uri)));
+    }
+
+    /**
+     * Return true if the entry can be served without asking the server
+     *
+     * @param entry
+     * @return
+     */
+    public boolean isFresh(Entry entry) {
+        return System.currentTimeMillis() - entry.storedAt < maxAge;
+    }
+
+    /**
+     * Copy a cached document into the download directory of a chunk and fill
+     * in the chunk as if it had just been downloaded.
+     *
+     * The body is always copied, never linked: the download directory is
+     * written in place by later downloads, which must not reach the cache.
+     *
+     * @param entry
+     * @param corpusChunk
+     * @return true if the file was made available, false otherwise
+     */
+    public boolean materialize(Entry entry, CorpusChunk corpusChunk) {
+        corpusChunk.setMimeType(entry.mimeType);
+        corpusChunk.setDeclaredCharset(entry.charset);
+
+        File downloadedFile = new File(corpusChunk.getDownloadDir() + File.separator + corpusChunk.getBaseFileName() + corpusChunk.getMimeType().getDotExtension());
+
+        try {
+            // start from a new file rather than writing over whatever the name points to
+            Files.deleteIfExists(downloadedFile.toPath());
+            Files.copy(entry.bodyFile.toPath(), downloadedFile.toPath());
+        } catch (IOException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "cannot read " + entry.uri + " from download cache", ex);
+            return false;
+        }
+
+        corpusChunk.setDownloadedFile(downloadedFile);
+        corpusChunk.setDownloadedFileSize(downloadedFile.length());
+        corpusChunk.setEtag(entry.etag);
+        corpusChunk.setLastModified(entry.lastModified);
+        corpusChunk.setDownloadedFromCache(true);
+
+        // restore the redirects followed when the entry was stored, unless they were just followed again
+        if (entry.finalUri != null && !entry.finalUri.equals(corpusChunk.getUri())) {
+            if (corpusChunk.getRedirectChain().isEmpty()) {
+                if (entry.redirectChain.isEmpty()) corpusChunk.addRedirect(corpusChunk.getUri());
+
+                for (URI hop : entry.redirectChain) {
+                    corpusChunk.addRedirect(hop);
+                }
+            }
+
+            corpusChunk.setUri(entry.finalUri);
+        }
+
+        touch(entry);
+
+        return true;
+    }
+
+    /**
+     * Mark a stale entry as fresh again (i.e. the server answered 304 Not Modified).
+     *
+     * @param entry
+     */
+    public synchronized void revalidated(Entry entry) {
+        entry.storedAt = System.currentTimeMillis();
+        writeMeta(entry);
+    }
+
+    /**
+     * Store the file downloaded for a chunk in the cache.
+     *
+     * @param requestedUri the URI that was requested (before redirects)
+     * @param corpusChunk
+     */
+    public void store(URI requestedUri, CorpusChunk corpusChunk) {
+        if (requestedUri == null || corpusChunk.getDownloadedFile() == null || !corpusChunk.getDownloadedFile().exists()) return;
+
+        // don't bother caching files that would be evicted right away
+        if (corpusChunk.getDownloadedFile().length() > maxSize) return;
+
+        String key = Utils.getMd5Digest(normalize(requestedUri));
+
+        Entry entry = new Entry(key);
+        entry.bodyFile      = new File(cacheDir, key + BODY_EXTENSION);
+        entry.metaFile      = new File(cacheDir, key + META_EXTENSION);
+        entry.uri           = requestedUri;
+        entry.finalUri      = corpusChunk.getUri();
+        entry.redirectChain = new ArrayList<>(corpusChunk.getRedirectChain());
+        entry.mimeType      = corpusChunk.getMimeType().getMimeType();
+        entry.charset       = corpusChunk.getDeclaredCharset();
+        entry.etag          = corpusChunk.getEtag();
+        entry.lastModified  = corpusChunk.getLastModified();
+        entry.storedAt      = System.currentTimeMillis();
+        entry.lastAccess    = entry.storedAt;
+
+        // write to a temporary file first, so that concurrent readers never see half a file
+        // (its name is unique, other BootCaT instances may be storing the same URI)
+        File tmpFile = null;
+
+        try {
+            tmpFile = Files.createTempFile(cacheDir.toPath(), key + ".", ".tmp").toFile();
+            Files.copy(corpusChunk.getDownloadedFile().toPath(), tmpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+            synchronized (this) {
+                Entry old = entries.remove(key);
+                if (old != null) totalSize -= old.size;
+
+                Files.move(tmpFile.toPath(), entry.bodyFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                entry.size = entry.bodyFile.length();
+
+                writeMeta(entry);
+
+                entries.put(key, entry);
+                totalSize += entry.size;
+
+                evict();
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "cannot store " + requestedUri + " in download cache", ex);
+            if (tmpFile != null) tmpFile.delete();
+        }
+    }
+
+    private synchronized void touch(Entry entry) {
+        entry.lastAccess = System.currentTimeMillis();
+        entry.metaFile.setLastModified(entry.lastAccess);
+    }
+
+    /**
+     * Remove least recently used entries until the cache fits its size limit
+     */
+    private void evict() {
+        if (totalSize <= maxSize) return;
+
+        ArrayList<Entry> lru = new ArrayList<>(entries.values());
+        Collections.sort(lru, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry e1, Entry e2) {
+                return Long.compare(e1.lastAccess, e2.lastAccess);
+            }
+        });
+
+        for (Entry entry : lru) {
+            if (totalSize <= maxSize) break;
+
+            entries.remove(entry.key);
+            totalSize -= entry.size;
+
+            entry.bodyFile.delete();
+            entry.metaFile.delete();
+        }
+    }
+
+    private void writeMeta(Entry entry) {
+        Properties properties = new Properties();
+        properties.setProperty("uri", entry.uri.toString());
+        properties.setProperty("mimeType", entry.mimeType);
+        properties.setProperty("storedAt", Long.toString(entry.storedAt));
+
+        if (entry.finalUri != null)     properties.setProperty("finalUri", entry.finalUri.toString());
+        if (entry.charset != null)      properties.setProperty("charset", entry.charset);
+        if (entry.etag != null)         properties.setProperty("etag", entry.etag);
+        if (entry.lastModified != null) properties.setProperty("lastModified", entry.lastModified);
+
+        if (!entry.redirectChain.isEmpty()) {
+            String redirectChain = "";
+            for (URI hop : entry.redirectChain) {
+                redirectChain += hop + " ";
+            }
+            properties.setProperty("redirectChain", redirectChain.trim());
+        }
+
+        try (OutputStream out = new FileOutputStream(entry.metaFile)) {
+            properties.store(out, null);
+        } catch (IOException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, null, ex);
+        }
+
+        entry.metaFile.setLastModified(entry.lastAccess);
+    }
+
+    /**
+     * Build the index of cached entries from the cache directory
+     */
+    private synchronized void load() {
+        File[] metaFiles = cacheDir.listFiles();
+
+        if (metaFiles == null) return;
+
+        for (File metaFile : metaFiles) {
+            String name = metaFile.getName();
+
+            // leftovers from an interrupted run, recent ones may still be written by another instance
+            if (name.endsWith(".tmp")) {
+                if (System.currentTimeMillis() - metaFile.lastModified() > STALE_TMP_AGE) metaFile.delete();
+                continue;
+            }
+
+            if (!name.endsWith(META_EXTENSION)) continue;
+
+            String key = name.substring(0, name.length() - META_EXTENSION.length());
+            File bodyFile = new File(cacheDir, key + BODY_EXTENSION);
+
+            if (!bodyFile.exists()) {
+                metaFile.delete();
+                continue;
+            }
+
+            Properties properties = new Properties();
+
+            try {
+                try (InputStream in = new FileInputStream(metaFile)) {
+                    properties.load(in);
+                }
+
+                // an entry is useless if it does not say which URI it belongs to
+                if (properties.getProperty("uri") == null) {
+                    Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "discarding download cache entry {0} without a URI", key);
+                    metaFile.delete();
+                    bodyFile.delete();
+                    continue;
+                }
+
+                Entry entry = new Entry(key);
+                entry.bodyFile      = bodyFile;
+                entry.metaFile      = metaFile;
+                entry.uri           = new URI(properties.getProperty("uri"));
+                entry.mimeType      = properties.getProperty("mimeType", "text/html");
+                entry.charset       = properties.getProperty("charset");
+                entry.etag          = properties.getProperty("etag");
+                entry.lastModified  = properties.getProperty("lastModified");
+                entry.storedAt      = Long.parseLong(properties.getProperty("storedAt", "0"));
+                entry.lastAccess    = metaFile.lastModified();
+                entry.size          = bodyFile.length();
+
+                if (properties.getProperty("finalUri") != null) {
+                    entry.finalUri = new URI(properties.getProperty("finalUri"));
+                }
+
+                // URIs never contain spaces, so they can be used as separators
+                if (properties.getProperty("redirectChain") != null) {
+                    for (String hop : properties.getProperty("redirectChain").split(" ")) {
+                        entry.redirectChain.add(new URI(hop));
+                    }
+                }
+
+                entries.put(key, entry);
+                totalSize += entry.size;
+            } catch (IOException | URISyntaxException | NumberFormatException ex) {
+                Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "discarding corrupted download cache entry " + key, ex);
+                metaFile.delete();
+                bodyFile.delete();
+            }
+        }
+
+        evict();
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+}
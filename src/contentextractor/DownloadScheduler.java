@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import common.MimeType;
+import java.net.URI;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Decide the order in which URLs are downloaded, so that the documents most
+ * likely to end up in the corpus come first and stopping early still gives a
+ * usable corpus.
+ *
+ * Every URL gets a score from its file type, its depth and the number of
+ * tuples that returned it. URLs of the same host are queued together and the
+ * best URL of each host competes with the others after being weighted by the
+ * yield of the host (the share of its documents that made it into the corpus
+ * so far) and by the number of its URLs already handed out, so that hosts are
+ * interleaved and a single large site cannot keep all the workers busy.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ * @param <T> type of the scheduled items
+ */
+public class DownloadScheduler<T> implements Iterator<T> {
+
+    // yield of hosts nothing is known about, worth this many documents
+    private static final double PRIOR_YIELD     = 0.5;
+    private static final double PRIOR_WEIGHT    = 2;
+
+    private static class Entry<T> {
+        private final T         item;
+        private final double    score;
+        private final long      sequence;
+
+        private Entry(T item, double score, long sequence) {
+            this.item       = item;
+            this.score      = score;
+            this.sequence   = sequence;
+        }
+    }
+
+    private static class Host<T> {
+        private final PriorityQueue<Entry<T>>   entries = new PriorityQueue<>(11, new Comparator<Entry<T>>() {
+            @Override
+            public int compare(Entry<T> entry1, Entry<T> entry2) {
+                int result = Double.compare(entry2.score, entry1.score);
+                return (result != 0) ? result : Long.compare(entry1.sequence, entry2.sequence);
+            }
+        });
+        private int     served;
+        private int     done;
+        private int     useful;
+        private long    version;
+
+        private double getYield() {
+            return (useful + PRIOR_YIELD * PRIOR_WEIGHT) / (done + PRIOR_WEIGHT);
+        }
+    }
+
+    private static class Candidate<T> {
+        private final Host<T>   host;
+        private final double    priority;
+        private final long      version;
+        private final long      sequence;
+
+        private Candidate(Host<T> host, double priority, long sequence) {
+            this.host       = host;
+            this.priority   = priority;
+            this.version    = host.version;
+            this.sequence   = sequence;
+        }
+    }
+
+    private final HashMap<String, Host<T>>      hosts = new HashMap<>();
+    private final PriorityQueue<Candidate<T>>   candidates = new PriorityQueue<>(11, new Comparator<Candidate<T>>() {
+        @Override
+        public int compare(Candidate<T> candidate1, Candidate<T> candidate2) {
+            int result = Double.compare(candidate2.priority, candidate1.priority);
+            return (result != 0) ? result : Long.compare(candidate1.sequence, candidate2.sequence);
+        }
+    });
+    private long                                sequence;
+    private int                                 size;
+
+    /**
+     * Add an item to the schedule
+     *
+     * @param item
+     * @param uri URI the item will be downloaded from
+     * @param tupleCount number of tuples whose search returned the URI
+     */
+    public synchronized void add(T item, URI uri, int tupleCount) {
+        Host<T> host = getHost(uri);
+
+        host.entries.add(new Entry<>(item, getScore(uri, tupleCount), sequence++));
+        ++size;
+
+        update(host);
+    }
+
+    /**
+     * Record whether a document made it into the corpus, this is used to
+     * estimate the yield of its host
+     *
+     * @param uri
+     * @param useful true if the document was added to the corpus
+     */
+    public synchronized void record(URI uri, boolean useful) {
+        Host<T> host = getHost(uri);
+
+        ++host.done;
+        if (useful) ++host.useful;
+
+        update(host);
+    }
+
+    @Override
+    public synchronized boolean hasNext() {
+        return size > 0;
+    }
+
+    /**
+     * Return the item that should be downloaded next
+     *
+     * @return
+     */
+    @Override
+    public synchronized T next() {
+        Candidate<T> candidate;
+
+        // skip candidates whose host has changed since they were queued
+        while ((candidate = candidates.poll()) != null && candidate.version != candidate.host.version) {
+            // stale
+        }
+
+        if (candidate == null) throw new NoSuchElementException();
+
+        Host<T> host = candidate.host;
+        T item = host.entries.poll().item;
+
+        --size;
+        ++host.served;
+
+        update(host);
+
+        return item;
+    }
+
+    /**
+     * Queue the host again with its current priority
+     *
+     * @param host
+     */
+    private void update(Host<T> host) {
+        ++host.version;
+
+        if (host.entries.isEmpty()) return;
+
+        double priority = host.entries.peek().score * host.getYield() / (1 + host.served);
+
+        candidates.add(new Candidate<>(host, priority, sequence++));
+
+        // stale candidates are only dropped when they reach the head, don't let them pile up
+        if (candidates.size() > 4 * (hosts.size() + 16)) purge();
+    }
+
+    private void purge() {
+        Iterator<Candidate<T>> it = candidates.iterator();
+
+        while (it.hasNext()) {
+            Candidate<T> candidate = it.next();
+            if (candidate.version != candidate.host.version) it.remove();
+        }
+    }
+
+    private Host<T> getHost(URI uri) {
+        String key = HostLimiter.getHostKey(uri);
+        Host<T> host = hosts.get(key);
+
+        if (host == null) {
+            host = new Host<>();
+            hosts.put(key, host);
+        }
+
+        return host;
+    }
+
+    /**
+     * Return the expected value of a URL, regardless of its host
+     *
+     * @param uri
+     * @param tupleCount
+     * @return
+     */
+    static double getScore(URI uri, int tupleCount) {
+        return getTypeWeight(uri) * getDepthWeight(uri) * (1 + Math.log(Math.max(1, tupleCount)) / Math.log(2));
+    }
+
+    /**
+     * Guess the file type from the extension in the path: web pages are the
+     * cheapest to process, other documents take longer, types text cannot
+     * be extracted from are not worth much
+     *
+     * @param uri
+     * @return
+     */
+    private static double getTypeWeight(URI uri) {
+        String path = (uri == null) ? null : uri.getPath();
+
+        if (path == null) return 1;
+
+        String fileName = path.substring(path.lastIndexOf('/') + 1);
+        int dot = fileName.lastIndexOf('.');
+
+        if (dot < 0) return 1;
+
+        MimeType mimeType = MimeType.fromExtension(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+
+        // i.e. .php, .asp, .jsp pages
+        if (mimeType == null || mimeType.isHtmlOrText()) return 1;
+
+        if (mimeType.isExtractable()) return 0.8;
+
+        return 0.1;
+    }
+
+    /**
+     * Home pages are mostly navigation and very deep URLs are often generated
+     * pages (archives, calendars, search results), favour the ones in between
+     *
+     * @param uri
+     * @return
+     */
+    private static double getDepthWeight(URI uri) {
+        String path = (uri == null) ? null : uri.getPath();
+        int depth = 0;
+
+        if (path != null) {
+            for (String segment : path.split("/")) {
+                if (!segment.isEmpty()) ++depth;
+            }
+        }
+
+        if (depth == 0) return (uri != null && uri.getQuery() != null) ? 0.8 : 0.6;
+
+        return (depth <= 4) ? 1 : 4.0 / depth;
+    }
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import gui.Main;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.tika.Tika;
+import org.apache.tika.metadata.Metadata;
+
+/**
+ * Persistent cache of extracted text shared by all projects.
+ *
+ * Entries are keyed by the SHA-256 digest of the downloaded bytes, the mime
+ * type, the extraction mode and the version of the extraction code, so that
+ * building a corpus again with different filters (document size, blacklist,
+ * language) only filters the cached text instead of parsing every document
+ * again, while changing the extraction mode or upgrading Tika does not reuse
+ * stale text.
+ *
+ * Every entry is a single gzipped file holding the metadata and the
+ * normalized text. When the total size of the cache exceeds the limit, the
+ * least recently used entries are evicted.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public class ExtractionCache {
+
+    private static final String EXTENSION       = ".text.gz";
+    private static final int    FORMAT_VERSION  = 1;
+    private static final long   STALE_TMP_AGE   = 24L * 60 * 60 * 1000;    // milliseconds
+
+    // change this whenever the extraction code produces different text from the same document
+    private static final String EXTRACTOR_VERSION = "2 tika-" + Tika.class.getPackage().getImplementationVersion();
+
+    private final File                      cacheDir;
+    private final long                      maxSize;
+    private final HashMap<String, Entry>    entries = new HashMap<>();
+    private long                            totalSize;
+
+    private static class Entry {
+        private final String    key;
+        private final File      file;
+        private long            lastAccess;
+        private long            size;
+
+        private Entry(String key, File file) {
+            this.key    = key;
+            this.file   = file;
+        }
+    }
+
+    /**
+     * The text extracted from a document together with its metadata
+     */
+    public static class Extraction {
+        private final String    text;
+        private final Metadata  metadata;
+
+        private Extraction(String text, Metadata metadata) {
+            this.text       = text;
+            this.metadata   = metadata;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public Metadata getMetadata() {
+            return metadata;
+        }
+    }
+
+    /**
+     *
+     * @param cacheDir directory where cached text is stored (created if needed)
+     * @param maxSize maximum total size of the cache in bytes
+     */
+    public ExtractionCache(File cacheDir, long maxSize) {
+        this.cacheDir   = cacheDir;
+        this.maxSize    = maxSize;
+
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "cannot create extraction cache directory {0}", cacheDir);
+        }
+
+        load();
+    }
+
+    /**
+     * Compute the key of a document, i.e. the digest of its bytes and of
+     * everything else the extracted text depends on
+     *
+     * @param content the downloaded document
+     * @param mimeType
+     * @param extractionSettings mode actually used to extract the text and its settings, if any
+     * @return
+     * @throws IOException if the document cannot be read
+     */
+    public static String getKey(DocumentBuffer content, String mimeType, String extractionSettings) throws IOException {
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        }
+
+        try (InputStream stream = content.openStream()) {
+            byte[] buffer = new byte[65536];
+            int bytesRead;
+
+            while ((bytesRead = stream.read(buffer)) != -1) {
+                digest.update(buffer, 0, bytesRead);
+            }
+        }
+
+        digest.update(("\n" + mimeType + "\n" + extractionSettings + "\n" + EXTRACTOR_VERSION).getBytes(StandardCharsets.UTF_8));
+
+        String key = new BigInteger(1, digest.digest()).toString(16);
+
+        while (key.length() < 64) {
+            key = "0" + key;
+        }
+
+        return key;
+    }
+
+    /**
+     * Look up the text extracted from a document
+     *
+     * @param key
+     * @return the cached text or null if the document was never cached
+     */
+    public Extraction lookup(String key) {
+        Entry entry;
+
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+
+        if (entry == null) return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(entry.file))))) {
+            if (in.readInt() != FORMAT_VERSION) throw new IOException("unknown format");
+
+            Metadata metadata = new Metadata();
+
+            int names = in.readInt();
+            for (int i = 0; i < names; ++i) {
+                String name = readString(in);
+
+                int values = in.readInt();
+                for (int j = 0; j < values; ++j) {
+                    metadata.add(name, readString(in));
+                }
+            }
+
+            String text = readString(in);
+
+            touch(entry);
+
+            return new Extraction(text, metadata);
+        } catch (IOException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "discarding corrupted extraction cache entry " + key, ex);
+            remove(entry);
+        }
+
+        return null;
+    }
+
+    /**
+     * Store the text extracted from a document
+     *
+     * @param key
+     * @param text normalized text, as written to the corpus before filtering
+     * @param metadata
+     */
+    public void store(String key, String text, Metadata metadata) {
+        Entry entry = new Entry(key, new File(cacheDir, key + EXTENSION));
+
+        // write to a temporary file first, so that concurrent readers never see half a file
+        // (its name is unique, other BootCaT instances may be storing the same key)
+        File tmpFile = null;
+
+        try {
+            tmpFile = Files.createTempFile(cacheDir.toPath(), key + ".", ".tmp").toFile();
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmpFile))))) {
+                out.writeInt(FORMAT_VERSION);
+
+                String[] names = (metadata == null) ? new String[0] : metadata.names();
+                out.writeInt(names.length);
+
+                for (String name : names) {
+                    writeString(out, name);
+
+                    String[] values = metadata.getValues(name);
+                    out.writeInt(values.length);
+
+                    for (String value : values) {
+                        writeString(out, value);
+                    }
+                }
+
+                writeString(out, text);
+            }
+
+            synchronized (this) {
+                Entry old = entries.remove(key);
+                if (old != null) totalSize -= old.size;
+
+                Files.move(tmpFile.toPath(), entry.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                entry.size          = entry.file.length();
+                entry.lastAccess    = System.currentTimeMillis();
+
+                entries.put(key, entry);
+                totalSize += entry.size;
+
+                evict();
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "cannot store " + key + " in extraction cache", ex);
+            if (tmpFile != null) tmpFile.delete();
+        }
+    }
+
+    // DataOutputStream.writeUTF() is limited to 64 KB
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+
+        in.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private synchronized void touch(Entry entry) {
+        entry.lastAccess = System.currentTimeMillis();
+        entry.file.setLastModified(entry.lastAccess);
+    }
+
+    private synchronized void remove(Entry entry) {
+        if (entries.get(entry.key) == entry) {
+            entries.remove(entry.key);
+            totalSize -= entry.size;
+        }
+
+        entry.file.delete();
+    }
+
+    /**
+     * Remove least recently used entries until the cache fits its size limit
+     */
+    private void evict() {
+        if (totalSize <= maxSize) return;
+
+        ArrayList<Entry> lru = new ArrayList<>(entries.values());
+        Collections.sort(lru, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry e1, Entry e2) {
+                return Long.compare(e1.lastAccess, e2.lastAccess);
+            }
+        });
+
+        for (Entry entry : lru) {
+            if (totalSize <= maxSize) break;
+
+            entries.remove(entry.key);
+            totalSize -= entry.size;
+
+            entry.file.delete();
+        }
+    }
+
+    /**
+     * Build the index of cached entries from the cache directory
+     */
+    private synchronized void load() {
+        File[] files = cacheDir.listFiles();
+
+        if (files == null) return;
+
+        for (File file : files) {
+            String name = file.getName();
+
+            // leftovers from an interrupted run, recent ones may still be written by another instance
+            if (name.endsWith(".tmp")) {
+                if (System.currentTimeMillis() - file.lastModified() > STALE_TMP_AGE) file.delete();
+                continue;
+            }
+
+            if (!name.endsWith(EXTENSION)) continue;
+
+            Entry entry = new Entry(name.substring(0, name.length() - EXTENSION.length()), file);
+            entry.size          = file.length();
+            entry.lastAccess    = file.lastModified();
+
+            entries.put(entry.key, entry);
+            totalSize += entry.size;
+        }
+
+        evict();
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+}
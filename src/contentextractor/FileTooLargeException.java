@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a download is aborted because the file exceeds the maximum
+ * file size set by the user.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public class FileTooLargeException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long size;
+
+    /**
+     *
+     * @param size size of the file as announced by the server or number of bytes received before aborting
+     * @param maxFileSize the limit that was exceeded
+     */
+    public FileTooLargeException(long size, long maxFileSize) {
+        super("file is too large (" + size + " bytes), limit is " + maxFileSize + " bytes");
+        this.size = size;
+    }
+
+    public long getSize() {
+        return size;
+    }
+}
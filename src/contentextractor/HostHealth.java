@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import java.net.URI;
+import java.util.HashMap;
+
+/**
+ * Keep track of the health of the hosts we download from (a per-host circuit breaker).
+ *
+ * After a number of consecutive failures (timeouts, connection errors, server
+ * errors) within a time window the breaker of the host opens and requests to
+ * that host are refused without touching the network. Once the cool-down
+ * period has expired a single probe request is let through: if it succeeds the
+ * breaker closes again, otherwise it stays open for another cool-down period.
+ * A probe that is never sent must be given back with release.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public class HostHealth {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private static class Breaker {
+        private State   state = State.CLOSED;
+        private int     failures;
+        private long    firstFailure;
+        private long    openedAt;
+        private Thread  prober;
+    }
+
+    private final int                       failureThreshold;
+    private final long                      failureWindow;
+    private final long                      coolDown;
+    private final HashMap<String, Breaker>  breakers = new HashMap<>();
+
+    /**
+     *
+     * @param failureThreshold number of consecutive failures that opens the breaker
+     * @param failureWindow time in milliseconds within which failures must occur to be counted together
+     * @param coolDown time in milliseconds before a probe request is let through an open breaker
+     */
+    public HostHealth(int failureThreshold, long failureWindow, long coolDown) {
+        this.failureThreshold   = failureThreshold;
+        this.failureWindow      = failureWindow;
+        this.coolDown           = coolDown;
+    }
+
+    /**
+     * Return true if a request to the host of a URI may be sent.
+     *
+     * When the cool-down of an open breaker has expired, the caller is given
+     * the probe request and must report its outcome with success or failure.
+     *
+     * @param uri
+     * @return
+     */
+    public synchronized boolean allowRequest(URI uri) {
+        Breaker breaker = breakers.get(HostLimiter.getHostKey(uri));
+
+        if (breaker == null) return true;
+
+        switch (breaker.state) {
+            case OPEN:
+                if (System.currentTimeMillis() - breaker.openedAt < coolDown) return false;
+
+                breaker.state = State.HALF_OPEN;
+                breaker.prober = Thread.currentThread();
+                return true;
+
+            case HALF_OPEN:
+                // a probe is already in flight
+                return false;
+
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Record that the host answered
+     *
+     * @param uri
+     */
+    public synchronized void success(URI uri) {
+        breakers.remove(HostLimiter.getHostKey(uri));
+    }
+
+    /**
+     * Record a failed request to the host
+     *
+     * @param uri
+     * @return true if the breaker of the host is open after this failure
+     */
+    public synchronized boolean failure(URI uri) {
+        String host = HostLimiter.getHostKey(uri);
+        long now = System.currentTimeMillis();
+
+        Breaker breaker = breakers.get(host);
+        if (breaker == null) {
+            breaker = new Breaker();
+            breakers.put(host, breaker);
+        }
+
+        switch (breaker.state) {
+            case HALF_OPEN:
+                // the probe failed
+                breaker.state = State.OPEN;
+                breaker.openedAt = now;
+                breaker.prober = null;
+                break;
+
+            case OPEN:
+                break;
+
+            default:
+                if (breaker.failures == 0 || now - breaker.firstFailure > failureWindow) {
+                    breaker.failures = 0;
+                    breaker.firstFailure = now;
+                }
+
+                if (++breaker.failures >= failureThreshold) {
+                    breaker.state = State.OPEN;
+                    breaker.openedAt = now;
+                }
+        }
+
+        return breaker.state == State.OPEN;
+    }
+
+    /**
+     * Give back the probe request handed out to the current thread by
+     * allowRequest if no outcome was reported for it (i.e. the request was
+     * never sent), so that the next request to the host becomes the probe.
+     *
+     * It does nothing if the current thread doesn't hold the probe, so it
+     * can be called on every exit path.
+     *
+     * @param uri
+     */
+    public synchronized void release(URI uri) {
+        Breaker breaker = breakers.get(HostLimiter.getHostKey(uri));
+
+        if (breaker == null || breaker.state != State.HALF_OPEN || breaker.prober != Thread.currentThread()) return;
+
+        // the cool-down has already expired
+        breaker.state = State.OPEN;
+        breaker.prober = null;
+    }
+
+    public synchronized State getState(URI uri) {
+        Breaker breaker = breakers.get(HostLimiter.getHostKey(uri));
+
+        if (breaker == null) return State.CLOSED;
+
+        return breaker.state;
+    }
+}
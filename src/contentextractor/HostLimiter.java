@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limit the number of simultaneous connections to the same host.
+ *
+ * Every host gets its own fair semaphore the first time it is seen, so that
+ * concurrent downloads never hit a single server with more than
+ * maxConnectionsPerHost requests at a time.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public class HostLimiter {
+
+    private final int                                   maxConnectionsPerHost;
+    private final ConcurrentHashMap<String, Semaphore>  semaphores = new ConcurrentHashMap<>();
+
+    public HostLimiter(int maxConnectionsPerHost) {
+        if (maxConnectionsPerHost < 1) maxConnectionsPerHost = 1;
+
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    /**
+     * Block until a connection slot for the host of the URI is available.
+     *
+     * @param uri
+     * @throws InterruptedException
+     */
+    public void acquire(URI uri) throws InterruptedException {
+        getSemaphore(uri).acquire();
+    }
+
+    /**
+     * Give back a connection slot previously obtained with acquire()
+     *
+     * @param uri
+     */
+    public void release(URI uri) {
+        getSemaphore(uri).release();
+    }
+
+    private Semaphore getSemaphore(URI uri) {
+        String host = getHostKey(uri);
+
+        Semaphore semaphore = semaphores.get(host);
+
+        if (semaphore == null) {
+            Semaphore newSemaphore = new Semaphore(maxConnectionsPerHost, true);
+            semaphore = semaphores.putIfAbsent(host, newSemaphore);
+            if (semaphore == null) semaphore = newSemaphore;
+        }
+
+        return semaphore;
+    }
+
+    /**
+     * Return the key used to group URIs by host (local files all share the same key)
+     *
+     * @param uri
+     * @return
+     */
+    public static String getHostKey(URI uri) {
+        if (uri == null || uri.getHost() == null) return "";
+
+        return uri.getHost().toLowerCase();
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+}
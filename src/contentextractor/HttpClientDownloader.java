@@ -0,0 +1,683 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import common.ContentTypePolicy;
+import common.CorpusChunk;
+import common.Downloader;
+import common.Utils;
+import gui.Main;
+import java.io.File;
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.InetSocketAddress;
+import java.net.PasswordAuthentication;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+/**
+ * Download corpus chunks using a single shared java.net.http.HttpClient.
+ *
+ * The client keeps connections alive and reuses them for subsequent requests
+ * to the same host and it negotiates HTTP/2 when the server supports it, so
+ * requests to the same host are multiplexed on a single connection. The same
+ * code path is used for both http and https URIs.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public class HttpClientDownloader {
+
+    private final String    userAgent;
+    private final int       connectionTimeout;
+    private final int       readTimeout;
+    private long            maxFileSize;
+    private DownloadCache   downloadCache;
+    private RedirectFollower redirectFollower = new RedirectFollower(RedirectFollower.DEFAULT_MAX_HOPS);
+    private AdaptiveTimeouts adaptiveTimeouts;
+    private ContentTypePolicy contentTypePolicy = ContentTypePolicy.ANY;
+    private LanguageSniffer languageSniffer;
+    private RateLimiter     rateLimiter;
+
+    private HttpClient      client;
+    private HttpClient      insecureClient;
+
+    private boolean         useProxy;
+    private boolean         proxyAuth;
+    private String          httpProxy;
+    private String          httpsProxy;
+    private int             httpProxyPort;
+    private int             httpsProxyPort;
+    private String          httpProxyUser;
+    private String          httpsProxyUser;
+    private String          httpProxyPassword;
+    private String          httpsProxyPassword;
+
+    /**
+     *
+     * @param userAgent
+     * @param connectionTimeout connection timeout in milliseconds
+     * @param readTimeout timeout in milliseconds for receiving the response headers
+     * and maximum time without receiving data while the body is transferred
+     */
+    public HttpClientDownloader(String userAgent, int connectionTimeout, int readTimeout) {
+        this.userAgent          = userAgent;
+        this.connectionTimeout  = connectionTimeout;
+        this.readTimeout        = readTimeout;
+    }
+
+    /**
+     * Download a corpus chunk.
+     *
+     * The mime type of the chunk is determined from the response headers and
+     * the body is streamed directly to the downloaded file.
+     *
+     * @param corpusChunk
+     * @return true if the file was downloaded, false otherwise
+     */
+    public boolean download(CorpusChunk corpusChunk) {
+        try {
+            return download(corpusChunk, getClient());
+        } catch (FileTooLargeException ex) {
+            abortTooLarge(corpusChunk, ex);
+            return false;
+        } catch (WrongLanguageException ex) {
+            abortWrongLanguage(corpusChunk, ex);
+            return false;
+        } catch (RedirectException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, ex.getMessage());
+            return false;
+        } catch (SSLHandshakeException ex) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "SSLHandshakeException, disabling SSL verification and retrying", ex);
+
+            try {
+                return download(corpusChunk, getInsecureClient());
+            } catch (FileTooLargeException retryEx) {
+                abortTooLarge(corpusChunk, retryEx);
+                return false;
+            } catch (WrongLanguageException retryEx) {
+                abortWrongLanguage(corpusChunk, retryEx);
+                return false;
+            } catch (RedirectException retryEx) {
+                Logger.getLogger(Main.LOGNAME).log(Level.WARNING, retryEx.getMessage());
+                return false;
+            } catch (IOException retryEx) {
+                Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, retryEx);
+                return false;
+            }
+        } catch (IOException ex) {
+            // timeouts, refused or reset connections... the host may be back later
+            Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
+            corpusChunk.setRetryable(!(ex instanceof UnknownHostException));
+            return false;
+        }
+    }
+
+    private boolean download(final CorpusChunk corpusChunk, HttpClient httpClient) throws IOException {
+        // the cache is keyed by the URI that was originally requested
+        DownloadCache.Entry cached = (downloadCache == null) ? null : downloadCache.lookup(corpusChunk.getRequestedUri());
+
+        HttpResponse<Path> response = send(corpusChunk, httpClient, cached);
+
+        // follow redirects ourselves, so that every hop is recorded and loops are detected
+        while (RedirectFollower.isRedirect(response.statusCode())) {
+            redirectFollower.follow(corpusChunk, response.headers().firstValue("Location").orElse(null));
+            response = send(corpusChunk, httpClient, cached);
+        }
+
+        if (cached != null && response.statusCode() == 304) {
+            // the copy may have been stored by a project with a larger limit
+            if (maxFileSize > 0 && cached.getBodySize() > maxFileSize) throw new FileTooLargeException(cached.getBodySize(), maxFileSize);
+
+            downloadCache.revalidated(cached);
+            corpusChunk.setDownloader(Downloader.HTTP_CLIENT);
+            return downloadCache.materialize(cached, corpusChunk);
+        }
+
+        // the transfer was aborted by the content type policy
+        if (corpusChunk.getStatus() == CorpusChunk.CorpusChunkStatus.UNSUPPORTED_CONTENT_TYPE) return false;
+
+        if (response.statusCode() >= 400 || response.body() == null) {
+            Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "HTTP status {0} for {1}", new Object[] {response.statusCode(), corpusChunk.getUri()});
+            corpusChunk.setRetryable(RetryScheduler.isTransientStatus(response.statusCode()));
+            return false;
+        }
+
+        corpusChunk.setEtag(response.headers().firstValue("ETag").orElse(null));
+        corpusChunk.setLastModified(response.headers().firstValue("Last-Modified").orElse(null));
+        corpusChunk.setDownloader(Downloader.HTTP_CLIENT);
+
+        return true;
+    }
+
+    /**
+     * Send a single request for the current URI of the chunk, without following redirects.
+     *
+     * The body is only written to the downloaded file if the response is
+     * neither an error nor a redirect.
+     *
+     * @param corpusChunk
+     * @param httpClient
+     * @param cached stale cache entry to revalidate, or null
+     * @return
+     * @throws IOException
+     */
+    private HttpResponse<Path> send(final CorpusChunk corpusChunk, HttpClient httpClient, DownloadCache.Entry cached) throws IOException {
+        final URI uri = corpusChunk.getUri();
+
+        // the client's connect timeout is shared by all hosts, only the response timeout can be adapted
+        int requestConnectTimeout   = connectionTimeout;
+        int requestReadTimeout      = readTimeout;
+        if (adaptiveTimeouts != null) {
+            requestConnectTimeout   = adaptiveTimeouts.getConnectTimeout(uri);
+            requestReadTimeout      = adaptiveTimeouts.getReadTimeout(uri);
+        }
+
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(uri)
+                .header("User-Agent", userAgent)
+                .header("Accept-Encoding", ContentEncoding.ACCEPT_ENCODING)
+                .timeout(Duration.ofMillis(requestConnectTimeout + requestReadTimeout))
+                .GET();
+
+        // if we have a stale copy in the cache, ask the server whether it changed
+        if (cached != null) {
+            if (cached.getEtag() != null) requestBuilder.header("If-None-Match", cached.getEtag());
+            if (cached.getLastModified() != null) requestBuilder.header("If-Modified-Since", cached.getLastModified());
+        }
+
+        HttpRequest request = requestBuilder.build();
+
+        final long start = System.currentTimeMillis();
+        
+        final AtomicReference<DecodingBodySubscriber<Path>> bodySubscriber = new AtomicReference<>();
+        final AtomicReference<ThrottlingBodySubscriber<Path>> throttlingSubscriber = new AtomicReference<>();
+        final AtomicBoolean cancelled = new AtomicBoolean();
+
+        // choose the destination file once headers are received, since the file
+        // extension depends on the content type sent by the server
+        HttpResponse.BodyHandler<Path> bodyHandler = new HttpResponse.BodyHandler<Path>() {
+            @Override
+            public HttpResponse.BodySubscriber<Path> apply(HttpResponse.ResponseInfo responseInfo) {
+
+                // headers have been received: this is the latency of the host (connection included)
+                if (adaptiveTimeouts != null) adaptiveTimeouts.recordResponse(uri, System.currentTimeMillis() - start);
+
+                if (responseInfo.statusCode() >= 400 || responseInfo.statusCode() == 304 || RedirectFollower.isRedirect(responseInfo.statusCode())) {
+                    return HttpResponse.BodySubscribers.replacing(null);
+                }
+
+                // the request timed out while waiting for the headers, nothing must be written
+                if (cancelled.get()) return new RejectingBodySubscriber();
+
+                String contentType = responseInfo.headers().firstValue("Content-Type").orElse(null);
+                corpusChunk.setMimeType(Utils.getMimeTypeFromContentType(contentType));
+                corpusChunk.setDeclaredCharset(CharsetResolver.getCharsetParameter(contentType));
+
+                // don't transfer the body of documents we are not interested in
+                if (!contentTypePolicy.admits(corpusChunk.getMimeType())) {
+                    corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.UNSUPPORTED_CONTENT_TYPE);
+                    return new RejectingBodySubscriber();
+                }
+
+                File downloadedFile = new File(corpusChunk.getDownloadDir() + File.separator + corpusChunk.getBaseFileName() + corpusChunk.getMimeType().getDotExtension());
+                corpusChunk.setDownloadedFile(downloadedFile);
+
+                long contentLength = responseInfo.headers().firstValueAsLong("Content-Length").orElse(-1);
+
+                // the size limit applies to the decoded body
+                String contentEncodingHeader = responseInfo.headers().firstValue("Content-Encoding").orElse(null);
+                ContentEncoding contentEncoding = ContentEncoding.fromHeader(contentEncodingHeader);
+                if (contentEncoding == null) {
+                    Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "unsupported content encoding {0} for {1}", new Object[] {contentEncodingHeader, uri});
+                    return HttpResponse.BodySubscribers.replacing(null);
+                }
+
+                corpusChunk.setContentEncoding(contentEncoding == ContentEncoding.IDENTITY ? null : contentEncodingHeader);
+
+                // ofFile(path) alone does not truncate, a shorter document would keep the tail of the previous run's file
+                HttpResponse.BodySubscriber<Path> fileSubscriber = new SizeLimitedBodySubscriber<>(HttpResponse.BodySubscribers.ofFile(downloadedFile.toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), maxFileSize, contentLength);
+
+                // look at the beginning of web pages before writing anything
+                if (languageSniffer != null && corpusChunk.getMimeType().isHtmlOrText()) {
+                    fileSubscriber = new SniffingBodySubscriber<>(fileSubscriber, languageSniffer, contentType);
+                }
+
+                DecodingBodySubscriber<Path> decodingSubscriber = new DecodingBodySubscriber<>(fileSubscriber, contentEncoding);
+
+                synchronized (bodySubscriber) {
+                    if (cancelled.get()) return new RejectingBodySubscriber();
+                    bodySubscriber.set(decodingSubscriber);
+                }
+
+                // the bandwidth limit applies to the bytes actually received
+                if (rateLimiter != null) {
+                    throttlingSubscriber.set(new ThrottlingBodySubscriber<>(decodingSubscriber, rateLimiter));
+                    return throttlingSubscriber.get();
+                }
+
+                return decodingSubscriber;
+            }
+        };
+
+        CompletableFuture<HttpResponse<Path>> future = httpClient.sendAsync(request, bodyHandler);
+
+        // the latency of the headers says nothing about pauses in the body, the
+        // configured timeout is the least we wait for more data
+        long idleTimeout = Math.max(requestReadTimeout, readTimeout);
+
+        try {
+            HttpResponse<Path> response = await(future, bodySubscriber, throttlingSubscriber, start + requestConnectTimeout + requestReadTimeout + idleTimeout, idleTimeout);
+
+            if (bodySubscriber.get() != null) {
+                corpusChunk.setWireSize(bodySubscriber.get().getWireBytes());
+                corpusChunk.setDecodedSize(bodySubscriber.get().getDecodedBytes());
+            }
+
+            return response;
+        } catch (InterruptedException ex) {
+            cancel(corpusChunk, future, bodySubscriber, cancelled);
+            Thread.currentThread().interrupt();
+            throw new IOException("download interrupted", ex);
+        } catch (TimeoutException ex) {
+            cancel(corpusChunk, future, bodySubscriber, cancelled);
+            if (adaptiveTimeouts != null) adaptiveTimeouts.timedOut(uri);
+            throw new IOException("download timed out: " + uri, ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof HttpTimeoutException && adaptiveTimeouts != null) adaptiveTimeouts.timedOut(uri);
+            if (ex.getCause() instanceof SSLHandshakeException) throw (SSLHandshakeException) ex.getCause();
+            if (ex.getCause() instanceof IOException) throw (IOException) ex.getCause();
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    /**
+     * Wait for a response whose body is written while it arrives.
+     *
+     * There is no limit on the time the whole transfer takes (large files
+     * are fine as long as data keeps coming), it times out if no data is
+     * received for idleTimeout milliseconds. Pauses imposed by the bandwidth
+     * limit don't count.
+     *
+     * @param future
+     * @param bodySubscriber subscriber of the body, set once the headers are received
+     * @param throttlingSubscriber set if the bandwidth is limited
+     * @param headersDeadline time by which headers must have been received
+     * (the client's request timeout is normally reached first)
+     * @param idleTimeout milliseconds
+     * @return
+     * @throws InterruptedException
+     * @throws ExecutionException
+     * @throws TimeoutException
+     */
+    private HttpResponse<Path> await(CompletableFuture<HttpResponse<Path>> future, AtomicReference<DecodingBodySubscriber<Path>> bodySubscriber,
+            AtomicReference<ThrottlingBodySubscriber<Path>> throttlingSubscriber, long headersDeadline, long idleTimeout)
+            throws InterruptedException, ExecutionException, TimeoutException {
+
+        while (true) {
+            long wait;
+
+            if (bodySubscriber.get() == null) {
+                wait = headersDeadline - System.currentTimeMillis();
+            }
+            else {
+                long lastActivity = bodySubscriber.get().getLastActivity();
+                if (throttlingSubscriber.get() != null) lastActivity = Math.max(lastActivity, throttlingSubscriber.get().getResumeAt());
+
+                wait = idleTimeout - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastActivity);
+            }
+
+            if (wait <= 0) throw new TimeoutException();
+
+            try {
+                return future.get(wait, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                // data may have been received in the meantime, check again
+            }
+        }
+    }
+
+    /**
+     * Abandon a request that is still running: the exchange is cancelled, so
+     * that its connection is released and the body is no longer written,
+     * and the partial file is removed (a retry writes to the same file).
+     *
+     * @param corpusChunk
+     * @param future
+     * @param bodySubscriber subscriber of the body, if the headers were received
+     * @param cancelled checked by the body handler in case the headers arrive later
+     */
+    private void cancel(CorpusChunk corpusChunk, CompletableFuture<HttpResponse<Path>> future, AtomicReference<DecodingBodySubscriber<Path>> bodySubscriber, AtomicBoolean cancelled) {
+        DecodingBodySubscriber<Path> subscriber;
+
+        synchronized (bodySubscriber) {
+            cancelled.set(true);
+            subscriber = bodySubscriber.get();
+        }
+
+        future.cancel(true);
+
+        if (subscriber == null) return;
+
+        // the subscriber closes the file before returning
+        subscriber.cancel();
+
+        if (corpusChunk.getDownloadedFile() != null) corpusChunk.getDownloadedFile().delete();
+    }
+
+    /**
+     * Body subscriber that cancels the transfer as soon as it starts
+     */
+    private static class RejectingBodySubscriber implements HttpResponse.BodySubscriber<Path> {
+
+        @Override
+        public CompletionStage<Path> getBody() {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.cancel();
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    /**
+     * Record that the download was aborted because the file is too large
+     * and remove what was written so far.
+     * 
+     * @param corpusChunk
+     * @param ex 
+     */
+    private void abortTooLarge(CorpusChunk corpusChunk, FileTooLargeException ex) {
+        Logger.getLogger(Main.LOGNAME).log(Level.INFO, "{0}: {1}", new Object[] {corpusChunk.getUri(), ex.getMessage()});
+        
+        corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.FILE_TOO_LARGE);
+        corpusChunk.setDownloadedFileSize(ex.getSize());
+        
+        if (corpusChunk.getDownloadedFile() != null) {
+            corpusChunk.getDownloadedFile().delete();
+        }
+    }
+
+    /**
+     * Record that the download was aborted because the page is in the wrong language
+     * and remove what was written so far.
+     * 
+     * @param corpusChunk
+     * @param ex 
+     */
+    private void abortWrongLanguage(CorpusChunk corpusChunk, WrongLanguageException ex) {
+        Logger.getLogger(Main.LOGNAME).log(Level.INFO, "{0}: {1}", new Object[] {corpusChunk.getUri(), ex.getMessage()});
+        
+        corpusChunk.setStatus(CorpusChunk.CorpusChunkStatus.WRONG_LANGUAGE);
+        corpusChunk.setDetectedLanguages(ex.getDetectedLanguages());
+        
+        if (corpusChunk.getDownloadedFile() != null) {
+            corpusChunk.getDownloadedFile().delete();
+        }
+    }
+
+    private synchronized HttpClient getClient() {
+        if (client == null) {
+            client = newClientBuilder().build();
+        }
+
+        return client;
+    }
+
+    /**
+     * Use this client when a SSLHandshakeException is raised
+     * (normally caused by a SSL certificate containing an *)
+     *
+     * @return
+     */
+    private synchronized HttpClient getInsecureClient() {
+        if (insecureClient == null) {
+            HttpClient.Builder builder = newClientBuilder();
+
+            try {
+                TrustManager[] trustAllCerts = new TrustManager[] {new X509TrustManager() {
+                        @Override
+                        public X509Certificate[] getAcceptedIssuers() {
+                            return new X509Certificate[0];
+                        }
+                        @Override
+                        public void checkClientTrusted(X509Certificate[] certs, String authType) {
+                        }
+                        @Override
+                        public void checkServerTrusted(X509Certificate[] certs, String authType) {
+                        }
+                    }
+                };
+
+                SSLContext sc = SSLContext.getInstance("TLS");
+                sc.init(null, trustAllCerts, new java.security.SecureRandom());
+                builder.sslContext(sc);
+            } catch (NoSuchAlgorithmException | KeyManagementException ex) {
+                Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
+            }
+
+            insecureClient = builder.build();
+        }
+
+        return insecureClient;
+    }
+
+    private HttpClient.Builder newClientBuilder() {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofMillis(connectionTimeout));
+
+        if (useProxy) {
+            builder.proxy(new ProxySelector() {
+                @Override
+                public List<Proxy> select(URI uri) {
+                    if ("https".equals(uri.getScheme()) && httpsProxy != null && !httpsProxy.isEmpty()) {
+                        return Collections.singletonList(new Proxy(Proxy.Type.HTTP, new InetSocketAddress(httpsProxy, httpsProxyPort)));
+                    }
+
+                    if (httpProxy != null && !httpProxy.isEmpty()) {
+                        return Collections.singletonList(new Proxy(Proxy.Type.HTTP, new InetSocketAddress(httpProxy, httpProxyPort)));
+                    }
+
+                    return Collections.singletonList(Proxy.NO_PROXY);
+                }
+
+                @Override
+                public void connectFailed(URI uri, SocketAddress sa, IOException ioe) {
+                    Logger.getLogger(Main.LOGNAME).log(Level.WARNING, "cannot connect to proxy " + sa, ioe);
+                }
+            });
+
+            if (proxyAuth) {
+                builder.authenticator(new Authenticator() {
+                    @Override
+                    protected PasswordAuthentication getPasswordAuthentication() {
+                        if (getRequestorType() != RequestorType.PROXY) return null;
+
+                        if (getRequestingHost() != null && getRequestingHost().equals(httpsProxy) && httpsProxyUser != null) {
+                            return new PasswordAuthentication(httpsProxyUser, nullToEmpty(httpsProxyPassword).toCharArray());
+                        }
+
+                        if (httpProxyUser != null) {
+                            return new PasswordAuthentication(httpProxyUser, nullToEmpty(httpProxyPassword).toCharArray());
+                        }
+
+                        return null;
+                    }
+                });
+            }
+        }
+
+        return builder;
+    }
+
+    private static String nullToEmpty(String string) {
+        if (string == null) return "";
+
+        return string;
+    }
+
+    /**
+     * Set the maximum size of downloaded files, larger files will be aborted
+     * while they are being transferred
+     * 
+     * @param maxFileSize maximum size in bytes, 0 means no limit
+     */
+    public void setMaxFileSize(long maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * Set the redirect follower, so that redirects are shared with the other downloaders
+     * 
+     * @param redirectFollower 
+     */
+    public void setRedirectFollower(RedirectFollower redirectFollower) {
+        this.redirectFollower = redirectFollower;
+    }
+
+    /**
+     * Set which content types are downloaded, the transfer of other documents
+     * is aborted as soon as the response headers are received
+     * 
+     * @param contentTypePolicy 
+     */
+    public void setContentTypePolicy(ContentTypePolicy contentTypePolicy) {
+        this.contentTypePolicy = contentTypePolicy;
+    }
+
+    /**
+     * Set the sniffer used to abort downloads of web pages in the wrong language,
+     * null means that pages are always downloaded
+     * 
+     * @param languageSniffer 
+     */
+    public void setLanguageSniffer(LanguageSniffer languageSniffer) {
+        this.languageSniffer = languageSniffer;
+    }
+
+    /**
+     * Set the limiter shared by all downloads to limit the bandwidth, null means no limit
+     * 
+     * @param rateLimiter 
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Set the tracker used to learn response timeouts from the latency of each host,
+     * null means that fixed timeouts are used
+     * 
+     * @param adaptiveTimeouts 
+     */
+    public void setAdaptiveTimeouts(AdaptiveTimeouts adaptiveTimeouts) {
+        this.adaptiveTimeouts = adaptiveTimeouts;
+    }
+
+    /**
+     * Set the download cache used for conditional requests, null disables them
+     * 
+     * @param downloadCache 
+     */
+    public void setDownloadCache(DownloadCache downloadCache) {
+        this.downloadCache = downloadCache;
+    }
+
+    public void setUseProxy(boolean useProxy) {
+        this.useProxy = useProxy;
+    }
+
+    public void setProxyAuth(boolean proxyAuth) {
+        this.proxyAuth = proxyAuth;
+    }
+
+    public void setHttpProxy(String httpProxy) {
+        this.httpProxy = httpProxy;
+    }
+
+    public void setHttpsProxy(String httpsProxy) {
+        this.httpsProxy = httpsProxy;
+    }
+
+    public void setHttpProxyPort(int httpProxyPort) {
+        this.httpProxyPort = httpProxyPort;
+    }
+
+    public void setHttpsProxyPort(int httpsProxyPort) {
+        this.httpsProxyPort = httpsProxyPort;
+    }
+
+    public void setHttpProxyUser(String httpProxyUser) {
+        this.httpProxyUser = httpProxyUser;
+    }
+
+    public void setHttpsProxyUser(String httpsProxyUser) {
+        this.httpsProxyUser = httpsProxyUser;
+    }
+
+    public void setHttpProxyPassword(String httpProxyPassword) {
+        this.httpProxyPassword = httpProxyPassword;
+    }
+
+    public void setHttpsProxyPassword(String httpsProxyPassword) {
+        this.httpsProxyPassword = httpsProxyPassword;
+    }
+}
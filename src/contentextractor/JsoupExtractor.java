@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import common.Tokenizer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
+
+/**
+ * Fast boilerplate removal for HTML pages with jsoup.
+ *
+ * Elements matching the removal list (CSS selectors, e.g. "nav" or ".sidebar")
+ * are dropped, the rest of the page is split into blocks at block-level
+ * elements and a block is kept if it has enough words and few of them are
+ * in links. Short blocks and headings are kept when they are surrounded by
+ * (or introduce) kept blocks.
+ *
+ * It is less precise than Boilerpipe, but much faster on large crawls.
+ * Instances can be shared by any number of threads.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public class JsoupExtractor {
+
+    public static final String  DEFAULT_REMOVED_ELEMENTS    = "script, style, noscript, template, iframe, object, embed, svg, canvas, form, button, select, textarea, "
+                                                            + "nav, header, footer, aside, menu, "
+                                                            + ".nav, .navbar, .menu, .sidebar, .header, .footer, .breadcrumb, .breadcrumbs, "
+                                                            + ".comments, .share, .social, .cookie, .advertisement, .ads";
+    public static final int     DEFAULT_MIN_WORDS           = 10;
+    public static final int     DEFAULT_MAX_LINK_DENSITY    = 33;       // percent
+
+    // short blocks are only kept next to content
+    private static final int    MIN_SHORT_BLOCK_WORDS       = 3;
+
+    private final String            removedElements;
+    private final HashSet<String>   removedTags = new HashSet<>();
+    private final HashSet<String>   removedClasses = new HashSet<>();
+    private final String            otherSelectors;
+    private final int               minWords;
+    private final double            maxLinkDensity;
+
+    private static class Block {
+        private final String    text;
+        private final int       words;
+        private final int       linkWords;
+        private final boolean   heading;
+        private boolean         content;
+
+        private Block(String text, int words, int linkWords, boolean heading) {
+            this.text       = text;
+            this.words      = words;
+            this.linkWords  = linkWords;
+            this.heading    = heading;
+        }
+
+        private double getLinkDensity() {
+            return (words == 0) ? 1 : (double) linkWords / words;
+        }
+    }
+
+    /**
+     * Split a page into blocks of text at block-level elements, counting
+     * words in links and skipping removed elements
+     */
+    private class BlockCollector implements NodeFilter {
+        private final List<Block>   blocks = new ArrayList<>();
+        private final StringBuilder text = new StringBuilder();
+        private int                 words;
+        private int                 linkWords;
+        private int                 anchorDepth;
+        private int                 headingDepth;
+
+        @Override
+        public FilterResult head(Node node, int depth) {
+            if (node instanceof TextNode) {
+                String piece = ((TextNode) node).text();
+
+                if (piece.trim().isEmpty()) {
+                    if (text.length() > 0) text.append(' ');
+                    return FilterResult.CONTINUE;
+                }
+
+                int pieceWords = Tokenizer.countTokens(piece);
+
+                text.append(piece);
+                words += pieceWords;
+                if (anchorDepth > 0) linkWords += pieceWords;
+            }
+            else if (node instanceof Element) {
+                Element element = (Element) node;
+
+                if (isRemoved(element)) return FilterResult.SKIP_ENTIRELY;
+
+                if (element.isBlock()) flush();
+
+                switch (element.normalName()) {
+                    case "a":
+                        ++anchorDepth;
+                        break;
+
+                    case "br":
+                        text.append(' ');
+                        break;
+
+                    case "h1": case "h2": case "h3": case "h4": case "h5": case "h6":
+                        ++headingDepth;
+                        break;
+                }
+            }
+
+            return FilterResult.CONTINUE;
+        }
+
+        @Override
+        public FilterResult tail(Node node, int depth) {
+            if (!(node instanceof Element)) return FilterResult.CONTINUE;
+
+            Element element = (Element) node;
+
+            if (element.isBlock()) flush();
+
+            switch (element.normalName()) {
+                case "a":
+                    --anchorDepth;
+                    break;
+
+                case "h1": case "h2": case "h3": case "h4": case "h5": case "h6":
+                    --headingDepth;
+                    break;
+            }
+
+            return FilterResult.CONTINUE;
+        }
+
+        private void flush() {
+            String blockText = text.toString().trim();
+
+            if (!blockText.isEmpty()) blocks.add(new Block(blockText, words, linkWords, headingDepth > 0));
+
+            text.setLength(0);
+            words       = 0;
+            linkWords   = 0;
+        }
+    }
+
+    /**
+     * Create an extractor with the default settings
+     */
+    public JsoupExtractor() {
+        this(DEFAULT_REMOVED_ELEMENTS, DEFAULT_MIN_WORDS, DEFAULT_MAX_LINK_DENSITY);
+    }
+
+    /**
+     *
+     * @param removedElements CSS selectors of the elements that are removed before extraction, separated by commas
+     * @param minWords blocks with fewer words are only kept next to other content
+     * @param maxLinkDensity blocks with a higher percentage of words in links are dropped
+     */
+    public JsoupExtractor(String removedElements, int minWords, int maxLinkDensity) {
+        this.removedElements    = (removedElements == null) ? "" : removedElements.trim();
+        this.minWords           = minWords;
+        this.maxLinkDensity     = maxLinkDensity / 100.0;
+
+        // plain tag and class selectors are checked while the page is traversed,
+        // others need a selection of their own
+        String others = "";
+
+        for (String selector : this.removedElements.split(",")) {
+            selector = selector.trim();
+
+            if (selector.isEmpty()) continue;
+
+            if (selector.matches("[A-Za-z][A-Za-z0-9]*")) {
+                removedTags.add(selector.toLowerCase(Locale.ROOT));
+            }
+            else if (selector.matches("\\.[A-Za-z_-][A-Za-z0-9_-]*")) {
+                removedClasses.add(selector.substring(1).toLowerCase(Locale.ROOT));
+            }
+            else {
+                others += (others.isEmpty() ? "" : ", ") + selector;
+            }
+        }
+
+        this.otherSelectors = others;
+    }
+
+    /**
+     * Extract the main text of a page
+     *
+     * @param stream the page
+     * @param charsetName character set of the page, null to let jsoup detect it
+     * @return the text, one block per line
+     * @throws IOException
+     */
+    public String getText(InputStream stream, String charsetName) throws IOException {
+        return getText(Jsoup.parse(stream, charsetName, ""));
+    }
+
+    /**
+     * Extract the main text of a parsed page, the document is modified
+     *
+     * @param document
+     * @return the text, one block per line
+     */
+    public String getText(Document document) {
+        if (!otherSelectors.isEmpty()) document.select(otherSelectors).remove();
+
+        BlockCollector collector = new BlockCollector();
+        NodeTraversor.filter(collector, document.body());
+        collector.flush();
+
+        List<Block> blocks = collector.blocks;
+
+        // long blocks with few links are content
+        for (Block block : blocks) {
+            block.content = block.words >= minWords && block.getLinkDensity() <= maxLinkDensity;
+        }
+
+        // short blocks between content (i.e. short paragraphs), headings right before content
+        boolean[] dense = new boolean[blocks.size()];
+        for (int i = 0; i < dense.length; ++i) {
+            dense[i] = blocks.get(i).content;
+        }
+
+        for (int i = 0; i < dense.length; ++i) {
+            Block block = blocks.get(i);
+
+            if (dense[i] || block.getLinkDensity() > maxLinkDensity) continue;
+
+            boolean nextIsContent       = i + 1 < dense.length && dense[i + 1];
+            boolean previousIsContent   = i > 0 && dense[i - 1];
+
+            if (block.heading) block.content = nextIsContent;
+            else block.content = block.words >= MIN_SHORT_BLOCK_WORDS && nextIsContent && previousIsContent;
+        }
+
+        StringBuilder text = new StringBuilder();
+
+        for (Block block : blocks) {
+            if (block.content) text.append(block.text).append('\n');
+        }
+
+        return text.toString();
+    }
+
+    private boolean isRemoved(Element element) {
+        if (removedTags.contains(element.normalName())) return true;
+
+        if (removedClasses.isEmpty() || !element.hasAttr("class")) return false;
+
+        for (String className : element.classNames()) {
+            if (removedClasses.contains(className.toLowerCase(Locale.ROOT))) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Return the settings that affect the extracted text
+     *
+     * @return
+     */
+    @Override
+    public String toString() {
+        return "removed=" + removedElements + " minWords=" + minWords + " maxLinkDensity=" + maxLinkDensity;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import com.optimaize.langdetect.DetectedLanguage;
+import com.optimaize.langdetect.LanguageDetector;
+import common.Language;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Guess the language of an HTML page from the first bytes of the response,
+ * so that pages that are clearly in the wrong language can be dropped before
+ * they are fully downloaded, parsed and extracted.
+ *
+ * Tags are stripped with regular expressions rather than a real parser: the
+ * sample only needs to be good enough for the language detector. A page is
+ * only rejected when the detector is confident about another language and
+ * sees no trace of the requested one, anything doubtful is left to the
+ * regular language filter.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public class LanguageSniffer {
+
+    private static final int        MIN_SAMPLE_CHARS    = 300;
+    private static final double     MIN_CONFIDENCE      = 0.9;
+    private static final double     MAX_TARGET_PROBABILITY = 0.1;
+
+    private static final Pattern    SCRIPT_PATTERN  = Pattern.compile("(?is)<(script|style|noscript|svg)\\b.*?(</\\1\\s*>|\\z)");
+    private static final Pattern    COMMENT_PATTERN = Pattern.compile("(?s)<!--.*?(-->|\\z)");
+    private static final Pattern    TAG_PATTERN     = Pattern.compile("(?s)<[^>]*(>|\\z)");
+    private static final Pattern    ENTITY_PATTERN  = Pattern.compile("&(#?[a-zA-Z0-9]+);");
+    private static final Pattern    SPACE_PATTERN   = Pattern.compile("\\s+");
+
+    private final LanguageDetector  languageDetector;
+    private final Language          language;
+    private final int               sampleSize;
+
+    /**
+     *
+     * @param languageDetector
+     * @param language the language documents are supposed to be in
+     * @param sampleSize number of bytes of the response to look at
+     */
+    public LanguageSniffer(LanguageDetector languageDetector, Language language, int sampleSize) {
+        this.languageDetector   = languageDetector;
+        this.language           = language;
+        this.sampleSize         = sampleSize;
+    }
+
+    /**
+     * Return the number of bytes of the response to look at
+     *
+     * @return
+     */
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * Detect the languages of a sample of an HTML page.
+     *
+     * @param sample first bytes of the (decoded) response body
+     * @param length number of valid bytes in sample
+     * @param contentType value of the Content-Type header, used to find the character set
+     * @return the detected languages if the page is confidently in the wrong language, null otherwise
+     */
+    public List<DetectedLanguage> sniff(byte[] sample, int length, String contentType) {
+        String text = getText(sample, length, contentType);
+
+        if (text.length() < MIN_SAMPLE_CHARS) return null;
+
+        List<DetectedLanguage> detectedLangs = languageDetector.getProbabilities(text);
+
+        if (detectedLangs.isEmpty()) return null;
+
+        DetectedLanguage best = detectedLangs.get(0);
+
+        if (best.getLocale().toString().equals(language.getIso_639_1()) || best.getProbability() < MIN_CONFIDENCE) return null;
+
+        for (DetectedLanguage detectedLang : detectedLangs) {
+            if (detectedLang.getLocale().toString().equals(language.getIso_639_1()) && detectedLang.getProbability() >= MAX_TARGET_PROBABILITY) {
+                return null;
+            }
+        }
+
+        return detectedLangs;
+    }
+
+    /**
+     * Read a sample from the beginning of a stream and check its language.
+     *
+     * @param inputStream the (decoded) response body
+     * @param contentType value of the Content-Type header
+     * @return a stream returning the whole body, sample included
+     * @throws WrongLanguageException if the sample is confidently in the wrong language
+     * @throws IOException
+     */
+    public InputStream check(InputStream inputStream, String contentType) throws IOException {
+        byte[] sample = new byte[sampleSize];
+        int length = 0;
+        int bytesRead;
+
+        while (length < sampleSize && (bytesRead = inputStream.read(sample, length, sampleSize - length)) != -1) {
+            length += bytesRead;
+        }
+
+        List<DetectedLanguage> detectedLangs = sniff(sample, length, contentType);
+
+        if (detectedLangs != null) throw new WrongLanguageException(detectedLangs);
+
+        return new SequenceInputStream(new ByteArrayInputStream(sample, 0, length), inputStream);
+    }
+
+    /**
+     * Extract a rough plain text version of an HTML sample
+     *
+     * @param sample
+     * @param length
+     * @param contentType
+     * @return
+     */
+    static String getText(byte[] sample, int length, String contentType) {
+        String html = new String(sample, 0, length, getCharset(sample, length, contentType));
+
+        html = SCRIPT_PATTERN.matcher(html).replaceAll(" ");
+        html = COMMENT_PATTERN.matcher(html).replaceAll(" ");
+
+        // the head only contains a title at best, skip it
+        int bodyStart = html.toLowerCase(Locale.ROOT).indexOf("<body");
+        if (bodyStart > 0) html = html.substring(bodyStart);
+
+        html = TAG_PATTERN.matcher(html).replaceAll(" ");
+
+        // numeric or named entities would only confuse the detector
+        html = ENTITY_PATTERN.matcher(html).replaceAll(" ");
+
+        return SPACE_PATTERN.matcher(html).replaceAll(" ").trim();
+    }
+
+    /**
+     * Find the character set from a byte order mark, the Content-Type header
+     * or a meta tag
+     *
+     * @param sample
+     * @param length
+     * @param contentType
+     * @return the character set or UTF-8 if it cannot be determined
+     */
+    private static Charset getCharset(byte[] sample, int length, String contentType) {
+        Charset charset = CharsetResolver.resolve(sample, length, CharsetResolver.getCharsetParameter(contentType));
+
+        return (charset == null) ? StandardCharsets.UTF_8 : charset;
+    }
+}
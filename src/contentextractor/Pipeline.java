@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import gui.Main;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A simple multi-stage processing pipeline.
+ *
+ * Each stage has its own pool of worker threads and reads its input from a
+ * bounded queue: when a queue is full, workers of the previous stage block
+ * until there is room again, so that a slow stage slows down the ones before
+ * it instead of letting items pile up in memory.
+ *
+ * An item leaves the pipeline either when it went through the last stage or
+ * when a stage rejects it (i.e. Stage.process returns false), in both cases
+ * the listener is notified. The first stage can also ask for an item to be
+ * processed again later (see retryLater), in which case the item is fed to
+ * the first stage again once its delay has expired, interleaved with the
+ * items that have not been processed yet.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ * @param <T> type of the items flowing through the pipeline
+ */
+public class Pipeline<T> {
+
+    public interface Stage<T> {
+        /**
+         * Process an item.
+         *
+         * @param item
+         * @return true if the item must be passed to the next stage, false if it must leave the pipeline
+         */
+        boolean process(T item);
+    }
+
+    public interface Listener<T> {
+        /**
+         * Called (by a worker thread) every time an item leaves the pipeline.
+         *
+         * @param item
+         */
+        void itemDone(T item);
+
+        /**
+         * Called (by a worker thread) when a stage throws an unexpected exception
+         * while processing an item, right before the item leaves the pipeline.
+         *
+         * @param item
+         * @param ex
+         */
+        void itemFailed(T item, RuntimeException ex);
+    }
+
+    private class StageRunner {
+        private final String            name;
+        private final int               parallelism;
+        private final Stage<T>          stage;
+        private final BlockingQueue<T>  queue;
+        private CountDownLatch          finished;
+        private final ArrayList<Thread> workers = new ArrayList<>();
+
+        private StageRunner(String name, int parallelism, int queueSize, Stage<T> stage) {
+            this.name           = name;
+            this.parallelism    = Math.max(1, parallelism);
+            this.stage          = stage;
+            this.queue          = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        }
+    }
+
+    private class Retry implements Delayed {
+        private final T     item;
+        private final long  due;
+
+        private Retry(T item, long delay) {
+            this.item   = item;
+            this.due    = System.currentTimeMillis() + delay;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(due - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+        }
+    }
+
+    // marks the end of the input; since items are never null we use a dedicated object
+    private final Object                        endOfInput = new Object();
+    private final ArrayList<StageRunner>        stages = new ArrayList<>();
+    private final Listener<T>                   listener;
+
+    // items waiting to be retried and items for which a retry was requested by the stage processing them
+    private final DelayQueue<Retry>             retries = new DelayQueue<>();
+    private final ConcurrentHashMap<T, Long>    retryRequests = new ConcurrentHashMap<>();
+
+    // items that entered the first stage and neither left it nor left the pipeline yet (retries included)
+    private final AtomicInteger                 firstStageItems = new AtomicInteger();
+
+    public Pipeline(Listener<T> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Append a stage to the pipeline.
+     *
+     * @param name name of the stage, used for naming worker threads
+     * @param parallelism number of worker threads for this stage
+     * @param queueSize capacity of the queue feeding this stage
+     * @param stage
+     * @return the pipeline itself
+     */
+    public Pipeline<T> addStage(String name, int parallelism, int queueSize, Stage<T> stage) {
+        stages.add(new StageRunner(name, parallelism, queueSize, stage));
+        return this;
+    }
+
+    /**
+     * Ask for an item to be processed again by the first stage after a delay.
+     *
+     * This must be called by the first stage while processing the item: once
+     * Stage.process returns, the item is set aside instead of leaving the pipeline.
+     *
+     * @param item
+     * @param delay delay in milliseconds
+     */
+    public void retryLater(T item, long delay) {
+        retryRequests.put(item, delay);
+    }
+
+    /**
+     * Feed all items to the pipeline and block until every item has left it.
+     *
+     * @param items
+     * @throws InterruptedException
+     */
+    public void run(List<T> items) throws InterruptedException {
+        run(items.iterator());
+    }
+
+    /**
+     * Feed items to the pipeline as long as there is room in the queue of the
+     * first stage and block until every item has left it.
+     *
+     * Items are taken from the iterator only when they can be queued, so the
+     * iterator can decide the order as it goes (i.e. a DownloadScheduler).
+     *
+     * @param it
+     * @throws InterruptedException
+     */
+    public void run(Iterator<T> it) throws InterruptedException {
+
+        if (stages.isEmpty()) {
+            while (it.hasNext()) listener.itemDone(it.next());
+            return;
+        }
+
+        for (int i = 0; i < stages.size(); ++i) {
+            startStage(i);
+        }
+
+        try {
+            StageRunner first = stages.get(0);
+
+            // feed new items, giving precedence to retries that are due
+            while (it.hasNext()) {
+                Retry retry;
+                while ((retry = retries.poll()) != null) {
+                    first.queue.put(retry.item);
+                }
+
+                firstStageItems.incrementAndGet();
+                first.queue.put(it.next());
+            }
+
+            // then wait until no item can be retried anymore
+            while (firstStageItems.get() > 0) {
+                Retry retry = retries.poll(100, TimeUnit.MILLISECONDS);
+                if (retry != null) first.queue.put(retry.item);
+            }
+
+            endStage(0);
+
+            stages.get(stages.size() - 1).finished.await();
+        } catch (InterruptedException ex) {
+            for (StageRunner runner : stages) {
+                for (Thread worker : runner.workers) worker.interrupt();
+            }
+
+            throw ex;
+        }
+    }
+
+    /**
+     * Send end of input markers to all workers of a stage
+     *
+     * @param index
+     * @throws InterruptedException
+     */
+    @SuppressWarnings("unchecked")
+    private void endStage(int index) throws InterruptedException {
+        StageRunner runner = stages.get(index);
+
+        for (int i = 0; i < runner.parallelism; ++i) {
+            runner.queue.put((T) endOfInput);
+        }
+    }
+
+    private void startStage(final int index) {
+        final StageRunner runner = stages.get(index);
+
+        runner.finished = new CountDownLatch(runner.parallelism);
+
+        for (int i = 0; i < runner.parallelism; ++i) {
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        work(index);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        runner.finished.countDown();
+                    }
+                }
+            }, "pipeline-" + runner.name + "-" + i);
+
+            worker.setDaemon(true);
+            runner.workers.add(worker);
+            worker.start();
+        }
+
+        // once every worker of this stage is done, tell the next stage there is no more input
+        if (index + 1 < stages.size()) {
+            Thread closer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        runner.finished.await();
+                        endStage(index + 1);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }, "pipeline-" + runner.name + "-closer");
+
+            closer.setDaemon(true);
+            runner.workers.add(closer);
+            closer.start();
+        }
+    }
+
+    private void work(int index) throws InterruptedException {
+        StageRunner runner = stages.get(index);
+        boolean     isLast = (index == stages.size() - 1);
+
+        while (true) {
+            T item = runner.queue.take();
+
+            if (item == endOfInput) return;
+
+            boolean passOn;
+
+            try {
+                passOn = runner.stage.process(item);
+            } catch (RuntimeException ex) {
+                Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, "unexpected error in pipeline stage " + runner.name, ex);
+                retryRequests.remove(item);
+                listener.itemFailed(item, ex);
+                passOn = false;
+            }
+
+            if (index == 0) {
+                Long delay = retryRequests.remove(item);
+
+                if (delay != null) {
+                    retries.put(new Retry(item, delay));
+                    continue;
+                }
+
+                firstStageItems.decrementAndGet();
+            }
+
+            if (passOn && !isLast) {
+                stages.get(index + 1).queue.put(item);
+            }
+            else {
+                listener.itemDone(item);
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Global limit on the bandwidth and on the request rate of all downloads
+ * (token buckets shared by all workers).
+ *
+ * Each bucket holds at most one second worth of tokens, so short bursts are
+ * allowed but the average rate never exceeds the limit. Callers that find the
+ * bucket empty take tokens on credit and wait until the debt is paid off, so
+ * that concurrent callers are served in order.
+ *
+ * Limits can be changed at any time and apply immediately to the internal
+ * downloaders; curl processes get the limit in force when they are started.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public class RateLimiter {
+
+    private static class Bucket {
+        private double  rate;
+        private double  tokens;
+        private long    lastRefill = System.nanoTime();
+
+        private Bucket(double rate) {
+            this.rate   = rate;
+            this.tokens = rate;
+        }
+
+        /**
+         * Take tokens from the bucket
+         *
+         * @param amount
+         * @return nanoseconds to wait before the tokens are actually available
+         */
+        private synchronized long reserve(double amount) {
+            if (rate <= 0) return 0;
+
+            long now = System.nanoTime();
+            tokens = Math.min(rate, tokens + (now - lastRefill) * rate / TimeUnit.SECONDS.toNanos(1));
+            lastRefill = now;
+
+            tokens -= amount;
+
+            if (tokens >= 0) return 0;
+
+            return (long) (-tokens / rate * TimeUnit.SECONDS.toNanos(1));
+        }
+
+        private synchronized void setRate(double rate) {
+            this.rate = rate;
+
+            // start from a full bucket, but don't forgive more than a second of debt
+            tokens = Math.max(-rate, Math.min(rate, tokens));
+            if (rate <= 0) tokens = 0;
+        }
+
+        private synchronized double getRate() {
+            return rate;
+        }
+    }
+
+    private final Bucket bytes;
+    private final Bucket requests;
+
+    /**
+     *
+     * @param bytesPerSecond maximum bandwidth, 0 means no limit
+     * @param requestsPerSecond maximum number of requests per second, 0 means no limit
+     */
+    public RateLimiter(long bytesPerSecond, double requestsPerSecond) {
+        this.bytes      = new Bucket(bytesPerSecond);
+        this.requests   = new Bucket(requestsPerSecond);
+    }
+
+    /**
+     * Wait until a new request can be sent
+     *
+     * @throws InterruptedException
+     */
+    public void acquireRequest() throws InterruptedException {
+        TimeUnit.NANOSECONDS.sleep(requests.reserve(1));
+    }
+
+    /**
+     * Wait until the specified number of bytes can be received
+     *
+     * @param count
+     * @throws InterruptedException
+     */
+    public void acquireBytes(long count) throws InterruptedException {
+        TimeUnit.NANOSECONDS.sleep(reserveBytes(count));
+    }
+
+    /**
+     * Take the specified number of bytes from the bandwidth budget without waiting
+     *
+     * @param count
+     * @return nanoseconds the caller should wait before receiving more data
+     */
+    public long reserveBytes(long count) {
+        return bytes.reserve(count);
+    }
+
+    /**
+     * Return the bandwidth each of a number of concurrent transfers should be
+     * limited to (i.e. for curl's --limit-rate)
+     *
+     * @param transfers number of concurrent transfers
+     * @return bytes per second, 0 means no limit
+     */
+    public long getBytesPerSecondPerTransfer(int transfers) {
+        long bytesPerSecond = getBytesPerSecond();
+
+        if (bytesPerSecond <= 0) return 0;
+
+        return Math.max(1, bytesPerSecond / Math.max(1, transfers));
+    }
+
+    public long getBytesPerSecond() {
+        return (long) bytes.getRate();
+    }
+
+    /**
+     *
+     * @param bytesPerSecond maximum bandwidth, 0 means no limit
+     */
+    public void setBytesPerSecond(long bytesPerSecond) {
+        bytes.setRate(bytesPerSecond);
+    }
+
+    public double getRequestsPerSecond() {
+        return requests.getRate();
+    }
+
+    /**
+     *
+     * @param requestsPerSecond maximum number of requests per second, 0 means no limit
+     */
+    public void setRequestsPerSecond(double requestsPerSecond) {
+        requests.setRate(requestsPerSecond);
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a redirect cannot be followed: the chain is too long, it loops
+ * back to a URI that was already visited or the server sent an invalid location.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public class RedirectException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RedirectException(String message) {
+        super(message);
+    }
+}
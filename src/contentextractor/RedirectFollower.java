@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import common.CorpusChunk;
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Follow HTTP redirects on behalf of the downloaders.
+ *
+ * Every redirect is recorded in the redirect chain of the corpus chunk and in
+ * an in-memory map shared by all workers, so that when another URI leads to a
+ * redirect that was already seen during the same run, the known target is
+ * requested directly instead of going through the redirect again.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public class RedirectFollower {
+
+    public static final int DEFAULT_MAX_HOPS = 10;
+
+    private final ConcurrentHashMap<String, URI>    redirects = new ConcurrentHashMap<>();
+    private final int                               maxHops;
+
+    /**
+     *
+     * @param maxHops maximum number of redirects followed for a single chunk
+     */
+    public RedirectFollower(int maxHops) {
+        this.maxHops = maxHops;
+    }
+
+    /**
+     * Return true if the HTTP status code is a redirect that can be followed
+     *
+     * @param statusCode
+     * @return
+     */
+    public static boolean isRedirect(int statusCode) {
+        switch (statusCode) {
+            case 301:
+            case 302:
+            case 303:
+            case 307:
+            case 308:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Move the chunk to the last known target of its URI, following the
+     * redirects recorded so far without touching the network.
+     *
+     * @param corpusChunk
+     * @throws RedirectException if the known redirects are too many or form a loop
+     */
+    public void resolve(CorpusChunk corpusChunk) throws RedirectException {
+        URI target;
+
+        while ((target = redirects.get(DownloadCache.normalize(corpusChunk.getUri()))) != null) {
+            hop(corpusChunk, target);
+        }
+    }
+
+    /**
+     * Record a redirect sent by the server and move the chunk to its target.
+     *
+     * @param corpusChunk
+     * @param location value of the Location header, possibly relative to the current URI
+     * @throws RedirectException if the location is invalid, the chain is too long or it loops
+     */
+    public void follow(CorpusChunk corpusChunk, String location) throws RedirectException {
+        if (location == null || location.trim().isEmpty()) {
+            throw new RedirectException("redirect without location from " + corpusChunk.getUri());
+        }
+
+        URI target;
+
+        try {
+            target = corpusChunk.getUri().resolve(location.trim().replace(" ", "%20"));
+        } catch (IllegalArgumentException ex) {
+            throw new RedirectException("invalid redirect location from " + corpusChunk.getUri() + ": " + location);
+        }
+
+        if (!"http".equalsIgnoreCase(target.getScheme()) && !"https".equalsIgnoreCase(target.getScheme())) {
+            throw new RedirectException("cannot follow redirect from " + corpusChunk.getUri() + " to " + target);
+        }
+
+        redirects.put(DownloadCache.normalize(corpusChunk.getUri()), target);
+
+        hop(corpusChunk, target);
+    }
+
+    /**
+     * Record that the chunk was redirected from a URI to another (i.e. a
+     * redirect followed by an external program).
+     *
+     * @param from
+     * @param to
+     */
+    public void record(URI from, URI to) {
+        if (DownloadCache.normalize(from).equals(DownloadCache.normalize(to))) return;
+
+        redirects.put(DownloadCache.normalize(from), to);
+    }
+
+    private void hop(CorpusChunk corpusChunk, URI target) throws RedirectException {
+        URI current = corpusChunk.getUri();
+
+        if (corpusChunk.getRedirectChain().size() >= maxHops) {
+            throw new RedirectException("too many redirects (" + maxHops + ") from " + corpusChunk.getRequestedUri());
+        }
+
+        String normalizedTarget = DownloadCache.normalize(target);
+
+        if (normalizedTarget.equals(DownloadCache.normalize(current))) {
+            throw new RedirectException("redirect loop at " + current);
+        }
+
+        for (URI visited : corpusChunk.getRedirectChain()) {
+            if (normalizedTarget.equals(DownloadCache.normalize(visited))) {
+                throw new RedirectException("redirect loop at " + target);
+            }
+        }
+
+        corpusChunk.addRedirect(current);
+        corpusChunk.setUri(target);
+    }
+
+    public int getMaxHops() {
+        return maxHops;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Decide when failed downloads should be tried again.
+ *
+ * The delay grows exponentially with the number of consecutive failures of
+ * the host (not just of the single URI), so that a flaky host is given more
+ * and more time to recover while the other hosts keep being downloaded. A
+ * random jitter spreads retries for the same host over time.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public class RetryScheduler {
+
+    private final long                      baseDelay;
+    private final long                      maxDelay;
+    private final HashMap<String, Integer>  hostFailures = new HashMap<>();
+    private final Random                    random = new Random();
+
+    /**
+     *
+     * @param baseDelay delay in milliseconds before the first retry
+     * @param maxDelay maximum delay in milliseconds
+     */
+    public RetryScheduler(long baseDelay, long maxDelay) {
+        this.baseDelay  = baseDelay;
+        this.maxDelay   = maxDelay;
+    }
+
+    /**
+     * Return true if an HTTP status code denotes an error that may be temporary
+     *
+     * @param statusCode
+     * @return
+     */
+    public static boolean isTransientStatus(int statusCode) {
+        switch (statusCode) {
+            case 408:   // request timeout
+            case 429:   // too many requests
+            case 500:
+            case 502:
+            case 503:
+            case 504:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Record a failed attempt and compute how long to wait before the next one.
+     *
+     * @param uri
+     * @param attempts number of attempts made so far for this URI
+     * @return delay in milliseconds
+     */
+    public synchronized long failure(URI uri, int attempts) {
+        String host = HostLimiter.getHostKey(uri);
+
+        Integer failures = hostFailures.get(host);
+        failures = (failures == null) ? 1 : failures + 1;
+        hostFailures.put(host, failures);
+
+        int exponent = Math.min(Math.max(failures, attempts), 20) - 1;
+        long delay = Math.min(maxDelay, baseDelay << exponent);
+
+        // "equal jitter": wait at least half of the delay
+        return delay / 2 + (long) (random.nextDouble() * (delay / 2));
+    }
+
+    /**
+     * Record a successful download, the host is considered healthy again
+     *
+     * @param uri
+     */
+    public synchronized void success(URI uri) {
+        hostFailures.remove(HostLimiter.getHostKey(uri));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Body subscriber that counts the bytes it receives and cancels the transfer
+ * as soon as they exceed a maximum size.
+ *
+ * All data is passed on to a delegate subscriber (i.e. one writing to a file);
+ * when the limit is exceeded the delegate is completed with a FileTooLargeException.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ * @param <T>
+ */
+public class SizeLimitedBodySubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+    private final HttpResponse.BodySubscriber<T>    delegate;
+    private final long                              maxSize;
+    private final long                              contentLength;
+    private long                                    receivedBytes;
+    private Flow.Subscription                       subscription;
+    private boolean                                 aborted;
+
+    /**
+     *
+     * @param delegate
+     * @param maxSize maximum number of bytes, 0 or less means no limit
+     * @param contentLength size announced by the server in the Content-Length header, -1 if unknown
+     */
+    public SizeLimitedBodySubscriber(HttpResponse.BodySubscriber<T> delegate, long maxSize, long contentLength) {
+        this.delegate       = delegate;
+        this.maxSize        = maxSize;
+        this.contentLength  = contentLength;
+    }
+
+    @Override
+    public CompletionStage<T> getBody() {
+        return delegate.getBody();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        delegate.onSubscribe(subscription);
+
+        // if the server already told us the file is too large, don't even start the transfer
+        if (maxSize > 0 && contentLength > maxSize) {
+            aborted = true;
+            subscription.cancel();
+            delegate.onError(new FileTooLargeException(contentLength, maxSize));
+        }
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        if (aborted) return;
+
+        for (ByteBuffer item : items) {
+            receivedBytes += item.remaining();
+        }
+
+        if (maxSize > 0 && receivedBytes > maxSize) {
+            aborted = true;
+            subscription.cancel();
+            delegate.onError(new FileTooLargeException(receivedBytes, maxSize));
+            return;
+        }
+
+        delegate.onNext(items);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        if (aborted) return;
+
+        delegate.onError(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (aborted) return;
+
+        delegate.onComplete();
+    }
+
+    public long getReceivedBytes() {
+        return receivedBytes;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import com.optimaize.langdetect.DetectedLanguage;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Body subscriber that holds back the first bytes of an HTML page until its
+ * language can be guessed and cancels the transfer if the page is clearly in
+ * the wrong language.
+ *
+ * Otherwise the sample and the rest of the body are passed on to the
+ * delegate subscriber (i.e. one writing to a file).
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ * @param <T>
+ */
+public class SniffingBodySubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+    private final HttpResponse.BodySubscriber<T>    delegate;
+    private final LanguageSniffer                   languageSniffer;
+    private final String                            contentType;
+    private final ArrayList<ByteBuffer>             buffered = new ArrayList<>();
+    private final byte[]                            sample;
+    private int                                     sampleLength;
+    private boolean                                 checked;
+    private boolean                                 aborted;
+    private Flow.Subscription                       subscription;
+
+    /**
+     *
+     * @param delegate
+     * @param languageSniffer
+     * @param contentType value of the Content-Type header
+     */
+    public SniffingBodySubscriber(HttpResponse.BodySubscriber<T> delegate, LanguageSniffer languageSniffer, String contentType) {
+        this.delegate           = delegate;
+        this.languageSniffer    = languageSniffer;
+        this.contentType        = contentType;
+        this.sample             = new byte[languageSniffer.getSampleSize()];
+    }
+
+    @Override
+    public CompletionStage<T> getBody() {
+        return delegate.getBody();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        delegate.onSubscribe(subscription);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        if (aborted) return;
+
+        if (checked) {
+            delegate.onNext(items);
+            return;
+        }
+
+        for (ByteBuffer item : items) {
+            ByteBuffer copy = item.duplicate();
+            int length = Math.min(copy.remaining(), sample.length - sampleLength);
+
+            copy.get(sample, sampleLength, length);
+            sampleLength += length;
+
+            buffered.add(item);
+        }
+
+        if (sampleLength < sample.length) {
+            // the delegate is still waiting for its first data, ask for more on its behalf
+            subscription.request(1);
+            return;
+        }
+
+        if (check()) flush();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        if (aborted) return;
+
+        delegate.onError(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (aborted) return;
+
+        // the whole body is shorter than the sample
+        if (!checked && !check()) return;
+
+        flush();
+        delegate.onComplete();
+    }
+
+    /**
+     * Check the language of the sample
+     *
+     * @return false if the transfer was aborted
+     */
+    private boolean check() {
+        checked = true;
+
+        List<DetectedLanguage> detectedLangs = languageSniffer.sniff(sample, sampleLength, contentType);
+
+        if (detectedLangs == null) return true;
+
+        aborted = true;
+        buffered.clear();
+        subscription.cancel();
+        delegate.onError(new WrongLanguageException(detectedLangs));
+
+        return false;
+    }
+
+    private void flush() {
+        if (buffered.isEmpty()) return;
+
+        delegate.onNext(new ArrayList<>(buffered));
+        buffered.clear();
+    }
+}
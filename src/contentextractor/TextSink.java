@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import common.Tokenizer;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Collects the text extracted from a document while it is produced and keeps
+ * the statistics the filters need (characters, tokens, blacklisted words), so
+ * that the text is scanned only once.
+ *
+ * The text itself is still kept, since filters decide whether a document is
+ * written before anything is written, but it is built in linear time.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public class TextSink {
+
+    /**
+     * Words whose presence in a text is counted
+     */
+    public static class Blacklist {
+        private final Pattern[] patterns;
+
+        /**
+         *
+         * @param words words to look for, they are matched as whole words regardless of case
+         */
+        public Blacklist(List<String> words) {
+            patterns = new Pattern[words.size()];
+
+            for (int i = 0; i < patterns.length; ++i) {
+                patterns[i] = Pattern.compile("\\b" + words.get(i).toLowerCase() + "\\b");
+            }
+        }
+
+        /**
+         * Count the occurrences of each word in a piece of text
+         *
+         * @param text
+         * @param counts occurrences of each word are added here
+         */
+        private void count(String text, int[] counts) {
+            String lowerCaseText = text.toLowerCase();
+
+            for (int i = 0; i < patterns.length; ++i) {
+                Matcher matcher = patterns[i].matcher(lowerCaseText);
+
+                while (matcher.find()) {
+                    ++counts[i];
+                }
+            }
+        }
+    }
+
+    private final Blacklist     blacklist;
+    private final int[]         blacklistCounts;
+    private StringBuilder       builder = new StringBuilder();
+    private String              text;
+    private int                 characterCount;
+    private int                 tokenCount;
+
+    /**
+     *
+     * @param blacklist words to count, null if they are not needed
+     */
+    public TextSink(Blacklist blacklist) {
+        this.blacklist          = blacklist;
+        this.blacklistCounts    = new int[(blacklist == null) ? 0 : blacklist.patterns.length];
+    }
+
+    /**
+     * Add a piece of text (i.e. a line) at the end of the document.
+     *
+     * Pieces should not break words, otherwise tokens and blacklisted words
+     * may be counted wrongly.
+     *
+     * @param piece
+     */
+    public void append(String piece) {
+        builder.append(piece);
+
+        characterCount  += piece.length();
+        tokenCount      += Tokenizer.countTokens(piece);
+
+        if (blacklist != null) blacklist.count(piece, blacklistCounts);
+    }
+
+    /**
+     * Return the whole text, once this is called nothing can be appended anymore
+     *
+     * @return
+     */
+    public String getText() {
+        if (text == null) {
+            text = builder.toString();
+            builder = null;
+        }
+
+        return text;
+    }
+
+    public int getCharacterCount() {
+        return characterCount;
+    }
+
+    /**
+     * Return the number of tokens, as counted by Tokenizer.count
+     *
+     * @return
+     */
+    public int getTokenCount() {
+        return Math.max(1, tokenCount);
+    }
+
+    /**
+     * Return the number of different blacklisted words found
+     *
+     * @return
+     */
+    public int getBlacklistTypes() {
+        int types = 0;
+
+        for (int count : blacklistCounts) {
+            if (count > 0) ++types;
+        }
+
+        return types;
+    }
+
+    /**
+     * Return the total number of blacklisted words found
+     *
+     * @return
+     */
+    public int getBlacklistTokens() {
+        int tokens = 0;
+
+        for (int count : blacklistCounts) {
+            tokens += count;
+        }
+
+        return tokens;
+    }
+
+    /**
+     * Return a sample of the text of bounded size for language detection:
+     * short texts are returned whole, longer ones are sampled at regular
+     * intervals
+     *
+     * @param maxLength
+     * @return
+     */
+    public String getLanguageSample(int maxLength) {
+        String whole = getText();
+
+        if (whole.length() <= maxLength) return whole;
+
+        int windows     = 10;
+        int windowSize  = maxLength / windows;
+        int step        = whole.length() / windows;
+
+        StringBuilder sample = new StringBuilder(maxLength + windows);
+
+        for (int i = 0; i < windows; ++i) {
+            int start = i * step;
+            int end   = Math.min(whole.length(), start + windowSize);
+
+            // don't start or end in the middle of a word
+            while (start > 0 && start < end && !Character.isWhitespace(whole.charAt(start - 1))) ++start;
+            while (end < whole.length() && end > start && !Character.isWhitespace(whole.charAt(end))) --end;
+
+            sample.append(whole, start, end).append('\n');
+        }
+
+        return sample.toString();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * Input stream that doesn't read faster than the rate limiter allows.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public class ThrottledInputStream extends FilterInputStream {
+
+    private final RateLimiter rateLimiter;
+
+    /**
+     *
+     * @param inputStream
+     * @param rateLimiter
+     */
+    public ThrottledInputStream(InputStream inputStream, RateLimiter rateLimiter) {
+        super(inputStream);
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = super.read();
+
+        if (value != -1) throttle(1);
+
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int bytesRead = super.read(buffer, offset, length);
+
+        if (bytesRead > 0) throttle(bytesRead);
+
+        return bytesRead;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        long skipped = super.skip(count);
+
+        if (skipped > 0) throttle(skipped);
+
+        return skipped;
+    }
+
+    private void throttle(long count) throws IOException {
+        try {
+            rateLimiter.acquireBytes(count);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for bandwidth");
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Body subscriber that doesn't receive data faster than the rate limiter
+ * allows.
+ *
+ * Instead of blocking the client's threads, requests for more data made by
+ * the delegate subscriber are postponed until the bytes already received
+ * have been paid for.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ * @param <T>
+ */
+public class ThrottlingBodySubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "download-throttle");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final HttpResponse.BodySubscriber<T>    delegate;
+    private final RateLimiter                       rateLimiter;
+    private volatile long                           resumeAt = System.nanoTime();
+
+    /**
+     *
+     * @param delegate
+     * @param rateLimiter
+     */
+    public ThrottlingBodySubscriber(HttpResponse.BodySubscriber<T> delegate, RateLimiter rateLimiter) {
+        this.delegate       = delegate;
+        this.rateLimiter    = rateLimiter;
+    }
+
+    @Override
+    public CompletionStage<T> getBody() {
+        return delegate.getBody();
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+        delegate.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(final long n) {
+                long delay = resumeAt - System.nanoTime();
+
+                if (delay <= 0) {
+                    subscription.request(n);
+                    return;
+                }
+
+                scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        subscription.request(n);
+                    }
+                }, delay, TimeUnit.NANOSECONDS);
+            }
+
+            @Override
+            public void cancel() {
+                subscription.cancel();
+            }
+        });
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        long bytes = 0;
+        for (ByteBuffer item : items) {
+            bytes += item.remaining();
+        }
+
+        // must be set before the delegate asks for more data
+        resumeAt = System.nanoTime() + rateLimiter.reserveBytes(bytes);
+
+        delegate.onNext(items);
+    }
+
+    /**
+     * Return when more data will be requested, no data is received until then
+     *
+     * @return a System.nanoTime() value
+     */
+    public long getResumeAt() {
+        return resumeAt;
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        delegate.onError(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        delegate.onComplete();
+    }
+}
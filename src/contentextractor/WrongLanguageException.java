@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package contentextractor;
+
+import com.optimaize.langdetect.DetectedLanguage;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Thrown when a download is aborted because the first bytes of the page are
+ * clearly in the wrong language.
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public class WrongLanguageException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<DetectedLanguage> detectedLanguages;
+
+    /**
+     *
+     * @param detectedLanguages languages detected in the sample
+     */
+    public WrongLanguageException(List<DetectedLanguage> detectedLanguages) {
+        super("document is in the wrong language " + detectedLanguages);
+        this.detectedLanguages = detectedLanguages;
+    }
+
+    public List<DetectedLanguage> getDetectedLanguages() {
+        return detectedLanguages;
+    }
+}
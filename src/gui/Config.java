@@ -20,6 +20,8 @@ package gui;
 import common.Downloader;
 import common.Language;
 import common.SearchEngine;
+import contentextractor.JsoupExtractor;
+import contentextractor.RateLimiter;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
@@ -43,6 +45,40 @@ public class Config {
     private final SearchEngine  defaultSearchEngine = SearchEngine.EXTERNAL_BROWSER_GOOGLE;
     private final Downloader    defaultDownloader = Downloader.INTERNAL;
     private final int           defaultProxyPort = 8080;
+    private final int           defaultDownloadThreads = 1;
+    private final int           defaultMaxConnectionsPerHost = 2;
+    private final int           defaultExtractionThreads = Runtime.getRuntime().availableProcessors();
+    private final int           defaultFilterThreads = Runtime.getRuntime().availableProcessors();
+    private final int           defaultWriterThreads = 2;
+    private final int           defaultPipelineQueueSize = 16;
+    private final boolean       defaultUseDownloadCache = false;
+    private final int           defaultDownloadCacheMaxSize = 1024;     // MB
+    private final int           defaultDownloadCacheMaxAge = 168;       // hours
+    private final int           defaultHostFailureThreshold = 3;
+    private final int           defaultHostFailureWindow = 60;          // seconds
+    private final int           defaultHostCoolDown = 120;              // seconds
+    private final boolean       defaultUseAdaptiveTimeouts = false;
+    private final int           defaultTimeoutFloor = 1000;             // milliseconds
+    private final int           defaultTimeoutCeiling = 30000;          // milliseconds
+    private final int           defaultCurlBatchSize = 0;
+    private final boolean       defaultUseEarlyLanguageSniffing = false;
+    private final int           defaultLanguageSniffSize = 16;          // KB
+    private final int           defaultMaxDownloadRate = 0;             // KB/s, 0 means no limit
+    private final int           defaultMaxRequestRate = 0;              // requests/s, 0 means no limit
+    private final boolean       defaultUsePriorityDownloads = false;
+    private final boolean       defaultUseForkedParsing = false;
+    private final int           defaultForkedParserHeapSize = 512;      // MB
+    private final int           defaultParseTimeout = 120;              // seconds
+    private final int           defaultMaxBufferedDocumentSize = 4096;  // KB
+    private final boolean       defaultReextractDownloadedFiles = false;
+    private final boolean       defaultUseExtractionCache = false;
+    private final int           defaultExtractionCacheMaxSize = 512;    // MB
+    private final boolean       defaultCompareHtmlExtractionModes = false;
+    private final String        defaultJsoupRemovedElements = JsoupExtractor.DEFAULT_REMOVED_ELEMENTS;
+    private final int           defaultJsoupMinWords = JsoupExtractor.DEFAULT_MIN_WORDS;
+    private final int           defaultJsoupMaxLinkDensity = JsoupExtractor.DEFAULT_MAX_LINK_DENSITY;   // percent
+    
+    private RateLimiter         rateLimiter;
 
     public Config() {
             initialize();
@@ -63,6 +99,532 @@ public class Config {
         return defaultDownloader;
     }
     
+    /**
+     * Return the number of documents that will be downloaded and processed concurrently
+     * 
+     * @return 
+     */
+    public int getDownloadThreads() {
+        return getIntProperty("downloadThreads", defaultDownloadThreads);
+    }
+    
+    public boolean setDownloadThreads(Integer value) {
+        properties.setProperty("downloadThreads", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return the maximum number of simultaneous connections to a single host
+     * 
+     * @return 
+     */
+    public int getMaxConnectionsPerHost() {
+        return getIntProperty("maxConnectionsPerHost", defaultMaxConnectionsPerHost);
+    }
+    
+    public boolean setMaxConnectionsPerHost(Integer value) {
+        properties.setProperty("maxConnectionsPerHost", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return the number of workers parsing documents and extracting text from them
+     * 
+     * @return 
+     */
+    public int getExtractionThreads() {
+        return getIntProperty("extractionThreads", defaultExtractionThreads);
+    }
+    
+    public boolean setExtractionThreads(Integer value) {
+        properties.setProperty("extractionThreads", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return the number of workers applying filters to extracted texts
+     * 
+     * @return 
+     */
+    public int getFilterThreads() {
+        return getIntProperty("filterThreads", defaultFilterThreads);
+    }
+    
+    public boolean setFilterThreads(Integer value) {
+        properties.setProperty("filterThreads", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return the number of workers writing extracted texts to the corpus
+     * 
+     * @return 
+     */
+    public int getWriterThreads() {
+        return getIntProperty("writerThreads", defaultWriterThreads);
+    }
+    
+    public boolean setWriterThreads(Integer value) {
+        properties.setProperty("writerThreads", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return the maximum number of documents waiting in front of each stage of the corpus builder
+     * 
+     * @return 
+     */
+    public int getPipelineQueueSize() {
+        return getIntProperty("pipelineQueueSize", defaultPipelineQueueSize);
+    }
+    
+    public boolean setPipelineQueueSize(Integer value) {
+        properties.setProperty("pipelineQueueSize", value.toString());
+        return store();
+    }
+    
+    public boolean getUseDownloadCache() {
+        String value = properties.getProperty("useDownloadCache");
+
+        if (value == null) return defaultUseDownloadCache;
+
+        return Boolean.parseBoolean(value);
+    }
+    
+    public boolean setUseDownloadCache(Boolean value) {
+        properties.setProperty("useDownloadCache", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return the maximum size of the download cache, in megabytes
+     * 
+     * @return 
+     */
+    public int getDownloadCacheMaxSize() {
+        return getIntProperty("downloadCacheMaxSize", defaultDownloadCacheMaxSize);
+    }
+    
+    public boolean setDownloadCacheMaxSize(Integer value) {
+        properties.setProperty("downloadCacheMaxSize", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return the number of hours during which a cached file is used without
+     * asking the server whether it changed
+     * 
+     * @return 
+     */
+    public int getDownloadCacheMaxAge() {
+        return getIntProperty("downloadCacheMaxAge", defaultDownloadCacheMaxAge);
+    }
+    
+    public boolean setDownloadCacheMaxAge(Integer value) {
+        properties.setProperty("downloadCacheMaxAge", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return the number of consecutive failures after which a host is skipped
+     * 
+     * @return 
+     */
+    public int getHostFailureThreshold() {
+        return getIntProperty("hostFailureThreshold", defaultHostFailureThreshold);
+    }
+    
+    public boolean setHostFailureThreshold(Integer value) {
+        properties.setProperty("hostFailureThreshold", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return the time (in seconds) within which failures of a host are counted together
+     * 
+     * @return 
+     */
+    public int getHostFailureWindow() {
+        return getIntProperty("hostFailureWindow", defaultHostFailureWindow);
+    }
+    
+    public boolean setHostFailureWindow(Integer value) {
+        properties.setProperty("hostFailureWindow", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return the time (in seconds) a failing host is skipped before trying it again
+     * 
+     * @return 
+     */
+    public int getHostCoolDown() {
+        return getIntProperty("hostCoolDown", defaultHostCoolDown);
+    }
+    
+    public boolean setHostCoolDown(Integer value) {
+        properties.setProperty("hostCoolDown", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return true if connect and read timeouts must be learned from the latency of each host
+     * 
+     * @return 
+     */
+    public boolean getUseAdaptiveTimeouts() {
+        String value = properties.getProperty("useAdaptiveTimeouts");
+
+        if (value == null) return defaultUseAdaptiveTimeouts;
+
+        return Boolean.parseBoolean(value);
+    }
+    
+    public boolean setUseAdaptiveTimeouts(Boolean value) {
+        properties.setProperty("useAdaptiveTimeouts", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return the minimum timeout (in milliseconds) that can be learned for a host
+     * 
+     * @return 
+     */
+    public int getTimeoutFloor() {
+        return getIntProperty("timeoutFloor", defaultTimeoutFloor);
+    }
+    
+    public boolean setTimeoutFloor(Integer value) {
+        properties.setProperty("timeoutFloor", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return the maximum timeout (in milliseconds) that can be learned for a host
+     * 
+     * @return 
+     */
+    public int getTimeoutCeiling() {
+        return getIntProperty("timeoutCeiling", defaultTimeoutCeiling);
+    }
+    
+    public boolean setTimeoutCeiling(Integer value) {
+        properties.setProperty("timeoutCeiling", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return the number of URLs downloaded by a single curl process (0 means one process per URL)
+     * 
+     * @return 
+     */
+    public int getCurlBatchSize() {
+        return getIntProperty("curlBatchSize", defaultCurlBatchSize);
+    }
+    
+    public boolean setCurlBatchSize(Integer value) {
+        properties.setProperty("curlBatchSize", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return true if the language of web pages must be guessed from the first
+     * bytes of the response, so that pages in the wrong language are not downloaded
+     * 
+     * @return 
+     */
+    public boolean getUseEarlyLanguageSniffing() {
+        String value = properties.getProperty("useEarlyLanguageSniffing");
+
+        if (value == null) return defaultUseEarlyLanguageSniffing;
+
+        return Boolean.parseBoolean(value);
+    }
+    
+    public boolean setUseEarlyLanguageSniffing(Boolean value) {
+        properties.setProperty("useEarlyLanguageSniffing", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return the size (in KB) of the beginning of a web page used to guess its language
+     * 
+     * @return 
+     */
+    public int getLanguageSniffSize() {
+        return getIntProperty("languageSniffSize", defaultLanguageSniffSize);
+    }
+    
+    public boolean setLanguageSniffSize(Integer value) {
+        properties.setProperty("languageSniffSize", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return the maximum bandwidth (in KB/s) used by all downloads together (0 means no limit)
+     * 
+     * @return 
+     */
+    public int getMaxDownloadRate() {
+        return getIntProperty("maxDownloadRate", defaultMaxDownloadRate);
+    }
+    
+    /**
+     * Set the maximum bandwidth, the new limit also applies to running downloads
+     * 
+     * @param value KB/s, 0 means no limit
+     * @return 
+     */
+    public boolean setMaxDownloadRate(Integer value) {
+        properties.setProperty("maxDownloadRate", value.toString());
+        getRateLimiter().setBytesPerSecond(value * 1024L);
+        return store();
+    }
+    
+    /**
+     * Return the maximum number of requests per second sent by all downloads together (0 means no limit)
+     * 
+     * @return 
+     */
+    public int getMaxRequestRate() {
+        return getIntProperty("maxRequestRate", defaultMaxRequestRate);
+    }
+    
+    /**
+     * Set the maximum request rate, the new limit also applies to running downloads
+     * 
+     * @param value requests per second, 0 means no limit
+     * @return 
+     */
+    public boolean setMaxRequestRate(Integer value) {
+        properties.setProperty("maxRequestRate", value.toString());
+        getRateLimiter().setRequestsPerSecond(value);
+        return store();
+    }
+    
+    /**
+     * Return true if the most promising URLs must be downloaded first, false
+     * to download them in the order of the URL list
+     * 
+     * @return 
+     */
+    public boolean getUsePriorityDownloads() {
+        String value = properties.getProperty("usePriorityDownloads");
+
+        if (value == null) return defaultUsePriorityDownloads;
+
+        return Boolean.parseBoolean(value);
+    }
+    
+    public boolean setUsePriorityDownloads(Boolean value) {
+        properties.setProperty("usePriorityDownloads", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return true if documents must be parsed in separate JVMs, so that
+     * documents that crash or stall the parser don't stop corpus creation
+     * 
+     * @return 
+     */
+    public boolean getUseForkedParsing() {
+        String value = properties.getProperty("useForkedParsing");
+
+        if (value == null) return defaultUseForkedParsing;
+
+        return Boolean.parseBoolean(value);
+    }
+    
+    public boolean setUseForkedParsing(Boolean value) {
+        properties.setProperty("useForkedParsing", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return the maximum heap size (in MB) of each parsing JVM
+     * 
+     * @return 
+     */
+    public int getForkedParserHeapSize() {
+        return getIntProperty("forkedParserHeapSize", defaultForkedParserHeapSize);
+    }
+    
+    public boolean setForkedParserHeapSize(Integer value) {
+        properties.setProperty("forkedParserHeapSize", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return the time (in seconds) a parsing JVM may spend on a single document
+     * 
+     * @return 
+     */
+    public int getParseTimeout() {
+        return getIntProperty("parseTimeout", defaultParseTimeout);
+    }
+    
+    public boolean setParseTimeout(Integer value) {
+        properties.setProperty("parseTimeout", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return the size (in KB) of the largest document kept in memory while it
+     * is parsed
+     * 
+     * @return 
+     */
+    public int getMaxBufferedDocumentSize() {
+        return getIntProperty("maxBufferedDocumentSize", defaultMaxBufferedDocumentSize);
+    }
+    
+    public boolean setMaxBufferedDocumentSize(Integer value) {
+        properties.setProperty("maxBufferedDocumentSize", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return true if corpus creation should extract text again from the files
+     * downloaded by a previous run instead of downloading them
+     * 
+     * @return 
+     */
+    public boolean getReextractDownloadedFiles() {
+        String value = properties.getProperty("reextractDownloadedFiles");
+
+        if (value == null) return defaultReextractDownloadedFiles;
+
+        return Boolean.parseBoolean(value);
+    }
+    
+    public boolean setReextractDownloadedFiles(Boolean value) {
+        properties.setProperty("reextractDownloadedFiles", value.toString());
+        return store();
+    }
+    
+    public boolean getUseExtractionCache() {
+        String value = properties.getProperty("useExtractionCache");
+
+        if (value == null) return defaultUseExtractionCache;
+
+        return Boolean.parseBoolean(value);
+    }
+    
+    public boolean setUseExtractionCache(Boolean value) {
+        properties.setProperty("useExtractionCache", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return the maximum size of the cache of extracted text, in megabytes
+     * 
+     * @return 
+     */
+    public int getExtractionCacheMaxSize() {
+        return getIntProperty("extractionCacheMaxSize", defaultExtractionCacheMaxSize);
+    }
+    
+    public boolean setExtractionCacheMaxSize(Integer value) {
+        properties.setProperty("extractionCacheMaxSize", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return true if HTML pages should also be extracted with every Boilerpipe
+     * mode, so that the report shows how much text each mode keeps
+     * 
+     * @return 
+     */
+    public boolean getCompareHtmlExtractionModes() {
+        String value = properties.getProperty("compareHtmlExtractionModes");
+
+        if (value == null) return defaultCompareHtmlExtractionModes;
+
+        return Boolean.parseBoolean(value);
+    }
+    
+    public boolean setCompareHtmlExtractionModes(Boolean value) {
+        properties.setProperty("compareHtmlExtractionModes", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return the CSS selectors (separated by commas) of the elements removed
+     * from HTML pages by the jsoup extraction mode
+     * 
+     * @return 
+     */
+    public String getJsoupRemovedElements() {
+        return properties.getProperty("jsoupRemovedElements", defaultJsoupRemovedElements);
+    }
+    
+    public boolean setJsoupRemovedElements(String value) {
+        properties.setProperty("jsoupRemovedElements", value);
+        return store();
+    }
+    
+    /**
+     * Return the number of words a block of text needs to be kept by the
+     * jsoup extraction mode
+     * 
+     * @return 
+     */
+    public int getJsoupMinWords() {
+        return getIntProperty("jsoupMinWords", defaultJsoupMinWords);
+    }
+    
+    public boolean setJsoupMinWords(Integer value) {
+        properties.setProperty("jsoupMinWords", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return the highest percentage of words in links a block of text can
+     * have to be kept by the jsoup extraction mode
+     * 
+     * @return 
+     */
+    public int getJsoupMaxLinkDensity() {
+        return getIntProperty("jsoupMaxLinkDensity", defaultJsoupMaxLinkDensity);
+    }
+    
+    public boolean setJsoupMaxLinkDensity(Integer value) {
+        properties.setProperty("jsoupMaxLinkDensity", value.toString());
+        return store();
+    }
+    
+    /**
+     * Return the rate limiter shared by all downloads, it follows changes to
+     * the maximum download and request rates
+     * 
+     * @return 
+     */
+    public synchronized RateLimiter getRateLimiter() {
+        if (rateLimiter == null) {
+            rateLimiter = new RateLimiter(getMaxDownloadRate() * 1024L, getMaxRequestRate());
+        }
+        
+        return rateLimiter;
+    }
+    
+    /**
+     * Return the directory where downloaded files are cached (shared by all projects)
+     * 
+     * @return 
+     */
+    public File getDownloadCacheDir() {
+        return new File(bootcatAppData + File.separator + "cache" + File.separator + "downloads");
+    }
+    
+    /**
+     * Return the directory where extracted text is cached (shared by all projects)
+     * 
+     * @return 
+     */
+    public File getExtractionCacheDir() {
+        return new File(bootcatAppData + File.separator + "cache" + File.separator + "extraction");
+    }
+    
     public String getDataDir() {
             return properties.getProperty("dataDirectory");
     }
@@ -302,6 +864,28 @@ public class Config {
         return intValue;
     }    
     
+    /**
+     * Read an integer property, falling back to a default value if the
+     * property is missing or is not a valid integer
+     * 
+     * @param name
+     * @param defaultValue
+     * @return 
+     */
+    private int getIntProperty(String name, int defaultValue) {
+        String value = properties.getProperty(name);
+        
+        if (value == null) return defaultValue;
+        if (value.equals("")) return defaultValue;
+        
+        try {
+            return Integer.parseInt(value.trim());
+        }
+        catch (NumberFormatException ex) {
+            return defaultValue;
+        }
+    }
+    
     /**
      * Create a directory in user home and use it to store preferences
      * @return true if the directory was created, false if the directory already exists
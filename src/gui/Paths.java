@@ -43,6 +43,7 @@ public class Paths {
     private final String collectedUrls      = "url_list_collected.txt";
     private final String finalUrlList       = "url_list_final.txt";
     private final String excelReportFile    = "report.xlsx";
+    private final String chunkJournal       = "corpus_journal.txt";
     
     // this is the path to the log file in the corpus directory, this is where the log file will
     // be copied at the end of the corpus creation process. Note that the actual log file is a temp
@@ -108,6 +109,10 @@ public class Paths {
         return new File(getProjectDataPath().getPath() + File.separator + excelReportFile);
     }
     
+    public File getChunkJournalFile() {
+        return new File(getProjectDataPath().getPath() + File.separator + chunkJournal);
+    }
+    
     public File getDownloadDir() {
         return downloadDir;
     }
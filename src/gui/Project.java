@@ -16,6 +16,7 @@
  */
 package gui;
 
+import common.ContentTypePolicy;
 import common.FileType;
 import common.Language;
 import common.SearchEngine;
@@ -38,6 +39,7 @@ public class Project {
 
     private File                            blackListFile;
     private String                          corpusName;
+    private ContentTypePolicy               contentTypePolicy;
     private Integer                         corpusCreationTime;
     private int                             corpusTokenCount;
     private ArrayList<URI>                  downloadErrors;
@@ -97,6 +99,7 @@ public class Project {
         restrictToFileType      = FileType.UNSPECIFIED;
         
         htmlExtractionMode      = HtmlExtractionMode.BOILERPIPE_ARTICLE;
+        contentTypePolicy       = ContentTypePolicy.EXTRACTABLE;
         
         corpusCreationTime      = -1;
         corpusTokenCount        = 0;
@@ -227,6 +230,14 @@ public class Project {
         this.htmlExtractionMode = htmlExtractionMode;
     }
 
+    public ContentTypePolicy getContentTypePolicy() {
+        return contentTypePolicy;
+    }
+
+    public void setContentTypePolicy(ContentTypePolicy contentTypePolicy) {
+        this.contentTypePolicy = contentTypePolicy;
+    }
+
     public TreeSet<FileType> getExcludedFileTypes() {
         return excludedFileTypes;
     }
@@ -18,9 +18,17 @@
 package gui.helpers;
 
 import com.google.common.io.Files;
+import common.HtmlExtractionMode;
 import common.Language;
 import common.Utils;
+import contentextractor.AdaptiveTimeouts;
+import contentextractor.ChunkJournal;
 import contentextractor.ContentExtractor;
+import contentextractor.DownloadCache;
+import contentextractor.ExtractionCache;
+import contentextractor.HostHealth;
+import contentextractor.HostLimiter;
+import contentextractor.JsoupExtractor;
 import common.CorpusChunk;
 import gui.Main;
 import gui.Paths;
@@ -36,6 +44,8 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JProgressBar;
@@ -92,6 +102,82 @@ public class BootcatExtractor implements Runnable {
         // set HtmlExtractionMode to use
         extractor.setHtmlExtractorMode(corpusBuilder.getHtmlExtractorMode());
         
+        // settings of the jsoup extraction mode
+        extractor.setJsoupExtractor(new JsoupExtractor(
+                mainPanel.getMain().getConfig().getJsoupRemovedElements(),
+                mainPanel.getMain().getConfig().getJsoupMinWords(),
+                mainPanel.getMain().getConfig().getJsoupMaxLinkDensity()));
+        
+        // extract HTML pages with every Boilerpipe mode too, the report will show what each mode keeps
+        extractor.setCompareHtmlExtractionModes(mainPanel.getMain().getConfig().getCompareHtmlExtractionModes());
+        
+        // skip documents whose content type text cannot be extracted from
+        extractor.setContentTypePolicy(mainPanel.getProject().getContentTypePolicy());
+        
+        // drop pages in the wrong language before they are fully downloaded
+        extractor.setEarlyLanguageSniffing(mainPanel.getMain().getConfig().getUseEarlyLanguageSniffing());
+        extractor.setLanguageSniffSize(mainPanel.getMain().getConfig().getLanguageSniffSize() * 1024);
+        
+        // set concurrency options
+        extractor.setDownloadThreads(mainPanel.getMain().getConfig().getDownloadThreads());
+        extractor.setMaxConnectionsPerHost(mainPanel.getMain().getConfig().getMaxConnectionsPerHost());
+        extractor.setExtractionThreads(mainPanel.getMain().getConfig().getExtractionThreads());
+        extractor.setFilterThreads(mainPanel.getMain().getConfig().getFilterThreads());
+        extractor.setWriterThreads(mainPanel.getMain().getConfig().getWriterThreads());
+        extractor.setPipelineQueueSize(mainPanel.getMain().getConfig().getPipelineQueueSize());
+        extractor.setCurlBatchSize(mainPanel.getMain().getConfig().getCurlBatchSize());
+        
+        // parse documents in separate JVMs with limited memory and time
+        extractor.setForkedParsing(mainPanel.getMain().getConfig().getUseForkedParsing());
+        extractor.setForkedParserHeapSize(mainPanel.getMain().getConfig().getForkedParserHeapSize());
+        extractor.setParseTimeout(mainPanel.getMain().getConfig().getParseTimeout() * 1000);
+        
+        // parse documents from memory instead of reading the downloaded files again
+        extractor.setMaxBufferedDocumentSize(mainPanel.getMain().getConfig().getMaxBufferedDocumentSize() * 1024);
+        
+        // download the most promising URLs first, URLs returned by several tuples are worth more
+        if (mainPanel.getMain().getConfig().getUsePriorityDownloads()) {
+            extractor.setPriorityDownloads(true);
+            extractor.setTupleCounts(Utils.countUrlOccurrences(mainPanel.getPaths().getCollectedUrlsFile()));
+        }
+        
+        // limit bandwidth and request rate of all downloads
+        extractor.setRateLimiter(mainPanel.getMain().getConfig().getRateLimiter());
+        
+        // set up download cache shared by all projects
+        if (mainPanel.getMain().getConfig().getUseDownloadCache()) {
+            extractor.setDownloadCache(new DownloadCache(
+                    mainPanel.getMain().getConfig().getDownloadCacheDir(),
+                    mainPanel.getMain().getConfig().getDownloadCacheMaxSize() * 1024L * 1024L,
+                    mainPanel.getMain().getConfig().getDownloadCacheMaxAge() * 3600L * 1000L));
+        }
+        
+        // set up cache of extracted text shared by all projects, so that changing filters doesn't parse documents again
+        if (mainPanel.getMain().getConfig().getUseExtractionCache()) {
+            extractor.setExtractionCache(new ExtractionCache(
+                    mainPanel.getMain().getConfig().getExtractionCacheDir(),
+                    mainPanel.getMain().getConfig().getExtractionCacheMaxSize() * 1024L * 1024L));
+        }
+        
+        // learn timeouts from the latency of each host
+        if (mainPanel.getMain().getConfig().getUseAdaptiveTimeouts()) {
+            extractor.setAdaptiveTimeouts(new AdaptiveTimeouts(
+                    extractor.getConnectionTimeout(),
+                    extractor.getReadTimeout(),
+                    mainPanel.getMain().getConfig().getTimeoutFloor(),
+                    mainPanel.getMain().getConfig().getTimeoutCeiling()));
+        }
+        
+        // skip hosts that keep failing
+        extractor.setHostHealth(new HostHealth(
+                mainPanel.getMain().getConfig().getHostFailureThreshold(),
+                mainPanel.getMain().getConfig().getHostFailureWindow() * 1000L,
+                mainPanel.getMain().getConfig().getHostCoolDown() * 1000L));
+        
+        // record finished documents, so that an interrupted run can be resumed
+        ChunkJournal journal = new ChunkJournal(mainPanel.getPaths().getChunkJournalFile());
+        extractor.setJournal(journal);
+        
         // read blacklist from file and pass it to the extractor
         if (languageFilter != null) {
             File blackListFile = mainPanel.getMain().getConfig().getBlackList(languageFilter);
@@ -103,22 +189,47 @@ public class BootcatExtractor implements Runnable {
             }
         }
         
-        ArrayList<CorpusChunk> corpusChunks = extractor.extract(
-                editedUrlList,
-                languageFilter,
-                mainPanel.getProject().isUseTextLevelLanguageFilter(),
-                mainPanel.getProject().isUseSentLevelLanguageFilter(),
-                minDocSize,
-                maxDocSize,
-                maxFileSize,
-                mainPanel.getProject().getCorpusName(),
-                mainPanel.getPaths().getDownloadDir(),
-                mainPanel.getPaths().getCorpusDir(),
-                mainPanel.getPaths().getXmlCorpusDir(),
-                mainPanel.getProject().getXmlAttributes(),
-                corpusBuilder.getMainTextArea(),
-                progBar
-        );
+        // extract text again from the files of a previous run (e.g. with another
+        // HTML extraction mode) instead of downloading them
+        File[] downloadedFiles = mainPanel.getPaths().getDownloadDir().listFiles();
+        boolean reextract = mainPanel.getMain().getConfig().getReextractDownloadedFiles() && downloadedFiles != null && downloadedFiles.length > 0;
+        
+        ArrayList<CorpusChunk> corpusChunks;
+        if (reextract) {
+            corpusChunks = extractor.reextract(
+                    editedUrlList,
+                    languageFilter,
+                    mainPanel.getProject().isUseTextLevelLanguageFilter(),
+                    mainPanel.getProject().isUseSentLevelLanguageFilter(),
+                    minDocSize,
+                    maxDocSize,
+                    mainPanel.getProject().getCorpusName(),
+                    mainPanel.getPaths().getDownloadDir(),
+                    mainPanel.getPaths().getCorpusDir(),
+                    mainPanel.getPaths().getXmlCorpusDir(),
+                    mainPanel.getProject().getXmlAttributes(),
+                    corpusBuilder.getMainTextArea(),
+                    progBar
+            );
+        }
+        else {
+            corpusChunks = extractor.extract(
+                    editedUrlList,
+                    languageFilter,
+                    mainPanel.getProject().isUseTextLevelLanguageFilter(),
+                    mainPanel.getProject().isUseSentLevelLanguageFilter(),
+                    minDocSize,
+                    maxDocSize,
+                    maxFileSize,
+                    mainPanel.getProject().getCorpusName(),
+                    mainPanel.getPaths().getDownloadDir(),
+                    mainPanel.getPaths().getCorpusDir(),
+                    mainPanel.getPaths().getXmlCorpusDir(),
+                    mainPanel.getProject().getXmlAttributes(),
+                    corpusBuilder.getMainTextArea(),
+                    progBar
+            );
+        }
 
         // now merge all XML files into a single file
         File[] xmlFileList = mainPanel.getPaths().getXmlCorpusDir().listFiles();
@@ -141,7 +252,7 @@ public class BootcatExtractor implements Runnable {
         Integer creationTime = (totalTime).intValue();
         
         // write log file
-        writeExcelReportFile(corpusChunks);
+        writeExcelReportFile(corpusChunks, extractor.getAdaptiveTimeouts());
         
         // write log file to corpus dir
         try {
@@ -150,6 +261,10 @@ public class BootcatExtractor implements Runnable {
             Logger.getLogger(Main.LOGNAME).log(Level.SEVERE, null, ex);
         }
                 
+        // the corpus is complete, a new run will start from scratch (re-extracting
+        // does not use the journal, which may still belong to an interrupted download)
+        if (!reextract && !Thread.currentThread().isInterrupted()) journal.delete();
+                
         // mark step as finished by removing blocking issues
         corpusBuilder.getBlockingIssues().remove(Issues.BUILDING_CORPUS);
 
@@ -166,7 +281,7 @@ public class BootcatExtractor implements Runnable {
         corpusBuilder.setComplete();
     }
     
-    private void writeExcelReportFile(ArrayList<CorpusChunk> corpusChunks) {
+    private void writeExcelReportFile(ArrayList<CorpusChunk> corpusChunks, AdaptiveTimeouts adaptiveTimeouts) {
        
         try (XSSFWorkbook workbook = new XSSFWorkbook()) {
             XSSFSheet sheet = workbook.createSheet("Report");
@@ -190,6 +305,9 @@ public class BootcatExtractor implements Runnable {
             rowhead.createCell(14).setCellValue("HTML_Extraction_mode");
             rowhead.createCell(15).setCellValue("Creation_date");
             rowhead.createCell(16).setCellValue("Download_date");
+            rowhead.createCell(17).setCellValue("From_download_cache");
+            rowhead.createCell(18).setCellValue("Transferred_size");
+            rowhead.createCell(19).setCellValue("Content_encoding");
             
             // generate table
             int r=1;            
@@ -221,8 +339,8 @@ public class BootcatExtractor implements Runnable {
                 else uri = chunk.getUri().toString();
                 
                 String redirectUri;
-                if (chunk.getRedirectedFrom() == null) redirectUri = "null";
-                else redirectUri = chunk.getRedirectedFrom().toString();
+                if (chunk.getRedirectChainString() == null) redirectUri = "null";
+                else redirectUri = chunk.getRedirectChainString();
                 
                 String downloader;
                 if (chunk.getDownloader() == null) downloader = "null";
@@ -269,6 +387,45 @@ public class BootcatExtractor implements Runnable {
                 row.createCell(14).setCellValue(extractionMode);
                 row.createCell(15).setCellValue(chunk.getCreationDate());
                 row.createCell(16).setCellValue(downloadDate);
+                row.createCell(17).setCellValue(Boolean.toString(chunk.isDownloadedFromCache()));
+                row.createCell(18).setCellValue(chunk.getWireSizeHR());
+                row.createCell(19).setCellValue(chunk.getContentEncoding() == null ? "" : chunk.getContentEncoding());
+            }
+
+            // latency observed for each host and timeouts learned from it
+            if (adaptiveTimeouts != null) {
+                XSSFSheet hostSheet = workbook.createSheet("Hosts");
+                
+                XSSFRow hostHead = hostSheet.createRow(0);
+                hostHead.createCell(0).setCellValue("Host");
+                hostHead.createCell(1).setCellValue("Samples");
+                hostHead.createCell(2).setCellValue("Connect_p50_ms");
+                hostHead.createCell(3).setCellValue("Connect_p95_ms");
+                hostHead.createCell(4).setCellValue("Response_p50_ms");
+                hostHead.createCell(5).setCellValue("Response_p95_ms");
+                hostHead.createCell(6).setCellValue("Timeouts");
+                hostHead.createCell(7).setCellValue("Learned_connect_timeout_ms");
+                hostHead.createCell(8).setCellValue("Learned_read_timeout_ms");
+                
+                int h=1;
+                for (AdaptiveTimeouts.HostStatistics host : adaptiveTimeouts.getStatistics()) {
+                    XSSFRow row = hostSheet.createRow(h++);
+                    
+                    row.createCell(0).setCellValue(host.getHost());
+                    row.createCell(1).setCellValue(host.getSamples());
+                    row.createCell(2).setCellValue(host.getConnectP50());
+                    row.createCell(3).setCellValue(host.getConnectP95());
+                    row.createCell(4).setCellValue(host.getResponseP50());
+                    row.createCell(5).setCellValue(host.getResponseP95());
+                    row.createCell(6).setCellValue(host.getTimeouts());
+                    row.createCell(7).setCellValue(host.getConnectTimeout());
+                    row.createCell(8).setCellValue(host.getReadTimeout());
+                }
+            }
+
+            // text kept by each Boilerpipe mode, for each document and for each host
+            if (hasModeStatistics(corpusChunks)) {
+                writeModeSheets(workbook, corpusChunks);
             }
 
             // write to XLSX file and close it
@@ -282,6 +439,87 @@ public class BootcatExtractor implements Runnable {
         }
     }
     
+    private boolean hasModeStatistics(ArrayList<CorpusChunk> corpusChunks) {
+        for (CorpusChunk chunk : corpusChunks) {
+            if (chunk.hasModeStatistics()) return true;
+        }
+        
+        return false;
+    }
+    
+    private void writeModeSheets(XSSFWorkbook workbook, ArrayList<CorpusChunk> corpusChunks) {
+        ArrayList<HtmlExtractionMode> modes = new ArrayList<>();
+        for (HtmlExtractionMode mode : HtmlExtractionMode.values()) {
+            if (mode.isBoilerpipe()) modes.add(mode);
+        }
+        
+        XSSFSheet modeSheet = workbook.createSheet("Extraction modes");
+        
+        XSSFRow modeHead = modeSheet.createRow(0);
+        modeHead.createCell(0).setCellValue("Downloaded_file");
+        modeHead.createCell(1).setCellValue("URL");
+        modeHead.createCell(2).setCellValue("Status");
+        for (int m = 0; m < modes.size(); ++m) {
+            modeHead.createCell(3 + 2 * m).setCellValue(modes.get(m).name() + "_characters");
+            modeHead.createCell(4 + 2 * m).setCellValue(modes.get(m).name() + "_tokens");
+        }
+        
+        // characters kept by each mode on each host, to pick the mode that suits a site
+        LinkedHashMap<String, long[]> hostCharacters = new LinkedHashMap<>();
+        LinkedHashMap<String, Integer> hostDocuments = new LinkedHashMap<>();
+        
+        int r=1;
+        for (CorpusChunk chunk : corpusChunks) {
+            if (!chunk.hasModeStatistics()) continue;
+            
+            XSSFRow row = modeSheet.createRow(r++);
+            row.createCell(0).setCellValue(chunk.getDownloadedFile() == null ? "null" : chunk.getDownloadedFile().getName());
+            row.createCell(1).setCellValue(chunk.getUri() == null ? "null" : chunk.getUri().toString());
+            row.createCell(2).setCellValue(chunk.getStatus() == null ? "" : chunk.getStatus().toString());
+            
+            String host = HostLimiter.getHostKey(chunk.getUri());
+            long[] characters = hostCharacters.get(host);
+            if (characters == null) {
+                characters = new long[modes.size()];
+                hostCharacters.put(host, characters);
+                hostDocuments.put(host, 0);
+            }
+            hostDocuments.put(host, hostDocuments.get(host) + 1);
+            
+            for (int m = 0; m < modes.size(); ++m) {
+                Integer characterCount  = chunk.getModeCharacterCount(modes.get(m));
+                Integer tokenCount      = chunk.getModeTokenCount(modes.get(m));
+                
+                if (characterCount == null) continue;
+                
+                row.createCell(3 + 2 * m).setCellValue(characterCount);
+                row.createCell(4 + 2 * m).setCellValue(tokenCount);
+                
+                characters[m] += characterCount;
+            }
+        }
+        
+        XSSFSheet hostSheet = workbook.createSheet("Extraction modes by host");
+        
+        XSSFRow hostHead = hostSheet.createRow(0);
+        hostHead.createCell(0).setCellValue("Host");
+        hostHead.createCell(1).setCellValue("Documents");
+        for (int m = 0; m < modes.size(); ++m) {
+            hostHead.createCell(2 + m).setCellValue(modes.get(m).name() + "_characters");
+        }
+        
+        int h=1;
+        for (Map.Entry<String, long[]> entry : hostCharacters.entrySet()) {
+            XSSFRow row = hostSheet.createRow(h++);
+            row.createCell(0).setCellValue(entry.getKey());
+            row.createCell(1).setCellValue(hostDocuments.get(entry.getKey()));
+            
+            for (int m = 0; m < modes.size(); ++m) {
+                row.createCell(2 + m).setCellValue(entry.getValue()[m]);
+            }
+        }
+    }
+    
     private ArrayList<String> parseBlackList(File file) {
         
         ArrayList<String> blacklist = new ArrayList<>();
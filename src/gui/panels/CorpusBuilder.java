@@ -17,6 +17,7 @@
 
 package gui.panels;
 
+import common.ContentTypePolicy;
 import common.Language;
 import common.HtmlExtractionMode;
 import gui.Main;
@@ -210,6 +211,8 @@ public class CorpusBuilder extends WizardStep {
         maxCharsLabel = new javax.swing.JLabel();
         maxWordsLabel3 = new javax.swing.JLabel();
         htmlExtractorComboBox = new javax.swing.JComboBox(common.HtmlExtractionMode.values());
+        contentTypeLabel = new javax.swing.JLabel();
+        contentTypeComboBox = new javax.swing.JComboBox(common.ContentTypePolicy.values());
         minCharsCheckBox = new javax.swing.JCheckBox();
         maxCharsCheckBox = new javax.swing.JCheckBox();
         maxFileSizeCheckBox = new javax.swing.JCheckBox();
@@ -299,6 +302,14 @@ public class CorpusBuilder extends WizardStep {
             }
         });
 
+        contentTypeLabel.setText("Download content types");
+
+        contentTypeComboBox.addMouseListener(new java.awt.event.MouseAdapter() {
+            public void mouseEntered(java.awt.event.MouseEvent evt) {
+                contentTypeComboBoxMouseEntered(evt);
+            }
+        });
+
         minCharsCheckBox.setText("discard documents containing less than");
         minCharsCheckBox.addActionListener(new java.awt.event.ActionListener() {
             public void actionPerformed(java.awt.event.ActionEvent evt) {
@@ -360,6 +371,11 @@ public class CorpusBuilder extends WizardStep {
                         .addComponent(maxWordsLabel3, javax.swing.GroupLayout.PREFERRED_SIZE, 286, javax.swing.GroupLayout.PREFERRED_SIZE)
                         .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                         .addComponent(htmlExtractorComboBox, 0, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
+                    .addGroup(javax.swing.GroupLayout.Alignment.TRAILING, advancedOptionsPanelLayout.createSequentialGroup()
+                        .addContainerGap()
+                        .addComponent(contentTypeLabel, javax.swing.GroupLayout.PREFERRED_SIZE, 286, javax.swing.GroupLayout.PREFERRED_SIZE)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(contentTypeComboBox, 0, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
                     .addGroup(advancedOptionsPanelLayout.createSequentialGroup()
                         .addGroup(advancedOptionsPanelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.TRAILING, false)
                             .addComponent(maxCharsCheckBox, javax.swing.GroupLayout.DEFAULT_SIZE, 292, Short.MAX_VALUE)
@@ -392,6 +408,10 @@ public class CorpusBuilder extends WizardStep {
                     .addComponent(maxWordsLabel3)
                     .addComponent(htmlExtractorComboBox, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(advancedOptionsPanelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(contentTypeLabel)
+                    .addComponent(contentTypeComboBox, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addGroup(advancedOptionsPanelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                     .addComponent(textLanguageFilterCheckbox)
                     .addComponent(textLanguageFilterComboBox, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
@@ -448,7 +468,7 @@ public class CorpusBuilder extends WizardStep {
             .addGroup(javax.swing.GroupLayout.Alignment.TRAILING, layout.createSequentialGroup()
                 .addComponent(showAdvancedOptionsLabel)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
-                .addComponent(advancedOptionsPanel, javax.swing.GroupLayout.PREFERRED_SIZE, 191, javax.swing.GroupLayout.PREFERRED_SIZE)
+                .addComponent(advancedOptionsPanel, javax.swing.GroupLayout.PREFERRED_SIZE, 222, javax.swing.GroupLayout.PREFERRED_SIZE)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(jScrollPane1, javax.swing.GroupLayout.DEFAULT_SIZE, 81, Short.MAX_VALUE)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
@@ -496,6 +516,11 @@ public class CorpusBuilder extends WizardStep {
 
     }//GEN-LAST:event_htmlExtractorComboBoxMouseEntered
 
+    private void contentTypeComboBoxMouseEntered(java.awt.event.MouseEvent evt) {//GEN-FIRST:event_contentTypeComboBoxMouseEntered
+        ContentTypePolicy contentTypePolicy = (ContentTypePolicy) contentTypeComboBox.getSelectedItem();
+        contentTypeComboBox.setToolTipText(contentTypePolicy.getDescription());
+    }//GEN-LAST:event_contentTypeComboBoxMouseEntered
+
     private void minCharsSpinnerStateChanged(javax.swing.event.ChangeEvent evt) {//GEN-FIRST:event_minCharsSpinnerStateChanged
 
     }//GEN-LAST:event_minCharsSpinnerStateChanged
@@ -566,6 +591,8 @@ public class CorpusBuilder extends WizardStep {
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JPanel advancedOptionsPanel;
     private javax.swing.JButton buildCorpusButton;
+    private javax.swing.JComboBox<common.ContentTypePolicy> contentTypeComboBox;
+    private javax.swing.JLabel contentTypeLabel;
     private javax.swing.JComboBox<String> htmlExtractorComboBox;
     private javax.swing.JScrollPane jScrollPane1;
     private javax.swing.JTextArea mainTextArea;
@@ -594,6 +621,7 @@ public class CorpusBuilder extends WizardStep {
 
         // get initial values from project (they are either the default values or values previously chosen by the user)
         htmlExtractorComboBox.setSelectedItem(mainPanel.getProject().getHtmlExtractionMode());
+        contentTypeComboBox.setSelectedItem(mainPanel.getProject().getContentTypePolicy());
         minCharsSpinner.setModel(new SpinnerNumberModel(mainPanel.getProject().getMinDocSize(), 0, 100000000, 500));
         maxCharsSpinner.setModel(new SpinnerNumberModel(mainPanel.getProject().getMaxDocSize(), 0, 100000000, 1000));
         maxFileSizeSpinner.setModel(new SpinnerNumberModel(mainPanel.getProject().getMaxFileSize(), 0, 100000000, 1));
@@ -624,6 +652,9 @@ public class CorpusBuilder extends WizardStep {
         HtmlExtractionMode htmlExtractionMode = (HtmlExtractionMode) htmlExtractorComboBox.getSelectedItem();
         mainPanel.getProject().setHtmlExtractionMode(htmlExtractionMode);
         
+        // content types to download
+        mainPanel.getProject().setContentTypePolicy((ContentTypePolicy) contentTypeComboBox.getSelectedItem());
+        
         // Min doc character count
         mainPanel.getProject().setMinDocSize((Integer) minCharsSpinner.getValue());
         
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2026 Eros Zanchetta <eros@sslmit.unibo.it>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package test;
+
+import common.HtmlExtractionMode;
+import contentextractor.BoilerpipeModes;
+import contentextractor.JsoupExtractor;
+import de.l3s.boilerpipe.BoilerpipeProcessingException;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compare the speed of the HTML extraction modes and how much the text
+ * extracted by jsoup overlaps with the text extracted by each Boilerpipe mode.
+ *
+ * Usage: ExtractionBenchmark [DIRECTORY [ROUNDS]]
+ *
+ * where DIRECTORY contains the HTML pages used as fixtures (e.g. the download
+ * directory of a project), pages are read as UTF-8. Without arguments the
+ * small set of pages in src/test/fixtures is used, run from the project
+ * directory.
+ *
+ * Overlap is the F1 score of the words extracted by jsoup against the words
+ * extracted by a Boilerpipe mode (1 means the same words, 0 no common word).
+ *
+ * @author Eros Zanchetta <eros@sslmit.unibo.it>
+ */
+public class ExtractionBenchmark {
+
+    private static final String DEFAULT_FIXTURES = "src/test/fixtures";
+
+    public static void main(String[] args) throws IOException {
+        File dir = new File((args.length > 0) ? args[0] : DEFAULT_FIXTURES);
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 3;
+
+        ExtractionBenchmark benchmark = new ExtractionBenchmark();
+        benchmark.run(benchmark.readPages(dir), rounds);
+    }
+
+    private List<byte[]> readPages(File dir) throws IOException {
+        List<byte[]> pages = new ArrayList<>();
+
+        File[] files = dir.listFiles();
+        if (files == null) throw new IOException("cannot read " + dir);
+
+        for (File file : files) {
+            String name = file.getName().toLowerCase(Locale.ROOT);
+
+            if (file.isFile() && (name.endsWith(".html") || name.endsWith(".htm"))) {
+                pages.add(Files.readAllBytes(file.toPath()));
+            }
+        }
+
+        return pages;
+    }
+
+    /**
+     * Extract text from a page with one of the modes
+     */
+    private interface Extraction {
+        String extract(byte[] page);
+    }
+
+    private void run(List<byte[]> pages, int rounds) {
+        final JsoupExtractor jsoupExtractor = new JsoupExtractor();
+
+        LinkedHashMap<String, Extraction> extractions = new LinkedHashMap<>();
+        ArrayList<HtmlExtractionMode> modes = new ArrayList<>();
+
+        for (final HtmlExtractionMode mode : HtmlExtractionMode.values()) {
+            if (!mode.isBoilerpipe()) continue;
+
+            modes.add(mode);
+            extractions.put(mode.name(), new Extraction() {
+                @Override
+                public String extract(byte[] page) {
+                    try {
+                        return BoilerpipeModes.extract(BoilerpipeModes.parse(new InputStreamReader(new ByteArrayInputStream(page), StandardCharsets.UTF_8)), mode);
+                    } catch (BoilerpipeProcessingException ex) {
+                        return "";
+                    }
+                }
+            });
+        }
+
+        // all Boilerpipe modes from a single parse of each page
+        extractions.put("BOILERPIPE (all, one parse)", new Extraction() {
+            @Override
+            public String extract(byte[] page) {
+                try {
+                    return BoilerpipeModes.extractAll(BoilerpipeModes.parse(new InputStreamReader(new ByteArrayInputStream(page), StandardCharsets.UTF_8))).toString();
+                } catch (BoilerpipeProcessingException ex) {
+                    return "";
+                }
+            }
+        });
+
+        extractions.put(HtmlExtractionMode.JSOUP.name(), new Extraction() {
+            @Override
+            public String extract(byte[] page) {
+                try {
+                    return jsoupExtractor.getText(new ByteArrayInputStream(page), "UTF-8");
+                } catch (IOException ex) {
+                    return "";
+                }
+            }
+        });
+
+        System.out.println(pages.size() + " pages, " + rounds + " rounds");
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "%-28s %12s %12s", "Mode", "Pages/sec", "Overlap"));
+
+        HashMap<String, List<String>> texts = new HashMap<>();
+
+        for (Map.Entry<String, Extraction> entry : extractions.entrySet()) {
+            List<String> modeTexts = new ArrayList<>();
+
+            // as many rounds are run to warm up the JIT, the first one also gives the texts used for overlap
+            for (int round = 0; round < rounds; ++round) {
+                for (byte[] page : pages) {
+                    String text = entry.getValue().extract(page);
+                    if (round == 0) modeTexts.add(text);
+                }
+            }
+
+            long start = System.nanoTime();
+            for (int round = 0; round < rounds; ++round) {
+                for (byte[] page : pages) {
+                    entry.getValue().extract(page);
+                }
+            }
+
+            texts.put(entry.getKey(), modeTexts);
+
+            printRow(entry.getKey(), pages.size() * rounds, System.nanoTime() - start, null);
+        }
+
+        System.out.println();
+        System.out.println("Overlap of " + HtmlExtractionMode.JSOUP.name() + " with:");
+
+        List<String> jsoupTexts = texts.get(HtmlExtractionMode.JSOUP.name());
+
+        for (HtmlExtractionMode mode : modes) {
+            double total = 0;
+
+            for (int i = 0; i < pages.size(); ++i) {
+                total += getOverlap(jsoupTexts.get(i), texts.get(mode.name()).get(i));
+            }
+
+            printRow(mode.name(), 0, 0, pages.isEmpty() ? 0 : total / pages.size());
+        }
+    }
+
+    private void printRow(String name, int pages, long elapsed, Double overlap) {
+        if (overlap == null) {
+            System.out.println(String.format(Locale.ROOT, "%-28s %12.1f", name, (elapsed == 0) ? 0 : pages / (elapsed / 1e9)));
+        }
+        else {
+            System.out.println(String.format(Locale.ROOT, "%-28s %12s %12.3f", name, "", overlap));
+        }
+    }
+
+    /**
+     * Return the F1 score of the words of a text against the words of a reference text
+     *
+     * @param text
+     * @param reference
+     * @return
+     */
+    private double getOverlap(String text, String reference) {
+        Map<String, Integer> textWords      = countWords(text);
+        Map<String, Integer> referenceWords = countWords(reference);
+
+        int textTotal       = 0;
+        int referenceTotal  = 0;
+        int common          = 0;
+
+        for (int count : textWords.values()) {
+            textTotal += count;
+        }
+
+        for (Map.Entry<String, Integer> entry : referenceWords.entrySet()) {
+            referenceTotal += entry.getValue();
+
+            Integer count = textWords.get(entry.getKey());
+            if (count != null) common += Math.min(count, entry.getValue());
+        }
+
+        // both empty, they agree
+        if (textTotal == 0 && referenceTotal == 0) return 1;
+        if (common == 0) return 0;
+
+        double precision    = (double) common / textTotal;
+        double recall       = (double) common / referenceTotal;
+
+        return 2 * precision * recall / (precision + recall);
+    }
+
+    private Map<String, Integer> countWords(String text) {
+        HashMap<String, Integer> words = new HashMap<>();
+
+        for (String word : text.toLowerCase(Locale.ROOT).split("[\\s\\p{Punct}]+")) {
+            if (word.isEmpty()) continue;
+
+            Integer count = words.get(word);
+            words.put(word, (count == null) ? 1 : count + 1);
+        }
+
+        return words;
+    }
+}